@@ -94,10 +94,17 @@ public class ChatController {
     /**
      * 获取会话内的消息列表
      * GET /chat/conversations/:id/messages
+     * 分页返回，不带参数时返回最新一页：
+     * before: 返回该消息ID之前的一页历史消息（不传则为最新一页）
+     * after: 返回该消息ID之后的新消息，用于增量同步（优先于 before）
+     * limit: 每页数量（默认 50，最大 100）
      */
     @GetMapping("/conversations/{id}/messages")
     public Result listMessages(
             @PathVariable Integer id,
+            @RequestParam(required = false) Integer before,
+            @RequestParam(required = false) Integer after,
+            @RequestParam(required = false) Integer limit,
             Authentication authentication) {
         try {
             Integer currentUserId = getCurrentUserId(authentication);
@@ -113,7 +120,8 @@ public class ChatController {
             }
             
             // 获取消息列表，并标记 isOwn
-            List<ChatMessage> messages = messageService.listMessages(id, currentUserId);
+            List<ChatMessage> messages = messageService.listMessages(id, currentUserId, before, after,
+                    limit != null ? limit : ChatMessageService.DEFAULT_PAGE_SIZE);
             
             // 清除未读消息数
             conversationService.clearUnreadCount(id, currentUserId);
@@ -137,13 +145,12 @@ public class ChatController {
         try {
             Integer senderId = getCurrentUserId(authentication);
             
-            // 验证用户是否有权限在该会话中发送消息
-            ChatConversation conversation = conversationService.getConversationById(id);
-            if (conversation == null) {
+            // 验证用户是否有权限在该会话中发送消息（使用缓存的会话配对）
+            ChatConversationService.ConversationPair pair = conversationService.getConversationPair(id);
+            if (pair == null) {
                 return ResultUtil.notFound("会话不存在");
             }
-            if (!conversation.getUserId().equals(senderId) && 
-                !conversation.getPartnerId().equals(senderId)) {
+            if (!pair.hasMember(senderId)) {
                 return ResultUtil.error("无权在该会话中发送消息");
             }
             
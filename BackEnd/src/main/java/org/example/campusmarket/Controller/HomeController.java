@@ -2,6 +2,7 @@ package org.example.campusmarket.Controller;
 
 import org.example.campusmarket.DTO.HomeDto;
 import org.example.campusmarket.Service.HomeService;
+import org.example.campusmarket.Service.ProductHotnessService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -17,9 +18,15 @@ public class HomeController {
     private HomeService homeService; // 首页数据服务，封装热门与最新列表的获取
 
     @GetMapping("/hot")
-    public List<HomeDto.HomeProduct> getHot(@RequestParam(value = "limit", required = false) Integer limit) {
+    public List<HomeDto.HomeProduct> getHot(@RequestParam(value = "limit", required = false) Integer limit,
+                                            @RequestParam(value = "window", required = false) String window) {
         // limit：可选的返回条数限制，默认 10 条
-        return homeService.getHotProducts(limit == null ? 10 : limit);
+        // window：可选的时间窗口（1h / 24h / 7d），不传或无法识别时返回总热度排行
+        ProductHotnessService.TrendingWindow trendingWindow = ProductHotnessService.TrendingWindow.fromCode(window);
+        if (trendingWindow == null) {
+            return homeService.getHotProducts(limit == null ? 10 : limit);
+        }
+        return homeService.getHotProducts(limit == null ? 10 : limit, trendingWindow);
     }
 
     @GetMapping("/latest")
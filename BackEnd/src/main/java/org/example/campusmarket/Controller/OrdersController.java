@@ -26,16 +26,25 @@ public class OrdersController {
      * @param keyword      可选关键词，匹配商品名或描述，为空则不按关键词过滤
      * @param startDate    可选起始时间（字符串），为空则不设时间下限
      * @param endDate      可选结束时间（字符串），为空则不设时间上限
+     * @param page         可选页码（从 1 开始），与 pageSize 任一传入即分页
+     * @param pageSize     可选每页数量（默认 20，最大 100）
      * @param authentication 当前认证上下文，用于获取当前用户的 userId
-     * @return Result，data 为 List<OrderDto.Response>
+     * @return Result，不分页时 data 为 List<OrderDto.Response>，分页时为 OrderDto.PageResponse
      */
     @GetMapping
     public Result getOrderList(@RequestParam(value = "status", required = false) String status,
                        @RequestParam(value = "keyword", required = false) String keyword,
                        @RequestParam(value = "startDate", required = false) String startDate,
                        @RequestParam(value = "endDate", required = false) String endDate,
+                       @RequestParam(value = "page", required = false) Integer page,
+                       @RequestParam(value = "pageSize", required = false) Integer pageSize,
                        Authentication authentication) {
         Integer userId = (Integer) authentication.getPrincipal();
+        if (page != null || pageSize != null) {
+            OrderDto.PageResponse pageResponse = ordersService.getOrderPage(userId, status, keyword, startDate, endDate,
+                    page != null ? page : 1, pageSize != null ? pageSize : 20);
+            return new Result(200, "成功", pageResponse);
+        }
         List<OrderDto.Response> items = ordersService.getOrderList(userId, status, keyword, startDate, endDate);
         return new Result(200, "成功", items);
     }
@@ -5,8 +5,10 @@ import org.example.campusmarket.Service.ProductService;
 import org.example.campusmarket.entity.Product;
 import org.example.campusmarket.entity.Result;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
 import org.springframework.security.core.Authentication;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,6 +37,8 @@ public class ProductController {
     // sort: 排序方式 (可选, latest/price-low/price-high/popular)
     // page: 页码 (默认1)
     // pageSize: 每页数量 (默认12)
+    // cursor: 游标 (可选)，传入后改为游标分页：首次传空串，之后传上次返回的 nextCursor，忽略 page，不返回 total
+    // estimate: 估算总数 (默认false)，为 true 时最多只数到当前页之后若干页，并以 totalEstimated 标记
     @GetMapping
     public ProductDto.ProductListResponse searchProducts(
             @RequestParam(required = false) String keyword,
@@ -45,13 +49,40 @@ public class ProductController {
             @RequestParam(required = false) Double priceMax,
             @RequestParam(required = false) String sort,
             @RequestParam(defaultValue = "1") int page,
-            @RequestParam(defaultValue = "12") int pageSize
+            @RequestParam(defaultValue = "12") int pageSize,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "false") boolean estimate
     ) {
         // 标准化分类参数（支持中文自动转换）
         String normalizedCategory = (category != null && !category.trim().isEmpty()) 
             ? normalizeCategory(category) 
             : null;
-        return productService.searchProducts(keyword, normalizedCategory, location, status, priceMin, priceMax, sort, page, pageSize);
+        try {
+            return productService.searchProducts(keyword, normalizedCategory, location, status, priceMin, priceMax, sort, page, pageSize, cursor, estimate);
+        } catch (IllegalArgumentException e) {
+            // 游标无效时返回 400，由客户端丢弃游标后重新从第一页开始
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    // 分类热门商品接口
+    // GET /products/hot
+    // category: 分类 (必填, 支持中文)
+    // limit: 返回条数 (默认10)
+    @GetMapping("/hot")
+    public List<ProductDto.ProductDetail> getCategoryHotProducts(
+            @RequestParam String category,
+            @RequestParam(defaultValue = "10") int limit
+    ) {
+        return productService.getCategoryHotProducts(normalizeCategory(category), limit);
+    }
+
+    // 批量获取商品详情接口
+    // GET /products/batch?ids=1,2,3
+    // ids: 商品ID列表 (最多50个，超出部分忽略)，按传入顺序返回，不存在的商品被跳过；不增加浏览量
+    @GetMapping("/batch")
+    public List<ProductDto.ProductDetail> getProductDetails(@RequestParam List<Integer> ids) {
+        return productService.getProductDetails(ids);
     }
 
     // 获取商品详情接口
@@ -48,7 +48,7 @@ public class UserController {
             return new Result(400,"修改失败",null);
         }
         // 返回更新后的完整用户信息
-        UserInfo updatedUserInfo = userService.GetUserInfoById(user_id);
+        UserInfo updatedUserInfo = userService.GetLatestUserInfoById(user_id);
         return new Result(200,"修改完成",updatedUserInfo);
     }
 
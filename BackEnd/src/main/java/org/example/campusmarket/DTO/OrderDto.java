@@ -5,6 +5,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 //订单相关 DTO 汇总：统一收敛到一个文件中，包含创建请求、响应、统计与评价请求等。
 
@@ -58,6 +59,17 @@ public class OrderDto {
         private UserSummary seller;
     }
 
+    // 订单分页响应
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class PageResponse {
+        private List<Response> items;
+        private Integer total;
+        private Integer page;
+        private Integer pageSize;
+    }
+
     // 订单统计响应
     @Data
     @NoArgsConstructor
@@ -112,8 +112,19 @@ public class ProductDto {
         // 当前页的商品列表 (List of Products)
         private List<ProductDetail> items;
         
-        // 符合条件的总记录数 (Total Count)，用于前端计算总页数
+        // 符合条件的总记录数 (Total Count)，用于前端计算总页数；游标模式下不统计，为 null
         private Long total;
+
+        // total 是否为估算值（仅页码模式）：为 true 时实际总数不少于 total
+        private Boolean totalEstimated;
+
+        // 下一页游标（仅游标模式），为 null 表示没有更多数据
+        private String nextCursor;
+
+        public ProductListResponse(List<ProductDetail> items, Long total) {
+            this.items = items;
+            this.total = total;
+        }
     }
 
     // 商品状态更新请求
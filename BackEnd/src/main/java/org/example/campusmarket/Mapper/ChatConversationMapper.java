@@ -2,7 +2,9 @@ package org.example.campusmarket.Mapper;
 
 import org.example.campusmarket.entity.ChatConversation;
 import org.apache.ibatis.annotations.*;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 @Mapper
 public interface ChatConversationMapper {
@@ -57,11 +59,6 @@ public interface ChatConversationMapper {
     @Options(useGeneratedKeys = true, keyProperty = "id")
     int createConversation(ChatConversation conversation);
 
-    /** 更新会话最后一条消息 - 修复：移除 user_id 条件，因为发送者可能是对方 */
-    @Update("UPDATE chat_conversation SET last_message = #{lastMessage}, last_message_time = NOW(), " +
-            "unread_count = unread_count + #{unreadCount}, updated_at = NOW() WHERE id = #{id}")
-    int updateLastMessage(@Param("id") Integer id, @Param("lastMessage") String lastMessage, @Param("unreadCount") Integer unreadCount);
-
     /** 清除未读消息数 */
     @Update("UPDATE chat_conversation SET unread_count = 0, updated_at = NOW() WHERE id = #{id} AND user_id = #{userId}")
     int clearUnreadCount(@Param("id") Integer id, @Param("userId") Integer userId);
@@ -79,10 +76,34 @@ public interface ChatConversationMapper {
             "</script>")
     Integer findConversationId(@Param("userId") Integer userId, @Param("partnerId") Integer partnerId, @Param("orderId") Integer orderId);
     
-    /** 根据会话ID查找对方的会话ID（用于同步更新双方会话） */
-    @Select("SELECT c2.id FROM chat_conversation c1 " +
-            "JOIN chat_conversation c2 ON c1.user_id = c2.partner_id AND c1.partner_id = c2.user_id " +
+    /** 查询会话及对方的会话ID（一次自关联），返回 id、user_id、partner_id、partner_conversation_id；会话不存在时返回 null */
+    @Select("SELECT c1.id, c1.user_id, c1.partner_id, c2.id AS partner_conversation_id FROM chat_conversation c1 " +
+            "LEFT JOIN chat_conversation c2 ON c1.user_id = c2.partner_id AND c1.partner_id = c2.user_id " +
             "AND ((c1.order_id IS NULL AND c2.order_id IS NULL) OR c1.order_id = c2.order_id) " +
             "WHERE c1.id = #{conversationId} LIMIT 1")
-    Integer findPartnerConversationId(@Param("conversationId") Integer conversationId);
-}
\ No newline at end of file
+    Map<String, Object> findConversationPair(@Param("conversationId") Integer conversationId);
+
+    /** 一条语句同时更新双方会话的最后一条消息，只有接收方会话的未读数增加；消息时间为空时取当前时间 */
+    @Update("<script>" +
+            "UPDATE chat_conversation SET last_message = #{lastMessage}, last_message_time = COALESCE(#{lastMessageTime}, NOW()), " +
+            "unread_count = unread_count + (CASE WHEN id = #{receiverConversationId} THEN #{unreadCount} ELSE 0 END), " +
+            "updated_at = NOW() " +
+            "WHERE id IN (#{senderConversationId}<if test='receiverConversationId != null'>, #{receiverConversationId}</if>)" +
+            "</script>")
+    int updateLastMessageForPair(@Param("senderConversationId") Integer senderConversationId,
+                                 @Param("receiverConversationId") Integer receiverConversationId,
+                                 @Param("lastMessage") String lastMessage,
+                                 @Param("lastMessageTime") Date lastMessageTime,
+                                 @Param("unreadCount") Integer unreadCount);
+
+    /** 批量写回会话的未读数与最后一条消息（由 ConversationInboxCache 定期调用），空值字段保持不变 */
+    @Update("<script>" +
+            "UPDATE chat_conversation SET " +
+            "unread_count = CASE id <foreach collection='items' item='c'>WHEN #{c.id} THEN #{c.unreadCount} </foreach>ELSE unread_count END, " +
+            "last_message = CASE id <foreach collection='items' item='c'>WHEN #{c.id} THEN COALESCE(#{c.lastMessage}, last_message) </foreach>ELSE last_message END, " +
+            "last_message_time = CASE id <foreach collection='items' item='c'>WHEN #{c.id} THEN COALESCE(#{c.lastMessageTime}, last_message_time) </foreach>ELSE last_message_time END, " +
+            "updated_at = GREATEST(updated_at, COALESCE(last_message_time, updated_at)) " +
+            "WHERE (id, user_id) IN (<foreach collection='items' item='c' separator=','>(#{c.id}, #{c.userId})</foreach>)" +
+            "</script>")
+    int flushInbox(@Param("items") List<ChatConversation> items);
+}
@@ -2,6 +2,7 @@ package org.example.campusmarket.Mapper;
 
 import org.example.campusmarket.entity.ChatMessage;
 import org.apache.ibatis.annotations.*;
+import java.util.Date;
 import java.util.List;
 
 @Mapper
@@ -13,7 +14,7 @@ public interface ChatMessageMapper {
             "FROM chat_message m " +
             "LEFT JOIN userinfo u ON m.sender_id = u.user_id " +
             "WHERE m.conversation_id = #{conversationId} " +
-            "ORDER BY m.created_at ASC")
+            "ORDER BY m.id ASC")
     @Results({
         @Result(property = "id", column = "id"),
         @Result(property = "conversationId", column = "conversation_id"),
@@ -25,26 +26,50 @@ public interface ChatMessageMapper {
     })
     List<ChatMessage> listMessages(@Param("conversationId") Integer conversationId);
 
-    /** 发送消息（插入数据库） */
-    @Insert("INSERT INTO chat_message (conversation_id, sender_id, content, type, created_at) " +
-            "VALUES (#{conversationId}, #{senderId}, #{content}, #{type}, NOW())")
-    @Options(useGeneratedKeys = true, keyProperty = "id")
-    int sendMessage(ChatMessage message);
-    
-    /** 根据ID获取消息 */
-    @Select("SELECT m.id, m.conversation_id, m.sender_id, m.content, m.type, m.created_at, " +
-            "u.nickname AS sender_name " +
+    /** 获取会话内 beforeId 之前（不含）最近的 limit 条消息，按ID倒序；beforeId 为空时取最新的消息。发送者昵称由调用方填充 */
+    @Select("<script>" +
+            "SELECT m.id, m.conversation_id, m.sender_id, m.content, m.type, m.created_at " +
             "FROM chat_message m " +
-            "LEFT JOIN userinfo u ON m.sender_id = u.user_id " +
-            "WHERE m.id = #{id}")
+            "WHERE m.conversation_id = #{conversationId} " +
+            "<if test='beforeId != null'>AND m.id &lt; #{beforeId} </if>" +
+            "ORDER BY m.id DESC LIMIT #{limit}" +
+            "</script>")
+    @Results({
+        @Result(property = "id", column = "id"),
+        @Result(property = "conversationId", column = "conversation_id"),
+        @Result(property = "senderId", column = "sender_id"),
+        @Result(property = "content", column = "content"),
+        @Result(property = "type", column = "type"),
+        @Result(property = "createdAt", column = "created_at")
+    })
+    List<ChatMessage> listMessagesBefore(@Param("conversationId") Integer conversationId,
+                                         @Param("beforeId") Integer beforeId,
+                                         @Param("limit") int limit);
+
+    /** 获取会话内 afterId 之后（不含）的最多 limit 条消息，按ID正序，用于增量同步。发送者昵称由调用方填充 */
+    @Select("SELECT m.id, m.conversation_id, m.sender_id, m.content, m.type, m.created_at " +
+            "FROM chat_message m " +
+            "WHERE m.conversation_id = #{conversationId} AND m.id > #{afterId} " +
+            "ORDER BY m.id ASC LIMIT #{limit}")
     @Results({
         @Result(property = "id", column = "id"),
         @Result(property = "conversationId", column = "conversation_id"),
         @Result(property = "senderId", column = "sender_id"),
-        @Result(property = "senderName", column = "sender_name"),
         @Result(property = "content", column = "content"),
         @Result(property = "type", column = "type"),
         @Result(property = "createdAt", column = "created_at")
     })
-    ChatMessage getMessageById(@Param("id") Integer id);
+    List<ChatMessage> listMessagesAfter(@Param("conversationId") Integer conversationId,
+                                        @Param("afterId") Integer afterId,
+                                        @Param("limit") int limit);
+
+    /** 发送消息（插入数据库），发送时间由数据库 NOW() 生成，调用方插入后通过 getMessageCreatedAt 读回 */
+    @Insert("INSERT INTO chat_message (conversation_id, sender_id, content, type, created_at) " +
+            "VALUES (#{conversationId}, #{senderId}, #{content}, #{type}, NOW())")
+    @Options(useGeneratedKeys = true, keyProperty = "id")
+    int sendMessage(ChatMessage message);
+    
+    /** 读取消息的创建时间（按主键，不关联用户表；创建时间由数据库 NOW() 生成，与历史消息使用同一时钟和时区） */
+    @Select("SELECT created_at FROM chat_message WHERE id = #{id}")
+    Date getMessageCreatedAt(Integer id);
 }
\ No newline at end of file
@@ -40,8 +40,8 @@ public interface HomeMapper {
     // 逻辑说明：
     // - 选取商品基础字段（id/title/image/price）
     // - 关联 userinfo 获取卖家昵称与地址
-    // - 统计 fav_products 与 buy_products 的数量作为 views（热度）
-    // - 依据 views 从高到低排序，次序用 pro_id 兜底，限制返回条目数
+    // - 读取冗余计数列 fav_count + buy_count 作为 views（热度），不再聚合 fav_products / buy_products
+    // - 依据 popularity（= fav_count + buy_count 的生成列，有索引）从高到低排序，次序用 pro_id 兜底，限制返回条目数
     @Select("""
     SELECT p.pro_id AS id,
            p.pro_name AS title,
@@ -53,16 +53,10 @@ public interface HomeMapper {
            ui.address AS location,
            NULL AS category,
            CASE WHEN p.is_seal THEN '已售' ELSE '在售' END AS status,
-           COALESCE(f.cnt,0) + COALESCE(b.cnt,0) AS views
+           p.fav_count + p.buy_count AS views
     FROM products p
-    LEFT JOIN (
-        SELECT pro_id, COUNT(*) AS cnt FROM fav_products GROUP BY pro_id
-    ) f ON f.pro_id = p.pro_id
-    LEFT JOIN (
-        SELECT pro_id, COUNT(*) AS cnt FROM buy_products GROUP BY pro_id
-    ) b ON b.pro_id = p.pro_id
     LEFT JOIN userinfo ui ON ui.user_id = p.saler_id
-    ORDER BY views DESC, p.pro_id DESC
+    ORDER BY p.popularity DESC, p.pro_id DESC
     LIMIT #{limit}
     """)
     List<HomeProductRow> listHot(@Param("limit") Integer limit);
@@ -82,14 +76,8 @@ public interface HomeMapper {
            ui.address AS location,
            NULL AS category,
            CASE WHEN p.is_seal THEN '已售' ELSE '在售' END AS status,
-           COALESCE(f.cnt,0) + COALESCE(b.cnt,0) AS views
+           p.fav_count + p.buy_count AS views
     FROM products p
-    LEFT JOIN (
-        SELECT pro_id, COUNT(*) AS cnt FROM fav_products GROUP BY pro_id
-    ) f ON f.pro_id = p.pro_id
-    LEFT JOIN (
-        SELECT pro_id, COUNT(*) AS cnt FROM buy_products GROUP BY pro_id
-    ) b ON b.pro_id = p.pro_id
     LEFT JOIN userinfo ui ON ui.user_id = p.saler_id
     ORDER BY p.pro_id DESC
     LIMIT #{limit}
@@ -5,6 +5,7 @@ import org.example.campusmarket.entity.Order;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 @Mapper
 
@@ -57,8 +58,8 @@ public interface OrdersMapper {
                            @Param("endDate") String endDate);
 
 
-    //更新订单状态。
-    @Update("UPDATE orders SET status = #{status} WHERE id = #{id} AND user_id = #{userId}")
+    //更新订单状态。已取消的订单不再变更（MySQL 驱动默认按匹配行数返回，不加条件时重复取消仍返回 1）。
+    @Update("UPDATE orders SET status = #{status} WHERE id = #{id} AND user_id = #{userId} AND status <> 'cancelled'")
     int updateStatus(@Param("id") Integer id, @Param("userId") Integer userId, @Param("status") String status);
 
     //更新订单评价（评分与评论）。
@@ -66,21 +67,9 @@ public interface OrdersMapper {
     int updateReview(@Param("id") Integer id, @Param("userId") Integer userId, @Param("rating") Integer rating, @Param("comment") String comment);
 
 
-    //统计当前用户的订单总数。
-    @Select("SELECT COUNT(*) FROM orders WHERE user_id = #{userId}")
-    int countTotal(@Param("userId") Integer userId);
-
-    //统计当前用户处于 pending 状态的订单数。
-    @Select("SELECT COUNT(*) FROM orders WHERE user_id = #{userId} AND status = 'pending'")
-    int countPending(@Param("userId") Integer userId);
-
-    //统计当前用户处于 completed 状态的订单数。
-    @Select("SELECT COUNT(*) FROM orders WHERE user_id = #{userId} AND status = 'completed'")
-    int countCompleted(@Param("userId") Integer userId);
-
-    //统计当前用户处于 cancelled 状态的订单数。
-    @Select("SELECT COUNT(*) FROM orders WHERE user_id = #{userId} AND status = 'cancelled'")
-    int countCancelled(@Param("userId") Integer userId);
+    //按状态统计当前用户的订单数（一次 GROUP BY），每行包含 status 与 cnt。
+    @Select("SELECT status, COUNT(*) AS cnt FROM orders WHERE user_id = #{userId} GROUP BY status")
+    List<Map<String, Object>> countByStatus(@Param("userId") Integer userId);
 
     //查询用户作为卖家的订单列表
     @Select({
@@ -117,6 +106,76 @@ public interface OrdersMapper {
                                      @Param("startDate") String startDate,
                                      @Param("endDate") String endDate);
 
+    // 查询用户作为买家或卖家的订单（一条 SQL 合并两路），按创建时间倒序；过滤条件同 getOrderList
+    // limit 为空时返回全部；否则两路各自只取前 offset + limit 条再合并分页，避免扫描用户的全部订单
+    // UNION 去重同一订单既是买家又是卖家的情况
+    @Select("""
+        <script>
+        SELECT * FROM (
+            (SELECT o.id, o.user_id AS userId, o.seller_id AS sellerId, o.product_id AS productId, o.quantity, o.total_price AS totalPrice, o.status, o.created_at AS createdAt, o.rating, o.comment, o.seller_message AS sellerMessage, o.seller_images AS sellerImages
+            FROM orders o
+            WHERE o.user_id = #{userId}
+            <if test="status != null and status != ''">AND o.status = #{status}</if>
+            <if test="startDate != null and startDate != ''">AND o.created_at &gt;= #{startDate}</if>
+            <if test="endDate != null and endDate != ''">AND o.created_at &lt;= #{endDate}</if>
+            <if test="keyword != null and keyword != ''">AND EXISTS (SELECT 1 FROM products p WHERE p.pro_id = o.product_id AND (p.pro_name LIKE CONCAT('%',#{keyword},'%') OR p.discription LIKE CONCAT('%',#{keyword},'%')))</if>
+            ORDER BY o.created_at DESC, o.id DESC
+            <if test="limit != null">LIMIT #{fetchSize}</if>)
+            UNION
+            (SELECT o.id, o.user_id AS userId, o.seller_id AS sellerId, o.product_id AS productId, o.quantity, o.total_price AS totalPrice, o.status, o.created_at AS createdAt, o.rating, o.comment, o.seller_message AS sellerMessage, o.seller_images AS sellerImages
+            FROM orders o
+            WHERE o.seller_id = #{userId}
+            <if test="status != null and status != ''">AND o.status = #{status}</if>
+            <if test="startDate != null and startDate != ''">AND o.created_at &gt;= #{startDate}</if>
+            <if test="endDate != null and endDate != ''">AND o.created_at &lt;= #{endDate}</if>
+            <if test="keyword != null and keyword != ''">AND EXISTS (SELECT 1 FROM products p WHERE p.pro_id = o.product_id AND (p.pro_name LIKE CONCAT('%',#{keyword},'%') OR p.discription LIKE CONCAT('%',#{keyword},'%')))</if>
+            ORDER BY o.created_at DESC, o.id DESC
+            <if test="limit != null">LIMIT #{fetchSize}</if>)
+        ) merged
+        ORDER BY createdAt DESC, id DESC
+        <if test="limit != null">LIMIT #{offset}, #{limit}</if>
+        </script>
+        """)
+    @Results({
+            @Result(property = "id", column = "id"),
+            @Result(property = "userId", column = "userId"),
+            @Result(property = "sellerId", column = "sellerId"),
+            @Result(property = "productId", column = "productId"),
+            @Result(property = "quantity", column = "quantity"),
+            @Result(property = "totalPrice", column = "totalPrice"),
+            @Result(property = "status", column = "status"),
+            @Result(property = "createdAt", column = "createdAt"),
+            @Result(property = "rating", column = "rating"),
+            @Result(property = "comment", column = "comment"),
+            @Result(property = "sellerMessage", column = "sellerMessage"),
+            @Result(property = "sellerImages", column = "sellerImages")
+    })
+    List<Order> getOrderPage(@Param("userId") Integer userId,
+                             @Param("status") String status,
+                             @Param("keyword") String keyword,
+                             @Param("startDate") String startDate,
+                             @Param("endDate") String endDate,
+                             @Param("offset") Integer offset,
+                             @Param("limit") Integer limit,
+                             @Param("fetchSize") Integer fetchSize);
+
+    // 统计用户作为买家或卖家的订单数，过滤条件同 getOrderPage
+    @Select("""
+        <script>
+        SELECT COUNT(*) FROM orders o
+        WHERE (o.user_id = #{userId} OR o.seller_id = #{userId})
+            <if test="status != null and status != ''">AND o.status = #{status}</if>
+            <if test="startDate != null and startDate != ''">AND o.created_at &gt;= #{startDate}</if>
+            <if test="endDate != null and endDate != ''">AND o.created_at &lt;= #{endDate}</if>
+            <if test="keyword != null and keyword != ''">AND EXISTS (SELECT 1 FROM products p WHERE p.pro_id = o.product_id AND (p.pro_name LIKE CONCAT('%',#{keyword},'%') OR p.discription LIKE CONCAT('%',#{keyword},'%')))</if>
+        </script>
+        """)
+    int countOrderPage(@Param("userId") Integer userId,
+                       @Param("status") String status,
+                       @Param("keyword") String keyword,
+                       @Param("startDate") String startDate,
+                       @Param("endDate") String endDate);
+
     // 根据订单ID查询订单详情
     @Select("SELECT id, user_id AS userId, seller_id AS sellerId, product_id AS productId, quantity, total_price AS totalPrice, status, created_at AS createdAt, rating, comment, seller_message AS sellerMessage, seller_images AS sellerImages FROM orders WHERE id = #{orderId}")
     @Results({
@@ -135,7 +194,8 @@ public interface OrdersMapper {
     })
     Order getOrderById(@Param("orderId") Integer orderId);
 
-    // 更新订单状态（包含卖家留言和图片）
-    @Update("UPDATE orders SET status = #{status}, seller_message = #{sellerMessage}, seller_images = #{sellerImages} WHERE id = #{orderId}")
+    // 更新订单状态（包含卖家留言和图片）；已取消的订单不能再次设为取消，避免重复回退购买计数
+    @Update("UPDATE orders SET status = #{status}, seller_message = #{sellerMessage}, seller_images = #{sellerImages} " +
+            "WHERE id = #{orderId} AND (#{status} <> 'cancelled' OR status <> 'cancelled')")
     int updateOrderStatusWithMessage(@Param("orderId") Integer orderId, @Param("status") String status, @Param("sellerMessage") String sellerMessage, @Param("sellerImages") String sellerImages);
 }
\ No newline at end of file
@@ -1,9 +1,12 @@
 package org.example.campusmarket.Mapper;
 
 import org.apache.ibatis.annotations.*;
+import org.apache.ibatis.mapping.ResultSetType;
+import org.apache.ibatis.session.ResultHandler;
 import org.example.campusmarket.DTO.ProductDto;
 import org.example.campusmarket.entity.Product;
 
+import java.util.Collection;
 import java.util.List;
 
 @Mapper
@@ -11,6 +14,16 @@ public interface ProductMapper {
     // 根据ID查询商品基本信息
     @Select("SELECT pro_id, pro_name, price, picture, is_seal, saler_id FROM products WHERE pro_id = #{id}")
     Product findProductBasicById(@Param("id") Integer id);
+
+    // 按ID批量查询商品基本信息（字段同 findProductBasicById），不存在的商品不返回
+    @Select("""
+        <script>
+        SELECT pro_id, pro_name, price, picture, is_seal, saler_id FROM products
+        WHERE pro_id IN
+        <foreach collection="ids" item="id" open="(" separator="," close=")">#{id}</foreach>
+        </script>
+        """)
+    List<Product> findProductBasicByIds(@Param("ids") Collection<Integer> ids);
     
     // 更新商品状态（锁定/解锁）- 布尔值版本
     @Update("UPDATE products SET is_seal = #{isSeal} WHERE pro_id = #{productId}")
@@ -37,6 +50,9 @@ public interface ProductMapper {
 
     // 综合搜索商品列表
     // 支持多条件过滤：关键词、分类、位置、状态、价格范围
+    // 支持两种分页：页码（offset）与游标（cursorId 非空时按上一页最后一条的排序键 + pro_id 继续向后取，offset 传 0）
+    // 关键词优先走 (pro_name, discription) 上的 ngram 全文索引（matchQuery 为布尔模式查询串），
+    // matchQuery 为空时（如单字关键词，短于 ngram 长度）退回 LIKE 模糊匹配
     // 支持多种排序方式：最新、价格升降序、热度
     @Select("""
         <script>
@@ -48,25 +64,30 @@ public interface ProductMapper {
             p.picture as tempImage,
             p.category,
             NULL as "condition",
-            ui.address as location,
+            NULL as location,
             p.created_at as publishTime,
             p.discription as description,
             CASE WHEN p.is_seal = 1 THEN '已下架' ELSE '在售' END as status,
             COALESCE(p.view_count, 0) as views,
-            COALESCE(f.cnt,0) as likes,
+            p.fav_count as likes,
             
-            ui.user_id as tempSellerId,
-            ui.nickname as tempSellerName,
-            ui.username as tempSellerUsername,
-            ui.avatar as tempSellerAvatar,
+            p.saler_id as tempSellerId,
             4.8 as tempSellerRating
             
         FROM products p
+        <if test="location != null and location != ''">
         LEFT JOIN userinfo ui ON p.saler_id = ui.user_id
-        LEFT JOIN (SELECT pro_id, COUNT(*) as cnt FROM fav_products GROUP BY pro_id) f ON f.pro_id = p.pro_id
+        </if>
         <where>
             <if test="keyword != null and keyword != ''">
-                AND (p.pro_name LIKE CONCAT('%', #{keyword}, '%') OR p.discription LIKE CONCAT('%', #{keyword}, '%'))
+                <choose>
+                    <when test="matchQuery != null">
+                        AND MATCH(p.pro_name, p.discription) AGAINST (#{matchQuery} IN BOOLEAN MODE)
+                    </when>
+                    <otherwise>
+                        AND (p.pro_name LIKE CONCAT('%', #{keyword}, '%') OR p.discription LIKE CONCAT('%', #{keyword}, '%'))
+                    </otherwise>
+                </choose>
             </if>
             <if test="category != null and category != ''">
                 AND p.category = #{category}
@@ -87,11 +108,26 @@ public interface ProductMapper {
             <if test="priceMax != null">
                 AND p.price &lt;= #{priceMax}
             </if>
+            <if test="cursorId != null">
+                <choose>
+                    <when test="sort == 'price-low'">
+                        AND (p.price &gt; #{cursorPrice} OR (p.price = #{cursorPrice} AND p.pro_id &lt; #{cursorId}))
+                    </when>
+                    <when test="sort == 'price-high'">
+                        AND (p.price &lt; #{cursorPrice} OR (p.price = #{cursorPrice} AND p.pro_id &lt; #{cursorId}))
+                    </when>
+                    <when test="sort == 'popular'">
+                        AND (COALESCE(p.view_count, 0) &lt; #{cursorViews}
+                             OR (COALESCE(p.view_count, 0) = #{cursorViews} AND p.pro_id &lt; #{cursorId}))
+                    </when>
+                    <otherwise>AND p.pro_id &lt; #{cursorId}</otherwise>
+                </choose>
+            </if>
         </where>
         <choose>
-            <when test="sort == 'price-low'">ORDER BY p.price ASC</when>
-            <when test="sort == 'price-high'">ORDER BY p.price DESC</when>
-            <when test="sort == 'popular'">ORDER BY views DESC</when>
+            <when test="sort == 'price-low'">ORDER BY p.price ASC, p.pro_id DESC</when>
+            <when test="sort == 'price-high'">ORDER BY p.price DESC, p.pro_id DESC</when>
+            <when test="sort == 'popular'">ORDER BY views DESC, p.pro_id DESC</when>
             <otherwise>ORDER BY p.pro_id DESC</otherwise>
         </choose>
         LIMIT #{limit} OFFSET #{offset}
@@ -119,25 +155,109 @@ public interface ProductMapper {
     })
     List<ProductDto.ProductDetail> searchProducts(
         @Param("keyword") String keyword,
+        @Param("matchQuery") String matchQuery,
         @Param("category") String category,
         @Param("location") String location,
         @Param("status") String status,
         @Param("priceMin") Double priceMin,
         @Param("priceMax") Double priceMax,
         @Param("sort") String sort,
+        @Param("cursorId") Integer cursorId,
+        @Param("cursorPrice") Double cursorPrice,
+        @Param("cursorViews") Long cursorViews,
         @Param("offset") int offset,
         @Param("limit") int limit
     );
 
+    // 查询符合条件的商品ID（热度排序用），按 pro_id 倒序
+    // 只读取 products 主键与过滤列；仅按地点过滤时才关联 userinfo
+    // includeIds 非空时只在这些ID中筛选（过滤排行榜候选）；excludeIds 中的ID被排除（已排在热度前列的商品）
+    // limit 为空时不分页
+    @Select("""
+        <script>
+        SELECT p.pro_id
+        FROM products p
+        <if test="location != null and location != ''">
+        LEFT JOIN userinfo ui ON p.saler_id = ui.user_id
+        </if>
+        <where>
+            <if test="keyword != null and keyword != ''">
+                <choose>
+                    <when test="matchQuery != null">
+                        AND MATCH(p.pro_name, p.discription) AGAINST (#{matchQuery} IN BOOLEAN MODE)
+                    </when>
+                    <otherwise>
+                        AND (p.pro_name LIKE CONCAT('%', #{keyword}, '%') OR p.discription LIKE CONCAT('%', #{keyword}, '%'))
+                    </otherwise>
+                </choose>
+            </if>
+            <if test="category != null and category != ''">
+                AND p.category = #{category}
+            </if>
+            <if test="location != null and location != ''">
+                AND ui.address LIKE CONCAT('%', #{location}, '%')
+            </if>
+            <if test="status != null and status != ''">
+                <choose>
+                    <when test="status == '在售'">AND p.is_seal = 0</when>
+                    <when test="status == '已下架'">AND p.is_seal = 1</when>
+                </choose>
+            </if>
+            <if test="priceMin != null">
+                AND p.price &gt;= #{priceMin}
+            </if>
+            <if test="priceMax != null">
+                AND p.price &lt;= #{priceMax}
+            </if>
+            <if test="includeIds != null and includeIds.size() > 0">
+                AND p.pro_id IN
+                <foreach collection="includeIds" item="id" open="(" separator="," close=")">#{id}</foreach>
+            </if>
+            <if test="excludeIds != null and excludeIds.size() > 0">
+                AND p.pro_id NOT IN
+                <foreach collection="excludeIds" item="id" open="(" separator="," close=")">#{id}</foreach>
+            </if>
+        </where>
+        ORDER BY p.pro_id DESC
+        <if test="limit != null">
+        LIMIT #{offset}, #{limit}
+        </if>
+        </script>
+    """)
+    List<Integer> searchProductIds(
+        @Param("keyword") String keyword,
+        @Param("matchQuery") String matchQuery,
+        @Param("category") String category,
+        @Param("location") String location,
+        @Param("status") String status,
+        @Param("priceMin") Double priceMin,
+        @Param("priceMax") Double priceMax,
+        @Param("includeIds") List<Integer> includeIds,
+        @Param("excludeIds") List<Integer> excludeIds,
+        @Param("offset") int offset,
+        @Param("limit") Integer limit
+    );
+
     // 统计符合条件的商品总数，用于分页计算
+    // cap 非空时最多数到 cap 条即停止（估算模式），结果等于 cap 表示实际总数不少于 cap
     @Select("""
         <script>
-        SELECT COUNT(*)
+        SELECT COUNT(*) FROM (
+        SELECT 1
         FROM products p
+        <if test="location != null and location != ''">
         LEFT JOIN userinfo ui ON p.saler_id = ui.user_id
+        </if>
         <where>
             <if test="keyword != null and keyword != ''">
-                AND (p.pro_name LIKE CONCAT('%', #{keyword}, '%') OR p.discription LIKE CONCAT('%', #{keyword}, '%'))
+                <choose>
+                    <when test="matchQuery != null">
+                        AND MATCH(p.pro_name, p.discription) AGAINST (#{matchQuery} IN BOOLEAN MODE)
+                    </when>
+                    <otherwise>
+                        AND (p.pro_name LIKE CONCAT('%', #{keyword}, '%') OR p.discription LIKE CONCAT('%', #{keyword}, '%'))
+                    </otherwise>
+                </choose>
             </if>
             <if test="category != null and category != ''">
                 AND p.category = #{category}
@@ -158,15 +278,19 @@ public interface ProductMapper {
                 AND p.price &lt;= #{priceMax}
             </if>
         </where>
+        <if test="cap != null">LIMIT #{cap}</if>
+        ) matched
         </script>
     """)
     long countProducts(
         @Param("keyword") String keyword,
+        @Param("matchQuery") String matchQuery,
         @Param("category") String category,
         @Param("location") String location,
         @Param("status") String status,
         @Param("priceMin") Double priceMin,
-        @Param("priceMax") Double priceMax
+        @Param("priceMax") Double priceMax,
+        @Param("cap") Integer cap
     );
 
     // 获取单个商品的详细信息
@@ -184,8 +308,8 @@ public interface ProductMapper {
             p.created_at as publishTime,
             p.discription as description,
             CASE WHEN p.is_seal = 1 THEN '已下架' ELSE '在售' END as status,
-            COALESCE(f.cnt,0) + COALESCE(b.cnt,0) as views,
-            COALESCE(f.cnt,0) as likes,
+            p.fav_count + p.buy_count as views,
+            p.fav_count as likes,
             ui.user_id as tempSellerId,
             ui.nickname as tempSellerName,
             ui.username as tempSellerUsername,
@@ -193,8 +317,6 @@ public interface ProductMapper {
             4.8 as tempSellerRating
         FROM products p
         LEFT JOIN userinfo ui ON p.saler_id = ui.user_id
-        LEFT JOIN (SELECT pro_id, COUNT(*) as cnt FROM fav_products GROUP BY pro_id) f ON f.pro_id = p.pro_id
-        LEFT JOIN (SELECT pro_id, COUNT(*) as cnt FROM buy_products GROUP BY pro_id) b ON b.pro_id = p.pro_id
         WHERE p.pro_id = #{id}
     """)
     @ResultMap("productDetailMap")
@@ -209,19 +331,45 @@ public interface ProductMapper {
             p.price,
             p.picture as tempImage,
             p.category,
-            ui.address as location,
+            NULL as location,
             CASE WHEN p.is_seal = 1 THEN '已下架' ELSE '在售' END as status,
-            ui.user_id as tempSellerId,
-            ui.nickname as tempSellerName,
-            ui.username as tempSellerUsername
+            p.saler_id as tempSellerId
         FROM products p
-        LEFT JOIN userinfo ui ON p.saler_id = ui.user_id
         WHERE p.category = #{category} AND p.pro_id != #{excludeId}
         LIMIT 4
     """)
     @ResultMap("productDetailMap")
     List<ProductDto.ProductDetail> getRelatedProducts(@Param("category") String category, @Param("excludeId") Integer excludeId);
 
+    // 根据ID列表批量获取商品详情（用于热门排行榜、热度排序分页），返回顺序不保证与ID列表一致
+    @Select("""
+        <script>
+        SELECT 
+            p.pro_id as id,
+            p.pro_name as title,
+            p.price,
+            p.price as originalPrice,
+            p.picture as tempImage,
+            p.category,
+            NULL as "condition",
+            NULL as location,
+            p.created_at as publishTime,
+            p.discription as description,
+            CASE WHEN p.is_seal = 1 THEN '已下架' ELSE '在售' END as status,
+            COALESCE(p.view_count, 0) as views,
+            p.fav_count as likes,
+            p.saler_id as tempSellerId,
+            4.8 as tempSellerRating
+        FROM products p
+        WHERE p.pro_id IN
+        <foreach item="id" collection="ids" open="(" separator="," close=")">
+            #{id}
+        </foreach>
+        </script>
+    """)
+    @ResultMap("productDetailMap")
+    List<ProductDto.ProductDetail> getProductDetailsByIds(@Param("ids") List<Integer> ids);
+
     // 插入新商品
     @Insert("""
         INSERT INTO products (pro_name, price, category, 
@@ -251,13 +399,58 @@ public interface ProductMapper {
     @Update("UPDATE products SET view_count = COALESCE(view_count, 0) + #{delta} WHERE pro_id = #{productId}")
     int updateViewCountDelta(@Param("productId") Integer productId, @Param("delta") long delta);
 
-    // 查询所有商品的ID和浏览量（用于启动时加载到Redis）
-    @Select("SELECT pro_id, COALESCE(view_count, 0) as view_count FROM products")
+    // 批量增量更新商品浏览量，一条语句更新一批商品
+    @Update("""
+        <script>
+        UPDATE products
+        SET view_count = COALESCE(view_count, 0) + CASE pro_id
+            <foreach item="item" collection="deltas">
+                WHEN #{item.pro_id} THEN #{item.viewCount}
+            </foreach>
+            ELSE 0
+        END
+        WHERE pro_id IN
+        <foreach item="item" collection="deltas" open="(" separator="," close=")">
+            #{item.pro_id}
+        </foreach>
+        </script>
+    """)
+    int updateViewCountDeltas(@Param("deltas") List<ProductViewCount> deltas);
+
+    // 增量维护收藏数（收藏 +1 / 取消收藏 -1），不会减到负数
+    @Update("UPDATE products SET fav_count = GREATEST(fav_count + #{delta}, 0) WHERE pro_id = #{productId}")
+    int incrementFavCount(@Param("productId") Integer productId, @Param("delta") int delta);
+
+    // 增量维护购买数（下单 +1 / 取消订单 -1），不会减到负数
+    @Update("UPDATE products SET buy_count = GREATEST(buy_count + #{delta}, 0) WHERE pro_id = #{productId}")
+    int incrementBuyCount(@Param("productId") Integer productId, @Param("delta") int delta);
+
+    // 查询当前最大商品ID（校正任务分段用）
+    @Select("SELECT COALESCE(MAX(pro_id), 0) FROM products")
+    int getMaxProductId();
+
+    // 按商品ID区间 (fromId, toId] 重新统计收藏数与购买数，校正增量维护可能产生的偏差
+    // 购买数 = buy_products 记录数 + 未取消订单数
+    @Update("""
+        UPDATE products p
+        SET fav_count = (SELECT COUNT(*) FROM fav_products f WHERE f.pro_id = p.pro_id),
+            buy_count = (SELECT COUNT(*) FROM buy_products b WHERE b.pro_id = p.pro_id)
+                      + (SELECT COUNT(*) FROM orders o WHERE o.product_id = p.pro_id AND o.status <> 'cancelled')
+        WHERE p.pro_id > #{fromId} AND p.pro_id <= #{toId}
+    """)
+    int reconcileCounters(@Param("fromId") int fromId, @Param("toId") int toId);
+
+    // 流式查询所有商品的ID和浏览量（用于启动时加载到Redis）
+    // fetchSize = Integer.MIN_VALUE 让 MySQL 驱动逐行返回，不把整张表读进内存
+    @Select("SELECT pro_id, COALESCE(view_count, 0) as view_count, category, is_seal FROM products")
+    @Options(fetchSize = Integer.MIN_VALUE, resultSetType = ResultSetType.FORWARD_ONLY)
     @Results({
         @Result(property = "pro_id", column = "pro_id"),
-        @Result(property = "viewCount", column = "view_count")
+        @Result(property = "viewCount", column = "view_count"),
+        @Result(property = "category", column = "category"),
+        @Result(property = "sealed", column = "is_seal")
     })
-    List<ProductViewCount> getAllProductViewCounts();
+    void streamAllProductViewCounts(ResultHandler<ProductViewCount> handler);
 
     /**
      * 商品浏览量数据传输对象
@@ -265,6 +458,8 @@ public interface ProductMapper {
     class ProductViewCount {
         private Integer pro_id;
         private Long viewCount;
+        private String category;
+        private Boolean sealed;
 
         public Integer getPro_id() {
             return pro_id;
@@ -281,5 +476,21 @@ public interface ProductMapper {
         public void setViewCount(Long viewCount) {
             this.viewCount = viewCount;
         }
+
+        public String getCategory() {
+            return category;
+        }
+
+        public void setCategory(String category) {
+            this.category = category;
+        }
+    
+        public Boolean getSealed() {
+            return sealed;
+        }
+
+        public void setSealed(Boolean sealed) {
+            this.sealed = sealed;
+        }
     }
 }
@@ -3,6 +3,9 @@ package org.example.campusmarket.Mapper;
 import org.apache.ibatis.annotations.*;
 import org.example.campusmarket.entity.UserInfo;
 
+import java.util.Collection;
+import java.util.List;
+
 @Mapper
 public interface UserInfoMapper {
     
@@ -19,6 +22,19 @@ public interface UserInfoMapper {
     @Select("SELECT * FROM userinfo WHERE user_id = #{id}")
     UserInfo findById(@Param("id") Integer id);
     
+    // 批量查询用户摘要（昵称、用户名、头像、地址），用于用户摘要缓存批量回源
+    @Select("""
+        <script>
+        SELECT user_id, username, nickname, avatar, address
+        FROM userinfo
+        WHERE user_id IN
+        <foreach item="id" collection="ids" open="(" separator="," close=")">
+            #{id}
+        </foreach>
+        </script>
+    """)
+    List<UserInfo> findSummariesByIds(@Param("ids") Collection<Integer> ids);
+    
     // 更新用户信息
     @Update("UPDATE userinfo SET " +
             "nickname = #{nickname}, " +
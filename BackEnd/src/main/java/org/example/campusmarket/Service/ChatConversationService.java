@@ -1,28 +1,90 @@
 package org.example.campusmarket.Service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import org.example.campusmarket.DTO.CreateConversationRequest;
 import org.example.campusmarket.entity.ChatConversation;
-import org.example.campusmarket.entity.UserInfo;
 import org.example.campusmarket.Mapper.ChatConversationMapper;
-import org.example.campusmarket.Mapper.UserInfoMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
 
 @Service
-public class ChatConversationService {
+public class ChatConversationService implements MessageListener {
+
+    private static final Logger log = LoggerFactory.getLogger(ChatConversationService.class);
+
+    /** 会话配对失效广播频道，消息格式: {nodeId}|{会话ID,会话ID...} */
+    public static final String PAIR_EVICT_CHANNEL = "chat:pair:evict";
+
+    /** 当前实例标识，用于忽略自己发出的广播 */
+    private final String nodeId = UUID.randomUUID().toString();
 
     @Autowired
     private ChatConversationMapper conversationMapper;
     
     @Autowired
-    private UserInfoMapper userInfoMapper;
+    private UserSummaryCache userSummaryCache;
+
+    @Autowired
+    private ConversationInboxCache conversationInboxCache;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    // 会话配对缓存：会话ID -> 双方会话与用户ID。只缓存双方会话都存在的配对；
+    // 创建、删除会话时失效相关条目，并经 Redis pub/sub 通知其他实例失效（广播失败时其他实例最多滞后 TTL）
+    private final Cache<Integer, ConversationPair> pairCache = Caffeine.newBuilder()
+            .maximumSize(10000)
+            .expireAfterWrite(Duration.ofMinutes(10))
+            .build();
+
+    /**
+     * 会话配对（不可变）
+     *
+     * @param conversationId        会话ID
+     * @param userId                会话所属用户ID
+     * @param partnerId             对方用户ID
+     * @param partnerConversationId 对方的会话ID，对方会话不存在时为 null
+     */
+    public record ConversationPair(Integer conversationId, Integer userId, Integer partnerId,
+                                   Integer partnerConversationId) {
+
+        // 用于存储消息的会话ID：取双方会话ID中较小的那个，确保双方消息存储在同一个地方
+        public Integer storageConversationId() {
+            return partnerConversationId != null && partnerConversationId < conversationId
+                    ? partnerConversationId : conversationId;
+        }
+
+        // 消息接收方用户ID
+        public Integer receiverId(Integer senderId) {
+            return userId.equals(senderId) ? partnerId : userId;
+        }
+
+        // 用户是否为会话的一方
+        public boolean hasMember(Integer memberId) {
+            return userId.equals(memberId) || partnerId.equals(memberId);
+        }
+    }
 
     /** 获取当前用户的会话列表 */
     public List<ChatConversation> listConversations(Integer userId) {
-        return conversationMapper.listConversations(userId);
+        // 未读数与最后一条消息以 Redis 收件箱为准
+        return conversationInboxCache.apply(userId, conversationMapper.listConversations(userId));
     }
     
     /** 根据ID获取会话 */
@@ -44,21 +106,19 @@ public class ChatConversationService {
         }
 
         // 获取双方用户信息
-        UserInfo currentUserInfo = userInfoMapper.findById(currentUserId);
-        UserInfo partnerInfo = userInfoMapper.findById(partnerId);
+        Map<Integer, UserSummaryCache.UserSummary> userInfos = userSummaryCache.getAll(Arrays.asList(currentUserId, partnerId));
+        UserSummaryCache.UserSummary currentUserInfo = userInfos.get(currentUserId);
+        UserSummaryCache.UserSummary partnerInfo = userInfos.get(partnerId);
         
         // 对方的昵称和头像（优先昵称，其次用户名）
         String partnerName = request.getPartnerName();
         String partnerAvatar = request.getPartnerAvatar();
         if (partnerInfo != null) {
             if (partnerName == null || partnerName.trim().isEmpty()) {
-                partnerName = partnerInfo.getNickname();
-                if (partnerName == null || partnerName.trim().isEmpty()) {
-                    partnerName = partnerInfo.getUsername();
-                }
+                partnerName = partnerInfo.displayName();
             }
             if (partnerAvatar == null) {
-                partnerAvatar = partnerInfo.getAvatar();
+                partnerAvatar = partnerInfo.avatar();
             }
         }
         if (partnerName == null || partnerName.trim().isEmpty()) {
@@ -72,11 +132,8 @@ public class ChatConversationService {
         String currentUserName = null;
         String currentUserAvatar = null;
         if (currentUserInfo != null) {
-            currentUserName = currentUserInfo.getNickname();
-            if (currentUserName == null || currentUserName.trim().isEmpty()) {
-                currentUserName = currentUserInfo.getUsername();
-            }
-            currentUserAvatar = currentUserInfo.getAvatar();
+            currentUserName = currentUserInfo.displayName();
+            currentUserAvatar = currentUserInfo.avatar();
         }
         if (currentUserName == null || currentUserName.trim().isEmpty()) {
             currentUserName = "用户" + currentUserId;
@@ -108,6 +165,9 @@ public class ChatConversationService {
             partnerConversation.setProductId(request.getProductId());
             partnerConversation.setUnreadCount(0);
             conversationMapper.createConversation(partnerConversation);
+        } else {
+            // 对方已有会话，其配对发生变化
+            evictPairs(List.of(partnerExistId));
         }
         
         return conversation;
@@ -115,29 +175,109 @@ public class ChatConversationService {
 
     /** 删除会话（仅删除当前用户的会话记录） */
     public boolean deleteConversation(Integer conversationId, Integer currentUserId) {
+        ConversationPair pair = getConversationPair(conversationId);
         int rows = conversationMapper.deleteConversation(conversationId, currentUserId);
+        if (rows > 0) {
+            conversationInboxCache.remove(conversationId, currentUserId);
+            evictPairs(pair != null && pair.partnerConversationId() != null
+                    ? List.of(conversationId, pair.partnerConversationId())
+                    : List.of(conversationId));
+        }
         return rows > 0;
     }
 
-    /** 更新会话最后一条消息（同时更新双方的会话） */
-    public void updateLastMessage(Integer conversationId, String lastMessage, Integer unreadCount) {
-        // 更新当前会话（发送者的会话，未读数不增加）
-        conversationMapper.updateLastMessage(conversationId, lastMessage, 0);
-        
-        // 查找对方的会话ID并更新（接收者的会话，未读数+1）
-        Integer partnerConversationId = conversationMapper.findPartnerConversationId(conversationId);
-        if (partnerConversationId != null) {
-            conversationMapper.updateLastMessage(partnerConversationId, lastMessage, unreadCount);
+    /**
+     * 更新配对双方会话的最后一条消息：发送方会话未读数不变，接收方会话未读数增加 unreadCount
+     * 最后消息时间取消息的创建时间，与消息列表中的时间一致
+     */
+    public void updateLastMessage(ConversationPair pair, String lastMessage, Date messageTime, Integer unreadCount) {
+        if (pair == null) {
+            return;
+        }
+        // 写入 Redis 收件箱后由定时任务写回数据库；Redis 不可用时直接更新数据库，
+        // 并删除双方会话的缓存字段，之后从数据库重新载入，旧值不会再覆盖数据库
+        if (!conversationInboxCache.recordMessage(pair, lastMessage, messageTime, unreadCount)) {
+            conversationMapper.updateLastMessageForPair(pair.conversationId(), pair.partnerConversationId(),
+                    lastMessage, messageTime, unreadCount);
+            conversationInboxCache.evict(pair.conversationId(), pair.userId());
+            if (pair.partnerConversationId() != null) {
+                conversationInboxCache.evict(pair.partnerConversationId(), pair.partnerId());
+            }
         }
     }
-    
+
     /** 获取对方的会话ID */
     public Integer getPartnerConversationId(Integer conversationId) {
-        return conversationMapper.findPartnerConversationId(conversationId);
+        ConversationPair pair = getConversationPair(conversationId);
+        return pair != null ? pair.partnerConversationId() : null;
+    }
+
+    /** 获取会话配对，会话不存在时返回 null */
+    public ConversationPair getConversationPair(Integer conversationId) {
+        if (conversationId == null) {
+            return null;
+        }
+        ConversationPair cached = pairCache.getIfPresent(conversationId);
+        if (cached != null) {
+            return cached;
+        }
+        Map<String, Object> row = conversationMapper.findConversationPair(conversationId);
+        if (row == null) {
+            return null;
+        }
+        ConversationPair pair = new ConversationPair(toInteger(row.get("id")), toInteger(row.get("user_id")),
+                toInteger(row.get("partner_id")), toInteger(row.get("partner_conversation_id")));
+        // 对方会话可能稍后才创建，缺少对方会话的配对不缓存
+        if (pair.partnerConversationId() != null) {
+            pairCache.put(conversationId, pair);
+        }
+        return pair;
+    }
+
+    private static Integer toInteger(Object value) {
+        return value instanceof Number number ? number.intValue() : null;
     }
     
     /** 清除未读消息数 */
     public void clearUnreadCount(Integer conversationId, Integer userId) {
-        conversationMapper.clearUnreadCount(conversationId, userId);
+        // 会话已载入 Redis 收件箱时只修改 Redis，否则直接更新数据库并删除可能残留的缓存字段
+        if (!conversationInboxCache.markRead(conversationId, userId)) {
+            conversationMapper.clearUnreadCount(conversationId, userId);
+            conversationInboxCache.evict(conversationId, userId);
+        }
+    }
+
+    /**
+     * 收到其他实例的会话配对失效广播
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        String[] parts = body.split("\\|", 2);
+        if (parts.length != 2) {
+            log.warn("无法解析会话配对失效消息: {}", body);
+            return;
+        }
+        if (nodeId.equals(parts[0])) {
+            return;
+        }
+        try {
+            for (String id : parts[1].split(",")) {
+                pairCache.invalidate(Integer.valueOf(id));
+            }
+        } catch (NumberFormatException e) {
+            log.warn("无法解析会话配对失效消息: {}", body);
+        }
+    }
+
+    // 失效本实例的会话配对并广播给其他实例；广播失败时只记录日志
+    private void evictPairs(List<Integer> conversationIds) {
+        pairCache.invalidateAll(conversationIds);
+        String ids = conversationIds.stream().map(String::valueOf).collect(Collectors.joining(","));
+        try {
+            stringRedisTemplate.convertAndSend(PAIR_EVICT_CHANNEL, nodeId + "|" + ids);
+        } catch (Exception e) {
+            log.warn("会话配对失效广播失败：conversationIds={}, error={}", ids, e.getMessage());
+        }
     }
-}
\ No newline at end of file
+}
@@ -1,7 +1,6 @@
 package org.example.campusmarket.Service;
 
 import org.example.campusmarket.DTO.SendMessageRequest;
-import org.example.campusmarket.entity.ChatConversation;
 import org.example.campusmarket.entity.ChatMessage;
 import org.example.campusmarket.entity.UserInfo;
 import org.example.campusmarket.Mapper.ChatMessageMapper;
@@ -11,9 +10,13 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @Service
 public class ChatMessageService {
@@ -30,82 +33,101 @@ public class ChatMessageService {
     @Autowired
     private ChatWebSocketHandler webSocketHandler;
 
-    /** 获取会话内的消息列表，并标记哪些是当前用户发送的 */
-    public List<ChatMessage> listMessages(Integer conversationId, Integer currentUserId) {
-        // 获取用于存储消息的会话ID（双方共享）
+    @Autowired
+    private UserSummaryCache userSummaryCache;
+
+    // 分页获取消息时的默认数量与每页最大数量
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 100;
+
+    /**
+     * 分页获取会话内的消息，按ID正序返回，并标记哪些是当前用户发送的
+     * afterId 不为空时返回该消息之后的新消息（增量同步）；否则返回 beforeId 之前（为空时为最新）的一页历史消息。
+     * 返回条数等于 limit 时可能还有更多消息。
+     */
+    public List<ChatMessage> listMessages(Integer conversationId, Integer currentUserId,
+                                          Integer beforeId, Integer afterId, int limit) {
         Integer messageConversationId = getMessageConversationId(conversationId);
-        List<ChatMessage> messages = messageMapper.listMessages(messageConversationId);
-        // 标记是否为当前用户发送的消息
+        int safeLimit = Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+        List<ChatMessage> messages;
+        if (afterId != null) {
+            messages = messageMapper.listMessagesAfter(messageConversationId, afterId, safeLimit);
+        } else {
+            messages = new ArrayList<>(messageMapper.listMessagesBefore(messageConversationId, beforeId, safeLimit));
+            Collections.reverse(messages);
+        }
+        fillSenderNames(messages);
         for (ChatMessage msg : messages) {
             msg.setIsOwn(msg.getSenderId().equals(currentUserId));
-            // 如果是自己发送的消息，显示"我"
             if (msg.getIsOwn()) {
                 msg.setSenderName("我");
             }
         }
         return messages;
     }
-    
+
+    // 发送者昵称从用户摘要缓存批量获取，分页查询不再逐行关联 userinfo
+    private void fillSenderNames(List<ChatMessage> messages) {
+        Set<Integer> senderIds = new HashSet<>();
+        for (ChatMessage msg : messages) {
+            if (msg.getSenderId() != null) {
+                senderIds.add(msg.getSenderId());
+            }
+        }
+        Map<Integer, UserSummaryCache.UserSummary> senders = userSummaryCache.getAll(senderIds);
+        for (ChatMessage msg : messages) {
+            UserSummaryCache.UserSummary sender = msg.getSenderId() != null ? senders.get(msg.getSenderId()) : null;
+            msg.setSenderName(sender != null ? sender.nickname() : null);
+        }
+    }
+
     /** 获取会话内的消息列表（不标记 isOwn，用于无需登录的场景） */
     public List<ChatMessage> listMessages(Integer conversationId) {
         Integer messageConversationId = getMessageConversationId(conversationId);
         return messageMapper.listMessages(messageConversationId);
     }
 
-    /** 发送消息（并更新双方会话的最后一条消息） */
+    /**
+     * 发送消息（并更新双方会话的最后一条消息）
+     * 会话配对只解析一次（通常命中缓存），之后只有一次 INSERT、一次按主键读取创建时间与一次更新双方会话的 UPDATE
+     */
     @Transactional
     public ChatMessage sendMessage(Integer conversationId, Integer senderId, SendMessageRequest request) {
-        // 获取会话信息，确定使用哪个会话ID存储消息
-        // 使用较小的会话ID作为消息存储的会话ID，确保双方消息存储在同一个地方
-        Integer partnerConversationId = conversationService.getPartnerConversationId(conversationId);
-        Integer messageConversationId = conversationId;
-        if (partnerConversationId != null && partnerConversationId < conversationId) {
-            messageConversationId = partnerConversationId;
+        ChatConversationService.ConversationPair pair = conversationService.getConversationPair(conversationId);
+        if (pair == null) {
+            throw new IllegalArgumentException("会话不存在");
         }
         
-        // 构建消息对象
+        // 构建消息对象，使用较小的会话ID作为消息存储的会话ID，确保双方消息存储在同一个地方
         ChatMessage message = new ChatMessage();
-        message.setConversationId(messageConversationId);
+        message.setConversationId(pair.storageConversationId());
         message.setSenderId(senderId);
         message.setContent(request.getContent());
         message.setType(request.getType() != null ? request.getType() : "text");
         
-        // 插入消息到数据库
+        // 插入消息到数据库，创建时间由数据库生成，按主键读回
         messageMapper.sendMessage(message);
-        
-        // 获取完整的消息信息（包含发送者昵称）
-        ChatMessage savedMessage = messageMapper.getMessageById(message.getId());
-        if (savedMessage != null) {
-            savedMessage.setIsOwn(true);
-            savedMessage.setSenderName("我");
-        }
+        message.setCreatedAt(messageMapper.getMessageCreatedAt(message.getId()));
+        message.setIsOwn(true);
+        message.setSenderName("我");
         
         // 生成最后一条消息的摘要
         String lastMessageSummary = generateLastMessageSummary(request.getType(), request.getContent());
         
         // 更新双方会话的最后一条消息
-        conversationService.updateLastMessage(conversationId, lastMessageSummary, 1);
+        conversationService.updateLastMessage(pair, lastMessageSummary, message.getCreatedAt(), 1);
         
         // 通过 WebSocket 通知对方有新消息
-        notifyPartner(conversationId, senderId, savedMessage != null ? savedMessage : message);
+        notifyPartner(conversationId, pair.receiverId(senderId), message);
         
-        return savedMessage != null ? savedMessage : message;
+        return message;
     }
     
     /**
      * 通过 WebSocket 通知对方有新消息
      */
-    private void notifyPartner(Integer conversationId, Integer senderId, ChatMessage message) {
+    private void notifyPartner(Integer conversationId, Integer partnerId, ChatMessage message) {
         try {
-            // 获取会话信息，找到对方用户ID
-            ChatConversation conversation = conversationService.getConversationById(conversationId);
-            if (conversation == null) return;
-            
-            // 确定对方用户ID
-            Integer partnerId = conversation.getUserId().equals(senderId) 
-                ? conversation.getPartnerId() 
-                : conversation.getUserId();
-            
             // 构建推送消息
             Map<String, Object> wsMessage = new HashMap<>();
             wsMessage.put("type", "new_message");
@@ -12,6 +12,9 @@ public class CommentService {
     
     @Autowired
     private CommentMapper commentMapper;
+
+    @Autowired
+    private ProductHotnessService productHotnessService;
     
     public Comment addComment(Integer productId, Integer userId, String content) {
         if (content == null || content.trim().isEmpty()) {
@@ -27,6 +30,7 @@ public class CommentService {
         comment.setContent(content.trim());
         
         commentMapper.insertComment(comment);
+        productHotnessService.recordHotnessEvent(productId, ProductHotnessService.HotnessEvent.COMMENT);
         
         // 重新查询以获取完整信息（包括用户昵称和头像）
         List<Comment> comments = commentMapper.findByProductId(productId);
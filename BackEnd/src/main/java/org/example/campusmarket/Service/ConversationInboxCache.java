@@ -0,0 +1,377 @@
+package org.example.campusmarket.Service;
+
+import org.example.campusmarket.Mapper.ChatConversationMapper;
+import org.example.campusmarket.entity.ChatConversation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 会话收件箱缓存
+ * 每个用户一个 Redis hash：chat:inbox:{userId}，保存该用户各会话的易变字段
+ * （field 为 {conversationId}:unread / {conversationId}:last / {conversationId}:time，time 为毫秒时间戳）。
+ * 会话的易变字段一旦载入 Redis 即以 Redis 为准：发消息、标记已读只修改 Redis 并把会话记入待同步集合，
+ * 由 ConversationInboxFlushScheduler 定期批量写回 chat_conversation（write-behind）。
+ * 会话尚未载入时先从数据库载入（HSETNX，不覆盖并发写入），Redis 不可用时调用方直接写数据库，
+ * 并调用 evict 删除该会话的缓存字段，避免 Redis 中的旧值继续生效并在写回时覆盖数据库；
+ * 删除失败时记在本地，Redis 恢复后在下次读取或写回之前补删。
+ */
+@Component
+public class ConversationInboxCache {
+
+    private static final Logger log = LoggerFactory.getLogger(ConversationInboxCache.class);
+
+    /** 用户收件箱 hash 前缀，格式: chat:inbox:{userId} */
+    public static final String KEY_INBOX = "chat:inbox:";
+
+    /** 待写回数据库的会话集合，member 格式: {userId}:{conversationId} */
+    public static final String KEY_INBOX_DIRTY = "chat:inbox:dirty";
+
+    /** 正在写回中的会话集合，由 KEY_INBOX_DIRTY 原子改名而来 */
+    public static final String KEY_INBOX_DIRTY_SYNCING = "chat:inbox:dirty:syncing";
+
+    // 每条 UPDATE 写回的会话数
+    private static final int FLUSH_BATCH_SIZE = 200;
+
+    private static final String FIELD_UNREAD = ":unread";
+    private static final String FIELD_LAST = ":last";
+    private static final String FIELD_TIME = ":time";
+
+    /**
+     * 新消息脚本：更新双方会话的最后一条消息与时间，接收方未读数增加
+     * KEYS[1] 发送方收件箱, KEYS[2] 接收方收件箱, KEYS[3] 待同步集合
+     * ARGV[1] 发送方会话ID, ARGV[2] 接收方会话ID（无则为空串）, ARGV[3] 消息摘要, ARGV[4] 消息时间,
+     * ARGV[5] 未读数增量, ARGV[6] 发送方用户ID, ARGV[7] 接收方用户ID
+     * 返回 1 表示已更新，0 表示有会话尚未载入 Redis（未做任何修改）
+     */
+    private static final RedisScript<Long> MESSAGE_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('HEXISTS', KEYS[1], ARGV[1] .. ':unread') == 0 then
+                return 0
+            end
+            if ARGV[2] ~= '' and redis.call('HEXISTS', KEYS[2], ARGV[2] .. ':unread') == 0 then
+                return 0
+            end
+            redis.call('HSET', KEYS[1], ARGV[1] .. ':last', ARGV[3], ARGV[1] .. ':time', ARGV[4])
+            redis.call('SADD', KEYS[3], ARGV[6] .. ':' .. ARGV[1])
+            if ARGV[2] ~= '' then
+                redis.call('HSET', KEYS[2], ARGV[2] .. ':last', ARGV[3], ARGV[2] .. ':time', ARGV[4])
+                redis.call('HINCRBY', KEYS[2], ARGV[2] .. ':unread', tonumber(ARGV[5]))
+                redis.call('SADD', KEYS[3], ARGV[7] .. ':' .. ARGV[2])
+            end
+            return 1
+            """, Long.class);
+
+    /**
+     * 已读脚本：未读数清零
+     * KEYS[1] 收件箱, KEYS[2] 待同步集合; ARGV[1] 会话ID, ARGV[2] 用户ID
+     * 返回 1 表示已更新，0 表示会话尚未载入 Redis
+     */
+    private static final RedisScript<Long> READ_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('HEXISTS', KEYS[1], ARGV[1] .. ':unread') == 0 then
+                return 0
+            end
+            if redis.call('HGET', KEYS[1], ARGV[1] .. ':unread') ~= '0' then
+                redis.call('HSET', KEYS[1], ARGV[1] .. ':unread', '0')
+                redis.call('SADD', KEYS[2], ARGV[2] .. ':' .. ARGV[1])
+            end
+            return 1
+            """, Long.class);
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ChatConversationMapper conversationMapper;
+
+    // Redis 不可用时未能删除的会话缓存字段，member 格式同待同步集合: {userId}:{conversationId}
+    private final Set<String> pendingEvictions = ConcurrentHashMap.newKeySet();
+
+    public ConversationInboxCache(StringRedisTemplate stringRedisTemplate, ChatConversationMapper conversationMapper) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.conversationMapper = conversationMapper;
+    }
+
+    /**
+     * 记录一条新消息
+     *
+     * @param pair        会话配对，pair.conversationId() 为发送方会话（未读数不变）
+     * @param lastMessage 消息摘要
+     * @param messageTime 消息创建时间（数据库生成），为空时取当前时间
+     * @param unreadCount 接收方未读数增量
+     * @return 是否已写入 Redis；false 时调用方应直接更新数据库
+     */
+    public boolean recordMessage(ChatConversationService.ConversationPair pair, String lastMessage, Date messageTime,
+                                 Integer unreadCount) {
+        Integer receiverConversationId = pair.partnerConversationId();
+        List<String> keys = List.of(getInboxKey(pair.userId()), getInboxKey(pair.partnerId()), KEY_INBOX_DIRTY);
+        String[] args = {
+                pair.conversationId().toString(),
+                receiverConversationId != null ? receiverConversationId.toString() : "",
+                lastMessage != null ? lastMessage : "",
+                String.valueOf(messageTime != null ? messageTime.getTime() : System.currentTimeMillis()),
+                String.valueOf(unreadCount != null ? unreadCount : 0),
+                pair.userId().toString(),
+                pair.partnerId().toString()
+        };
+        try {
+            if (Long.valueOf(1).equals(stringRedisTemplate.execute(MESSAGE_SCRIPT, keys, (Object[]) args))) {
+                return true;
+            }
+            // 会话尚未载入，从数据库载入后重试一次
+            load(pair.conversationId());
+            if (receiverConversationId != null) {
+                load(receiverConversationId);
+            }
+            return Long.valueOf(1).equals(stringRedisTemplate.execute(MESSAGE_SCRIPT, keys, (Object[]) args));
+        } catch (Exception e) {
+            log.warn("更新会话收件箱失败，直接写数据库 - conversationId: {}, error: {}", pair.conversationId(), e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 清零会话未读数
+     *
+     * @return 是否已写入 Redis；false 时（会话未载入或 Redis 不可用）调用方应直接更新数据库
+     */
+    public boolean markRead(Integer conversationId, Integer userId) {
+        try {
+            Long result = stringRedisTemplate.execute(READ_SCRIPT, List.of(getInboxKey(userId), KEY_INBOX_DIRTY),
+                    conversationId.toString(), userId.toString());
+            return Long.valueOf(1).equals(result);
+        } catch (Exception e) {
+            log.warn("清除会话未读数失败，直接写数据库 - conversationId: {}, error: {}", conversationId, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 用 Redis 中的易变字段覆盖数据库查询到的会话列表，并按最后活跃时间倒序排列
+     * 尚未载入 Redis 的会话用本次查询结果载入；Redis 不可用时原样返回
+     */
+    public List<ChatConversation> apply(Integer userId, List<ChatConversation> conversations) {
+        if (conversations == null || conversations.isEmpty()) {
+            return conversations;
+        }
+        String key = getInboxKey(userId);
+        Map<Object, Object> inbox;
+        try {
+            evictPending();
+            inbox = stringRedisTemplate.opsForHash().entries(key);
+        } catch (Exception e) {
+            log.warn("读取会话收件箱失败，使用数据库数据 - userId: {}, error: {}", userId, e.getMessage());
+            return conversations;
+        }
+
+        List<ChatConversation> missing = new ArrayList<>();
+        for (ChatConversation conversation : conversations) {
+            String id = conversation.getId().toString();
+            Object unread = inbox.get(id + FIELD_UNREAD);
+            if (unread == null) {
+                missing.add(conversation);
+                continue;
+            }
+            conversation.setUnreadCount(parseInt(unread.toString()));
+            String last = (String) inbox.get(id + FIELD_LAST);
+            conversation.setLastMessage(last == null || last.isEmpty() ? null : last);
+            Date time = parseTime((String) inbox.get(id + FIELD_TIME));
+            if (time != null) {
+                conversation.setLastMessageTime(time);
+            }
+        }
+        if (!missing.isEmpty()) {
+            store(missing);
+        }
+
+        List<ChatConversation> sorted = new ArrayList<>(conversations);
+        sorted.sort(Comparator.comparing(ConversationInboxCache::lastActive,
+                Comparator.nullsLast(Comparator.reverseOrder())));
+        return sorted;
+    }
+
+    /**
+     * 会话删除后移除其缓存字段
+     */
+    public void remove(Integer conversationId, Integer userId) {
+        evict(conversationId, userId);
+    }
+
+    /**
+     * 删除会话的缓存字段及其待同步标记，下次读取时从数据库重新载入
+     * 调用方绕过 Redis 直接写数据库后调用；Redis 不可用时记下，恢复后补删
+     */
+    public void evict(Integer conversationId, Integer userId) {
+        if (conversationId == null || userId == null) {
+            return;
+        }
+        String member = userId + ":" + conversationId;
+        try {
+            deleteFields(List.of(member));
+        } catch (Exception e) {
+            pendingEvictions.add(member);
+            log.warn("删除会话收件箱缓存失败，Redis 恢复后重试 - conversationId: {}, error: {}", conversationId, e.getMessage());
+        }
+    }
+
+    /**
+     * 把待同步会话的易变字段批量写回数据库
+     * 上次写回中断时遗留的写回中集合优先处理；写回期间的新变更进入新的待同步集合，下次写回
+     */
+    public void flush() {
+        // 先补删 Redis 不可用期间未能删除的字段，避免旧值被写回覆盖数据库
+        if (!evictPending()) {
+            return;
+        }
+        if (!Boolean.TRUE.equals(stringRedisTemplate.hasKey(KEY_INBOX_DIRTY_SYNCING))) {
+            if (!Boolean.TRUE.equals(stringRedisTemplate.renameIfAbsent(KEY_INBOX_DIRTY, KEY_INBOX_DIRTY_SYNCING))) {
+                return;
+            }
+        }
+        Set<String> members = stringRedisTemplate.opsForSet().members(KEY_INBOX_DIRTY_SYNCING);
+        if (members == null || members.isEmpty()) {
+            stringRedisTemplate.delete(KEY_INBOX_DIRTY_SYNCING);
+            return;
+        }
+
+        // 按用户分组，每个用户一次 HGETALL
+        Map<Integer, List<Integer>> byUser = new HashMap<>();
+        for (String member : members) {
+            String[] parts = member.split(":", 2);
+            try {
+                byUser.computeIfAbsent(Integer.valueOf(parts[0]), key -> new ArrayList<>()).add(Integer.valueOf(parts[1]));
+            } catch (RuntimeException e) {
+                log.error("解析待同步会话失败: {}", member);
+            }
+        }
+        List<ChatConversation> rows = new ArrayList<>();
+        for (Map.Entry<Integer, List<Integer>> entry : byUser.entrySet()) {
+            Map<Object, Object> inbox = stringRedisTemplate.opsForHash().entries(getInboxKey(entry.getKey()));
+            for (Integer conversationId : entry.getValue()) {
+                Object unread = inbox.get(conversationId + FIELD_UNREAD);
+                if (unread == null) {
+                    // 会话已删除
+                    continue;
+                }
+                ChatConversation row = new ChatConversation();
+                row.setId(conversationId);
+                row.setUserId(entry.getKey());
+                row.setUnreadCount(parseInt(unread.toString()));
+                String last = (String) inbox.get(conversationId + FIELD_LAST);
+                row.setLastMessage(last == null || last.isEmpty() ? null : last);
+                row.setLastMessageTime(parseTime((String) inbox.get(conversationId + FIELD_TIME)));
+                rows.add(row);
+            }
+        }
+
+        for (int from = 0; from < rows.size(); from += FLUSH_BATCH_SIZE) {
+            conversationMapper.flushInbox(rows.subList(from, Math.min(from + FLUSH_BATCH_SIZE, rows.size())));
+        }
+        stringRedisTemplate.delete(KEY_INBOX_DIRTY_SYNCING);
+        log.debug("会话收件箱写回完成，会话数: {}", rows.size());
+    }
+
+    public String getInboxKey(Integer userId) {
+        return KEY_INBOX + userId;
+    }
+
+    // 补删记下的会话缓存字段，Redis 仍不可用时返回 false
+    private boolean evictPending() {
+        if (pendingEvictions.isEmpty()) {
+            return true;
+        }
+        List<String> members = new ArrayList<>(pendingEvictions);
+        try {
+            deleteFields(members);
+        } catch (Exception e) {
+            log.warn("补删会话收件箱缓存失败 - count: {}, error: {}", members.size(), e.getMessage());
+            return false;
+        }
+        members.forEach(pendingEvictions::remove);
+        log.info("已补删会话收件箱缓存，会话数: {}", members.size());
+        return true;
+    }
+
+    // 删除会话的易变字段并移出待同步集合，member 格式: {userId}:{conversationId}
+    private void deleteFields(List<String> members) {
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            for (String member : members) {
+                String[] parts = member.split(":", 2);
+                String id = parts[1];
+                conn.hDel(KEY_INBOX + parts[0], id + FIELD_UNREAD, id + FIELD_LAST, id + FIELD_TIME);
+                conn.sRem(KEY_INBOX_DIRTY, member);
+            }
+            return null;
+        });
+    }
+
+    // 从数据库载入单个会话的易变字段
+    private void load(Integer conversationId) {
+        ChatConversation conversation = conversationMapper.getConversationById(conversationId);
+        if (conversation != null) {
+            store(List.of(conversation));
+        }
+    }
+
+    // 以 HSETNX 写入会话的易变字段，已存在的字段（可能已有更新的值）不覆盖
+    private void store(List<ChatConversation> conversations) {
+        try {
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection conn = (StringRedisConnection) connection;
+                for (ChatConversation conversation : conversations) {
+                    String key = getInboxKey(conversation.getUserId());
+                    String id = conversation.getId().toString();
+                    Date time = conversation.getLastMessageTime();
+                    conn.hSetNX(key, id + FIELD_LAST, conversation.getLastMessage() != null ? conversation.getLastMessage() : "");
+                    conn.hSetNX(key, id + FIELD_TIME, time != null ? String.valueOf(time.getTime()) : "");
+                    // unread 字段作为已载入标记，最后写入
+                    conn.hSetNX(key, id + FIELD_UNREAD, String.valueOf(
+                            conversation.getUnreadCount() != null ? conversation.getUnreadCount() : 0));
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("载入会话收件箱失败 - error: {}", e.getMessage());
+        }
+    }
+
+    // 最后活跃时间：最后一条消息时间与数据库更新时间中较晚的一个
+    private static Date lastActive(ChatConversation conversation) {
+        Date time = conversation.getLastMessageTime();
+        Date updated = conversation.getUpdatedAt();
+        if (time == null) {
+            return updated;
+        }
+        return updated != null && updated.after(time) ? updated : time;
+    }
+
+    private static int parseInt(String value) {
+        try {
+            return Math.max(Integer.parseInt(value), 0);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static Date parseTime(String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        try {
+            return new Date(Long.parseLong(value));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
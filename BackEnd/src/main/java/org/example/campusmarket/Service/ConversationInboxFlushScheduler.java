@@ -0,0 +1,36 @@
+package org.example.campusmarket.Service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 会话收件箱写回定时任务
+ * 定期把 Redis 中变更过的会话未读数与最后一条消息批量写回 chat_conversation
+ */
+@Component
+public class ConversationInboxFlushScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(ConversationInboxFlushScheduler.class);
+
+    private final ConversationInboxCache conversationInboxCache;
+
+    public ConversationInboxFlushScheduler(ConversationInboxCache conversationInboxCache) {
+        this.conversationInboxCache = conversationInboxCache;
+    }
+
+    /**
+     * 定时写回会话收件箱
+     * 写回间隔从配置文件读取，默认 5 秒
+     */
+    @Scheduled(fixedDelayString = "${chat.inbox-flush-interval:5000}",
+               initialDelayString = "${chat.inbox-flush-interval:5000}")
+    public void flushInbox() {
+        try {
+            conversationInboxCache.flush();
+        } catch (Exception e) {
+            log.error("定时任务：会话收件箱写回失败", e);
+        }
+    }
+}
@@ -2,9 +2,11 @@ package org.example.campusmarket.Service;
 
 import org.example.campusmarket.DTO.FavoriteDto;
 import org.example.campusmarket.Mapper.FavoriteMapper;
+import org.example.campusmarket.Mapper.ProductMapper;
 import org.example.campusmarket.entity.Product;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -16,6 +18,10 @@ import java.util.Map;
 public class FavoriteService {
     @Autowired
     private FavoriteMapper favoriteMapper;
+    @Autowired
+    private ProductMapper productMapper;
+    @Autowired
+    private ProductHotnessService productHotnessService;
 
     //查找收藏商品（原始格式）
     public List<Product> GetFavoritesByUserId(Integer userId) {
@@ -112,7 +118,8 @@ public class FavoriteService {
         return result;
     }
 
-    //增加收藏商品
+    //增加收藏商品，同一事务内维护商品收藏数
+    @Transactional
     public FavoriteDto.AddResponse AddFavorite(Integer userId, Integer productId) {
         if (userId == null || productId == null) {
             return null;
@@ -127,17 +134,24 @@ public class FavoriteService {
         LocalDateTime now = LocalDateTime.now();
         int rows = favoriteMapper.insertFavorite(userId, productId, now);
         if (rows == 1) {
+            productMapper.incrementFavCount(productId, 1);
+            productHotnessService.recordHotnessEvent(productId, ProductHotnessService.HotnessEvent.FAVORITE);
             Integer newId = favoriteMapper.getFavoriteId(userId, productId);
             return new FavoriteDto.AddResponse(newId, productId, now);
         }
         return null;
     }
 
-    //移除收藏商品
+    //移除收藏商品，同一事务内维护商品收藏数
+    @Transactional
     public boolean RemoveFavorite(Integer userId, Integer productId) {
         if (userId == null || productId == null) {
             return false;
         }
-        return favoriteMapper.deleteFavorite(userId, productId) >= 0; // 即使不存在也返回成功
+        int rows = favoriteMapper.deleteFavorite(userId, productId);
+        if (rows > 0) {
+            productMapper.incrementFavCount(productId, -rows);
+        }
+        return rows >= 0; // 即使不存在也返回成功
     }
 }
\ No newline at end of file
@@ -5,10 +5,14 @@ import org.example.campusmarket.Mapper.HomeMapper;
 import org.example.campusmarket.entity.HomeProductRow;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -25,14 +29,67 @@ public class HomeService {
     @Autowired
     private ProductHotnessService productHotnessService; // 商品热度服务
 
+    // 首页列表本地缓存：每个 limit（及热门窗口）缓存一份构建好的列表
+    // 写入 5 秒后的首次访问触发异步刷新，刷新期间继续返回旧值；最长 30 秒过期
+    // 商品发布、修改、删除、售出时通过 ProductChangeNotifier 事件整体失效（跨实例经 Redis pub/sub 广播）
+    private static final Duration FEED_CACHE_REFRESH = Duration.ofSeconds(5);
+    private static final Duration FEED_CACHE_EXPIRE = Duration.ofSeconds(30);
+    private static final int FEED_CACHE_MAX_ENTRIES = 64;
+
+    // 热门列表缓存 key：返回条数 + 时间窗口（null 表示总热度排行榜）
+    private record HotFeedKey(Integer limit, ProductHotnessService.TrendingWindow window) {
+    }
+
+    private final LoadingCache<HotFeedKey, List<HomeDto.HomeProduct>> hotFeedCache = Caffeine.newBuilder()
+            .maximumSize(FEED_CACHE_MAX_ENTRIES)
+            .refreshAfterWrite(FEED_CACHE_REFRESH)
+            .expireAfterWrite(FEED_CACHE_EXPIRE)
+            .build(key -> List.copyOf(loadHotProducts(key.limit(), key.window())));
+
+    private final LoadingCache<Integer, List<HomeDto.HomeProduct>> latestFeedCache = Caffeine.newBuilder()
+            .maximumSize(FEED_CACHE_MAX_ENTRIES)
+            .refreshAfterWrite(FEED_CACHE_REFRESH)
+            .expireAfterWrite(FEED_CACHE_EXPIRE)
+            .build(limit -> List.copyOf(loadLatestProducts(limit)));
+
     // 获取热门商品列表
     // limit：返回的最大条目数
     // 使用 Redis 热门排行榜获取热门商品ID，然后查询商品详情
     // 如果 Redis 排行榜中商品数量不足，从数据库补充未被浏览过的商品
     // Requirements: 2.1, 2.3
     public List<HomeDto.HomeProduct> getHotProducts(Integer limit) {
+        return getHotProducts(limit, null);
+    }
+
+    // 获取指定时间窗口内的热门商品列表
+    // window：滑动窗口（1h / 24h / 7d），为 null 时使用总热度排行榜
+    // 窗口热度榜由定时任务从小时桶汇总，读取只需 O(topN)
+    // 结果来自本地缓存，浏览量最多滞后一个刷新周期
+    public List<HomeDto.HomeProduct> getHotProducts(Integer limit, ProductHotnessService.TrendingWindow window) {
+        return hotFeedCache.get(new HotFeedKey(limit, window));
+    }
+
+    // 获取最新发布商品列表
+    // limit：返回的最大条目数
+    // 结果来自本地缓存，商品变更时立即失效
+    public List<HomeDto.HomeProduct> getLatestProducts(Integer limit) {
+        return latestFeedCache.get(limit);
+    }
+
+    // 商品发生变更时清空首页列表缓存
+    @EventListener
+    public void onProductChanged(ProductChangeNotifier.ProductChangedEvent event) {
+        hotFeedCache.invalidateAll();
+        latestFeedCache.invalidateAll();
+        log.debug("商品 {} 发生变更（{}），首页列表缓存已清空", event.productId(), event.type());
+    }
+
+    // 从 Redis 排行榜和数据库构建热门商品列表（缓存未命中或刷新时调用）
+    private List<HomeDto.HomeProduct> loadHotProducts(Integer limit, ProductHotnessService.TrendingWindow window) {
         // 1. 从 Redis 获取热门商品ID列表
-        List<Integer> hotProductIds = productHotnessService.getHotRanking(limit);
+        List<Integer> hotProductIds = window == null
+                ? productHotnessService.getHotRanking(limit)
+                : productHotnessService.getTrendingRanking(window, limit);
         
         // 如果 Redis 排行榜为空，降级到原有的数据库查询
         if (hotProductIds == null || hotProductIds.isEmpty()) {
@@ -170,9 +227,8 @@ public class HomeService {
         return items;
     }
 
-    // 获取最新发布商品列表
-    // limit：返回的最大条目数
-    public List<HomeDto.HomeProduct> getLatestProducts(Integer limit) {
+    // 从数据库构建最新发布商品列表（缓存未命中或刷新时调用）
+    private List<HomeDto.HomeProduct> loadLatestProducts(Integer limit) {
         // rows：数据库查询到的原始行（最近 pro_id 较大）
         List<HomeProductRow> rows = homeMapper.listLatest(limit);
         // items：转换后的返回数据
@@ -1,5 +1,7 @@
 package org.example.campusmarket.Service;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.boot.ApplicationArguments;
@@ -19,15 +21,27 @@ public class HotnessDataLoader implements ApplicationRunner {
 
     private final ProductHotnessService productHotnessService;
 
-    public HotnessDataLoader(ProductHotnessService productHotnessService) {
+    private final MeterRegistry meterRegistry;
+
+    public HotnessDataLoader(ProductHotnessService productHotnessService, MeterRegistry meterRegistry) {
         this.productHotnessService = productHotnessService;
+        this.meterRegistry = meterRegistry;
     }
 
     @Override
     public void run(ApplicationArguments args) {
         log.info("应用启动：开始加载热度数据到 Redis...");
         try {
-            productHotnessService.loadFromDatabase();
+            // 记录预热耗时，便于观察发布后 Pod 就绪时间
+            Timer.Sample sample = Timer.start(meterRegistry);
+            int loaded = productHotnessService.loadFromDatabase();
+            long elapsedNanos = sample.stop(meterRegistry.timer("hotness.warmup.duration"));
+            meterRegistry.counter("hotness.warmup.products").increment(loaded);
+            log.info("应用启动：预热写入 {} 个商品，耗时 {} ms", loaded, elapsedNanos / 1_000_000);
+            int registered = productHotnessService.registerUntrackedDeltaKeys();
+            if (registered > 0) {
+                log.info("应用启动：补登记了 {} 个待同步的浏览量增量", registered);
+            }
             log.info("应用启动：热度数据加载完成");
         } catch (Exception e) {
             log.error("应用启动：热度数据加载失败，系统将继续运行但热度数据可能不完整", e);
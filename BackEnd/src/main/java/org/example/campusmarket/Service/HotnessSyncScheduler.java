@@ -40,4 +40,56 @@ public class HotnessSyncScheduler {
             log.error("定时任务：热度数据同步失败", e);
         }
     }
+
+    /**
+     * 定时将本地浏览量缓冲刷新到 Redis
+     * 刷新间隔从配置文件读取，默认 500 毫秒；未开启写缓冲时缓冲为空，直接返回
+     */
+    @Scheduled(fixedDelayString = "${hotness.view-buffer-flush-interval:500}")
+    public void flushViewBuffer() {
+        try {
+            productHotnessService.flushViewBuffer();
+        } catch (Exception e) {
+            log.error("定时任务：浏览量缓冲刷新失败", e);
+        }
+    }
+
+    /**
+     * 定时重新归一化热度排行榜
+     * 间隔从配置文件读取，默认 1 小时；未开启热度衰减时直接返回
+     */
+    @Scheduled(fixedRateString = "${hotness.decay-renormalize-interval:3600000}")
+    public void renormalizeHotRanking() {
+        try {
+            productHotnessService.renormalizeHotRanking();
+        } catch (Exception e) {
+            log.error("定时任务：热度排行榜重新归一化失败", e);
+        }
+    }
+
+    /**
+     * 定时汇总小时桶，刷新 1h / 24h / 7d 滑动窗口热度榜
+     * 汇总间隔从配置文件读取，默认 1 分钟
+     */
+    @Scheduled(fixedRateString = "${hotness.trending-refresh-interval:60000}")
+    public void aggregateTrendingRankings() {
+        try {
+            productHotnessService.aggregateTrendingRankings();
+        } catch (Exception e) {
+            log.error("定时任务：滑动窗口热度榜汇总失败", e);
+        }
+    }
+
+    /**
+     * 定时把热门排行榜裁剪到配置的容量
+     * 裁剪间隔从配置文件读取，默认 10 分钟
+     */
+    @Scheduled(fixedRateString = "${hotness.ranking-trim-interval:600000}")
+    public void trimHotRankings() {
+        try {
+            productHotnessService.trimHotRankings();
+        } catch (Exception e) {
+            log.error("定时任务：热门排行榜裁剪失败", e);
+        }
+    }
 }
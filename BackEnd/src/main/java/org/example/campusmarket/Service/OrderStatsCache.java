@@ -0,0 +1,218 @@
+package org.example.campusmarket.Service;
+
+import org.example.campusmarket.DTO.OrderDto;
+import org.example.campusmarket.Mapper.OrdersMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 用户订单统计缓存
+ * 每个用户（买家）一个 Redis hash：order:stats:{userId}，field 为 total 与各订单状态，value 为订单数。
+ * 不存在时由一次 GROUP BY status 查询重建；下单、确认收货、取消、卖家更新状态时按状态迁移增量维护。
+ * 增量只作用于已存在的 hash，避免在没有基数的情况下写出残缺的统计；TTL 到期后重新按数据库统计，限制计数漂移。
+ * 每次状态迁移同时递增版本号 order:stats:ver:{userId}；重建在查询前读取版本号，写入时版本号已变化则放弃写入，
+ * 避免把查询与写入之间发生的迁移丢失在重建结果中（下次读取时重新统计）。
+ */
+@Component
+public class OrderStatsCache {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderStatsCache.class);
+
+    // Redis key 前缀
+    public static final String KEY_ORDER_STATS = "order:stats:";
+
+    // 统计版本号 key 前缀，格式: order:stats:ver:{userId}
+    public static final String KEY_ORDER_STATS_VERSION = "order:stats:ver:";
+
+    // hash 中的总数 field
+    private static final String FIELD_TOTAL = "total";
+
+    // 统计缓存过期时间
+    private static final Duration TTL = Duration.ofDays(1);
+
+    /**
+     * 状态迁移脚本：递增版本号，hash 存在时原子地调整计数
+     * KEYS[1] 统计 key, KEYS[2] 版本号 key
+     * ARGV[1] 原状态（新建订单为空串）, ARGV[2] 新状态, ARGV[3] 过期秒数
+     * 返回 1 表示已更新，0 表示 hash 不存在（下次读取时重建）
+     */
+    private static final RedisScript<Long> TRANSITION_SCRIPT = new DefaultRedisScript<>("""
+            redis.call('INCR', KEYS[2])
+            redis.call('EXPIRE', KEYS[2], ARGV[3])
+            if redis.call('EXISTS', KEYS[1]) == 0 then
+                return 0
+            end
+            if ARGV[1] == '' then
+                redis.call('HINCRBY', KEYS[1], 'total', 1)
+            else
+                redis.call('HINCRBY', KEYS[1], ARGV[1], -1)
+            end
+            redis.call('HINCRBY', KEYS[1], ARGV[2], 1)
+            return 1
+            """, Long.class);
+
+    /**
+     * 重建脚本：版本号未变化时覆盖统计 hash
+     * KEYS[1] 统计 key, KEYS[2] 版本号 key
+     * ARGV[1] 查询前读取的版本号（不存在为空串）, ARGV[2] 过期秒数, ARGV[3..] field/value 交替
+     * 返回 1 表示已写入，0 表示期间发生过状态迁移（未写入）
+     */
+    private static final RedisScript<Long> REBUILD_SCRIPT = new DefaultRedisScript<>("""
+            if (redis.call('GET', KEYS[2]) or '') ~= ARGV[1] then
+                return 0
+            end
+            redis.call('DEL', KEYS[1])
+            redis.call('HSET', KEYS[1], unpack(ARGV, 3))
+            redis.call('EXPIRE', KEYS[1], ARGV[2])
+            return 1
+            """, Long.class);
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final OrdersMapper ordersMapper;
+
+    public OrderStatsCache(StringRedisTemplate stringRedisTemplate, OrdersMapper ordersMapper) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.ordersMapper = ordersMapper;
+    }
+
+    /**
+     * 读取用户订单统计，缓存不存在或 Redis 不可用时从数据库统计
+     */
+    public OrderDto.Stats get(Integer userId) {
+        try {
+            Map<Object, Object> cached = stringRedisTemplate.opsForHash().entries(getStatsKey(userId));
+            if (cached != null && !cached.isEmpty()) {
+                return toStats(cached);
+            }
+        } catch (Exception e) {
+            log.warn("读取订单统计缓存失败，回源数据库 - userId: {}, error: {}", userId, e.getMessage());
+        }
+        return rebuild(userId);
+    }
+
+    /**
+     * 从数据库重新统计并覆盖缓存
+     * 统计期间发生状态迁移时不写入缓存，仍返回本次统计结果
+     */
+    public OrderDto.Stats rebuild(Integer userId) {
+        String version = null;
+        boolean writable = true;
+        try {
+            version = stringRedisTemplate.opsForValue().get(getVersionKey(userId));
+        } catch (Exception e) {
+            writable = false;
+            log.warn("读取订单统计版本号失败 - userId: {}, error: {}", userId, e.getMessage());
+        }
+        Map<String, String> counts = loadCounts(userId);
+        if (writable) {
+            List<String> args = new ArrayList<>();
+            args.add(version != null ? version : "");
+            args.add(String.valueOf(TTL.getSeconds()));
+            counts.forEach((field, value) -> {
+                args.add(field);
+                args.add(value);
+            });
+            try {
+                Long written = stringRedisTemplate.execute(REBUILD_SCRIPT,
+                        List.of(getStatsKey(userId), getVersionKey(userId)), args.toArray());
+                if (!Long.valueOf(1).equals(written)) {
+                    log.debug("订单统计重建期间发生状态迁移，未写入缓存 - userId: {}", userId);
+                }
+            } catch (Exception e) {
+                log.warn("写入订单统计缓存失败 - userId: {}, error: {}", userId, e.getMessage());
+            }
+        }
+        return toStats(new HashMap<>(counts));
+    }
+
+    /**
+     * 记录订单状态迁移
+     *
+     * @param userId     订单所属用户（买家）ID
+     * @param fromStatus 原状态，新建订单传 null
+     * @param toStatus   新状态
+     */
+    public void recordTransition(Integer userId, String fromStatus, String toStatus) {
+        if (userId == null || toStatus == null || toStatus.equals(fromStatus)) {
+            return;
+        }
+        try {
+            stringRedisTemplate.execute(TRANSITION_SCRIPT, List.of(getStatsKey(userId), getVersionKey(userId)),
+                    fromStatus != null ? fromStatus : "", toStatus, String.valueOf(TTL.getSeconds()));
+        } catch (Exception e) {
+            // 增量失败时删除缓存，下次读取重建
+            log.warn("更新订单统计缓存失败 - userId: {}, {} -> {}, error: {}", userId, fromStatus, toStatus, e.getMessage());
+            evict(userId);
+        }
+    }
+
+    /**
+     * 删除用户订单统计缓存，下次读取时重建
+     */
+    public void evict(Integer userId) {
+        if (userId == null) {
+            return;
+        }
+        try {
+            stringRedisTemplate.delete(getStatsKey(userId));
+        } catch (Exception e) {
+            log.warn("删除订单统计缓存失败 - userId: {}, error: {}", userId, e.getMessage());
+        }
+    }
+
+    public String getStatsKey(Integer userId) {
+        return KEY_ORDER_STATS + userId;
+    }
+
+    public String getVersionKey(Integer userId) {
+        return KEY_ORDER_STATS_VERSION + userId;
+    }
+
+    // 一次 GROUP BY status 查询得到各状态订单数，total 为全部状态之和
+    private Map<String, String> loadCounts(Integer userId) {
+        Map<String, String> counts = new HashMap<>();
+        long total = 0;
+        List<Map<String, Object>> rows = ordersMapper.countByStatus(userId);
+        if (rows != null) {
+            for (Map<String, Object> row : rows) {
+                Object status = row.get("status");
+                Object count = row.get("cnt");
+                if (status == null || !(count instanceof Number)) {
+                    continue;
+                }
+                long value = ((Number) count).longValue();
+                counts.put(status.toString(), String.valueOf(value));
+                total += value;
+            }
+        }
+        counts.put(FIELD_TOTAL, String.valueOf(total));
+        return counts;
+    }
+
+    private static OrderDto.Stats toStats(Map<Object, Object> counts) {
+        return new OrderDto.Stats(count(counts, FIELD_TOTAL), count(counts, "pending"),
+                count(counts, "completed"), count(counts, "cancelled"));
+    }
+
+    private static Integer count(Map<Object, Object> counts, String field) {
+        Object value = counts.get(field);
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Math.max(Integer.parseInt(value.toString()), 0);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -3,18 +3,18 @@ package org.example.campusmarket.Service;
 import org.example.campusmarket.DTO.OrderDto;
 import org.example.campusmarket.Mapper.OrdersMapper;
 import org.example.campusmarket.Mapper.ProductMapper;
-import org.example.campusmarket.Mapper.UserInfoMapper;
 import org.example.campusmarket.entity.Order;
 import org.example.campusmarket.entity.Product;
-import org.example.campusmarket.entity.UserInfo;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 
@@ -25,83 +25,115 @@ public class OrdersService {
     @Autowired
     private ProductMapper productMapper;
     @Autowired
-    private UserInfoMapper userInfoMapper;
+    private UserSummaryCache userSummaryCache;
+    @Autowired
+    private ProductHotnessService productHotnessService;
+    @Autowired
+    private ProductChangeNotifier productChangeNotifier;
+    @Autowired
+    private OrderStatsCache orderStatsCache;
+
+    // 订单分页每页最大数量
+    private static final int MAX_PAGE_SIZE = 100;
 
     /**
      * 查询当前用户订单列表（包括作为买家和卖家的订单），并按传入条件进行可选过滤。
+     * 订单一次查询，商品与用户信息按ID批量加载，查询次数与订单数量无关。
      *
      * @param userId    当前用户 ID
      * @param status    可选订单状态（pending/completed/cancelled），为空则不按状态过滤
      * @param keyword   可选关键词（商品名或描述模糊匹配），为空则不按关键词过滤
      * @param startDate 可选起始时间（字符串），为空则不设时间下限
      * @param endDate   可选结束时间（字符串），为空则不设时间上限
-     * @return OrderDto.Response 列表，包含商品摘要、买家和卖家信息
+     * @return OrderDto.Response 列表（按创建时间降序），包含商品摘要、买家和卖家信息
      */
     public List<OrderDto.Response> getOrderList(Integer userId, String status, String keyword, String startDate, String endDate) {
-        // 查询作为买家的订单
-        List<Order> buyerOrders = ordersMapper.getOrderList(userId, status, keyword, startDate, endDate);
-        // 查询作为卖家的订单（通过商品的saler_id）
-        List<Order> sellerOrders = ordersMapper.getOrderListBySeller(userId, status, keyword, startDate, endDate);
-        
+        return buildOrderResponses(ordersMapper.getOrderPage(userId, status, keyword, startDate, endDate, null, null, null));
+    }
+
+    /**
+     * 分页查询当前用户订单列表，过滤条件同 getOrderList
+     *
+     * @param page     页码，从 1 开始
+     * @param pageSize 每页数量，最大 MAX_PAGE_SIZE
+     */
+    public OrderDto.PageResponse getOrderPage(Integer userId, String status, String keyword, String startDate, String endDate,
+                                              int page, int pageSize) {
+        int safePage = Math.max(page, 1);
+        int safePageSize = Math.min(Math.max(pageSize, 1), MAX_PAGE_SIZE);
+        int offset = (safePage - 1) * safePageSize;
+        List<Order> orders = ordersMapper.getOrderPage(userId, status, keyword, startDate, endDate,
+                offset, safePageSize, offset + safePageSize);
+        int total = ordersMapper.countOrderPage(userId, status, keyword, startDate, endDate);
+        return new OrderDto.PageResponse(buildOrderResponses(orders), total, safePage, safePageSize);
+    }
+
+    /**
+     * 批量构建订单响应：商品一次 IN 查询，买家和卖家一次从用户摘要缓存批量获取
+     */
+    private List<OrderDto.Response> buildOrderResponses(List<Order> orders) {
         List<OrderDto.Response> responses = new ArrayList<>();
-        Set<Integer> processedIds = new HashSet<>();
-        
-        // 处理买家订单
-        if (buyerOrders != null) {
-            for (Order order : buyerOrders) {
-                if (processedIds.contains(order.getId())) continue;
-                processedIds.add(order.getId());
-                responses.add(buildOrderResponse(order));
+        if (orders == null || orders.isEmpty()) {
+            return responses;
+        }
+
+        Set<Integer> productIds = new HashSet<>();
+        for (Order order : orders) {
+            if (order.getProductId() != null) {
+                productIds.add(order.getProductId());
             }
         }
-        
-        // 处理卖家订单
-        if (sellerOrders != null) {
-            for (Order order : sellerOrders) {
-                if (processedIds.contains(order.getId())) continue;
-                processedIds.add(order.getId());
-                responses.add(buildOrderResponse(order));
+        Map<Integer, Product> products = new HashMap<>();
+        if (!productIds.isEmpty()) {
+            List<Product> rows = productMapper.findProductBasicByIds(productIds);
+            if (rows != null) {
+                for (Product product : rows) {
+                    products.put(product.getPro_id(), product);
+                }
             }
         }
-        
-        // 按创建时间降序排序
-        responses.sort((a, b) -> {
-            if (a.getCreatedAt() == null) return 1;
-            if (b.getCreatedAt() == null) return -1;
-            return b.getCreatedAt().compareTo(a.getCreatedAt());
-        });
-        
+
+        Set<Integer> userIds = new HashSet<>();
+        for (Order order : orders) {
+            if (order.getUserId() != null) {
+                userIds.add(order.getUserId());
+            }
+            Integer sellerId = resolveSellerId(order, products.get(order.getProductId()));
+            if (sellerId != null) {
+                userIds.add(sellerId);
+            }
+        }
+        Map<Integer, UserSummaryCache.UserSummary> users = userSummaryCache.getAll(userIds);
+
+        for (Order order : orders) {
+            Product product = products.get(order.getProductId());
+            Integer sellerId = resolveSellerId(order, product);
+            responses.add(buildOrderResponse(order, product,
+                    order.getUserId() != null ? users.get(order.getUserId()) : null,
+                    sellerId != null ? users.get(sellerId) : null));
+        }
         return responses;
     }
-    
-    /**
-     * 构建订单响应，包含商品、买家和卖家信息
-     */
-    private OrderDto.Response buildOrderResponse(Order order) {
-        Product product = productMapper.findProductBasicById(order.getProductId());
-        OrderDto.ProductSummary productSummary = null;
-        OrderDto.UserSummary buyer = null;
-        OrderDto.UserSummary seller = null;
-        String location = null;
-        
-        // 获取买家信息
-        if (order.getUserId() != null) {
-            UserInfo buyerInfo = userInfoMapper.findByUserId(order.getUserId());
-            buyer = buildUserSummary(buyerInfo);
-        }
-        
-        // 获取卖家信息 - 优先从订单表获取，其次从商品表获取
+
+    // 卖家ID：优先从订单表获取，其次从商品表获取
+    private Integer resolveSellerId(Order order, Product product) {
         Integer sellerId = order.getSellerId();
         if (sellerId == null && product != null) {
             sellerId = product.getSaler_id();
         }
-        if (sellerId != null) {
-            UserInfo sellerInfo = userInfoMapper.findByUserId(sellerId);
-            seller = buildUserSummary(sellerInfo);
-            if (sellerInfo != null) {
-                location = sellerInfo.getAddress();
-            }
-        }
+        return sellerId;
+    }
+
+    /**
+     * 构建订单响应，包含商品、买家和卖家信息
+     */
+    private OrderDto.Response buildOrderResponse(Order order, Product product,
+                                                 UserSummaryCache.UserSummary buyerInfo,
+                                                 UserSummaryCache.UserSummary sellerInfo) {
+        OrderDto.ProductSummary productSummary = null;
+        OrderDto.UserSummary buyer = buildUserSummary(buyerInfo);
+        OrderDto.UserSummary seller = buildUserSummary(sellerInfo);
+        String location = sellerInfo != null ? sellerInfo.address() : null;
         
         if (product != null) {
             Integer unitPriceInt = parsePriceToInt(product.getPrice());
@@ -167,20 +199,25 @@ public class OrdersService {
             productMapper.updateProductSealStatus(req.getProductId(), false);
             return null;
         }
+        productMapper.incrementBuyCount(req.getProductId(), 1);
+        orderStatsCache.recordTransition(userId, null, order.getStatus());
+        productHotnessService.recordHotnessEvent(req.getProductId(), ProductHotnessService.HotnessEvent.ORDER);
+        // 商品已被锁定，移出热门排行榜；订单取消时放回
+        productHotnessService.parkProduct(req.getProductId());
+        productChangeNotifier.notifyChanged(req.getProductId(), ProductChangeNotifier.ChangeType.STATUS_CHANGED);
         
         // 获取买家和卖家信息
         OrderDto.UserSummary buyer = null;
         OrderDto.UserSummary seller = null;
         String location = null;
         
-        UserInfo buyerInfo = userInfoMapper.findByUserId(userId);
-        buyer = buildUserSummary(buyerInfo);
+        buyer = buildUserSummary(userSummaryCache.get(userId));
         
         if (product.getSaler_id() != null) {
-            UserInfo sellerInfo = userInfoMapper.findByUserId(product.getSaler_id());
+            UserSummaryCache.UserSummary sellerInfo = userSummaryCache.get(product.getSaler_id());
             seller = buildUserSummary(sellerInfo);
             if (sellerInfo != null) {
-                location = sellerInfo.getAddress();
+                location = sellerInfo.address();
             }
         }
         
@@ -199,9 +236,15 @@ public class OrdersService {
      * 商品保持锁定状态（is_seal = true），表示已售出
      */
     public boolean confirmOrder(Integer userId, Integer id) {
+        // 记录原状态，用于维护订单统计
+        Order before = ordersMapper.getOrderById(id);
         // 更新订单状态
         int result = ordersMapper.updateStatus(id, userId, "completed");
-        // 商品保持锁定状态，不需要额外操作
+        // 商品保持锁定状态，已售出的商品不会再回榜，丢弃其暂存热度分数
+        if (result == 1 && before != null) {
+            orderStatsCache.recordTransition(userId, before.getStatus(), "completed");
+            productHotnessService.dropParkedScore(before.getProductId());
+        }
         return result == 1;
     }
 
@@ -220,20 +263,36 @@ public class OrdersService {
             }
         }
         
-        if (targetOrder == null) {
+        // 已取消的订单不重复取消，避免重复回退购买计数
+        if (targetOrder == null || "cancelled".equals(targetOrder.getStatus())) {
             return false;
         }
         
         // 更新订单状态为 cancelled
         int result = ordersMapper.updateStatus(id, userId, "cancelled");
         if (result == 1) {
-            // 解锁商品，允许其他用户购买
-            productMapper.updateProductSealStatus(targetOrder.getProductId(), false);
+            onOrderCancelled(userId, targetOrder);
             return true;
         }
         return false;
     }
 
+    /**
+     * 订单取消后的副作用（买家取消与卖家更新状态共用）：解锁商品、回退购买计数、更新统计、商品回到热门排行榜并通知商品变更
+     * 只能在订单从未取消状态成功变为 cancelled 后调用一次
+     *
+     * @param buyerId 订单所属用户（买家）ID
+     * @param before  取消前的订单
+     */
+    private void onOrderCancelled(Integer buyerId, Order before) {
+        // 解锁商品，允许其他用户购买
+        productMapper.updateProductSealStatus(before.getProductId(), false);
+        productMapper.incrementBuyCount(before.getProductId(), -1);
+        orderStatsCache.recordTransition(buyerId, before.getStatus(), "cancelled");
+        productHotnessService.restoreProduct(before.getProductId());
+        productChangeNotifier.notifyChanged(before.getProductId(), ProductChangeNotifier.ChangeType.STATUS_CHANGED);
+    }
+
     // 提交订单评价，校验评分范围并写入评论
     public boolean reviewOrder(Integer userId, Integer id, OrderDto.ReviewRequest req) {
         if (req == null || req.getRating() == null || req.getRating() < 1 || req.getRating() > 5) {
@@ -242,13 +301,9 @@ public class OrdersService {
         return ordersMapper.updateReview(id, userId, req.getRating(), req.getComment()) == 1;
     }
 
-    // 订单统计，返回总数与各状态数量
+    // 订单统计，返回总数与各状态数量（读取 Redis 中按状态增量维护的计数，缺失时一次 GROUP BY 重建）
     public OrderDto.Stats getOrderStats(Integer userId) {
-        int totalCount = ordersMapper.countTotal(userId);
-        int pendingCount = ordersMapper.countPending(userId);
-        int completedCount = ordersMapper.countCompleted(userId);
-        int cancelledCount = ordersMapper.countCancelled(userId);
-        return new OrderDto.Stats(totalCount, pendingCount, completedCount, cancelledCount);
+        return orderStatsCache.get(userId);
     }
 
     /**
@@ -268,8 +323,7 @@ public class OrdersService {
         
         // 获取买家信息
         if (order.getUserId() != null) {
-            UserInfo buyerInfo = userInfoMapper.findByUserId(order.getUserId());
-            buyer = buildUserSummary(buyerInfo);
+            buyer = buildUserSummary(userSummaryCache.get(order.getUserId()));
         }
         
         // 获取卖家信息 - 优先从订单表获取，其次从商品表获取
@@ -278,10 +332,10 @@ public class OrdersService {
             sellerId = product.getSaler_id();
         }
         if (sellerId != null) {
-            UserInfo sellerInfo = userInfoMapper.findByUserId(sellerId);
+            UserSummaryCache.UserSummary sellerInfo = userSummaryCache.get(sellerId);
             seller = buildUserSummary(sellerInfo);
             if (sellerInfo != null) {
-                location = sellerInfo.getAddress();
+                location = sellerInfo.address();
             }
         }
         
@@ -311,19 +365,27 @@ public class OrdersService {
      */
     public boolean updateOrderStatus(Integer orderId, String status, String sellerMessage, List<String> sellerImages) {
         String imagesStr = sellerImages != null && !sellerImages.isEmpty() ? String.join(",", sellerImages) : null;
-        return ordersMapper.updateOrderStatusWithMessage(orderId, status, sellerMessage, imagesStr) == 1;
+        // 记录原状态与买家，用于维护买家的订单统计
+        Order before = ordersMapper.getOrderById(orderId);
+        boolean updated = ordersMapper.updateOrderStatusWithMessage(orderId, status, sellerMessage, imagesStr) == 1;
+        if (updated && before != null && "cancelled".equals(status) && !"cancelled".equals(before.getStatus())) {
+            // 卖家取消订单与买家取消相同：解锁商品并回退购买计数
+            onOrderCancelled(before.getUserId(), before);
+        } else if (updated && before != null) {
+            orderStatsCache.recordTransition(before.getUserId(), before.getStatus(), status);
+            if ("completed".equals(status)) {
+                productHotnessService.dropParkedScore(before.getProductId());
+            }
+        }
+        return updated;
     }
 
     /**
      * 构建用户摘要，如果 nickname 为空则使用 username
      */
-    private OrderDto.UserSummary buildUserSummary(UserInfo userInfo) {
+    private OrderDto.UserSummary buildUserSummary(UserSummaryCache.UserSummary userInfo) {
         if (userInfo == null) return null;
-        String displayName = userInfo.getNickname();
-        if (displayName == null || displayName.trim().isEmpty()) {
-            displayName = userInfo.getUsername();
-        }
-        return new OrderDto.UserSummary(userInfo.getUser_id(), displayName, userInfo.getUsername());
+        return new OrderDto.UserSummary(userInfo.id(), userInfo.displayName(), userInfo.username());
     }
 
     /**
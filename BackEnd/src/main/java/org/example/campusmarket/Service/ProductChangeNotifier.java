@@ -0,0 +1,105 @@
+package org.example.campusmarket.Service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * 商品变更通知
+ * 商品发布、修改、删除或售出/锁定时，在本实例内发布 ProductChangedEvent，
+ * 同时通过 Redis pub/sub 广播给其他实例，其他实例收到后在本地发布同样的事件
+ * 各类本地缓存通过 @EventListener 监听该事件完成失效
+ */
+@Component
+public class ProductChangeNotifier implements MessageListener {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductChangeNotifier.class);
+
+    /** 商品变更广播频道，消息格式: {nodeId}|{type}|{productId} */
+    public static final String CHANNEL = "product:changed";
+
+    /** 当前实例标识，用于忽略自己发出的广播 */
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public ProductChangeNotifier(StringRedisTemplate stringRedisTemplate,
+                                 ApplicationEventPublisher eventPublisher) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * 商品变更类型
+     */
+    public enum ChangeType {
+        CREATED, UPDATED, DELETED, STATUS_CHANGED
+    }
+
+    /**
+     * 商品变更事件（本地 Spring 事件）
+     *
+     * @param productId 商品ID
+     * @param type      变更类型
+     * @param remote    是否来自其他实例的广播；共享状态（如 Redis 中的缓存版本号）只应由发起变更的实例更新一次
+     */
+    public record ProductChangedEvent(Integer productId, ChangeType type, boolean remote) {
+
+        public ProductChangedEvent(Integer productId, ChangeType type) {
+            this(productId, type, false);
+        }
+    }
+
+    /**
+     * 通知商品变更
+     * 本实例立即生效；Redis 广播失败时只记录日志，其他实例的缓存等到过期后自然刷新
+     *
+     * @param productId 商品ID
+     * @param type      变更类型
+     */
+    public void notifyChanged(Integer productId, ChangeType type) {
+        eventPublisher.publishEvent(new ProductChangedEvent(productId, type));
+        try {
+            stringRedisTemplate.convertAndSend(CHANNEL, nodeId + "|" + type + "|" + productId);
+        } catch (Exception e) {
+            log.warn("商品变更广播失败。商品ID: {}, 类型: {}, 错误: {}", productId, type, e.getMessage());
+        }
+    }
+
+    /**
+     * 收到其他实例的商品变更广播
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        String[] parts = body.split("\\|", 3);
+        if (parts.length != 3) {
+            log.warn("无法解析商品变更消息: {}", body);
+            return;
+        }
+        if (nodeId.equals(parts[0])) {
+            return;
+        }
+        try {
+            Integer productId = "null".equals(parts[2]) ? null : Integer.valueOf(parts[2]);
+            eventPublisher.publishEvent(new ProductChangedEvent(productId, ChangeType.valueOf(parts[1]), true));
+        } catch (IllegalArgumentException e) {
+            log.warn("无法解析商品变更消息: {}", body);
+        }
+    }
+
+    /**
+     * 获取当前实例标识
+     */
+    public String getNodeId() {
+        return nodeId;
+    }
+}
@@ -0,0 +1,36 @@
+package org.example.campusmarket.Service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 商品计数校正定时任务
+ * 定期按 fav_products / buy_products / orders 重新统计 products.fav_count 与 buy_count
+ */
+@Component
+public class ProductCounterReconcileScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductCounterReconcileScheduler.class);
+
+    private final ProductService productService;
+
+    public ProductCounterReconcileScheduler(ProductService productService) {
+        this.productService = productService;
+    }
+
+    /**
+     * 定时校正商品收藏数与购买数
+     * 校正间隔从配置文件读取，默认 1 小时
+     */
+    @Scheduled(fixedRateString = "${product.counter-reconcile-interval:3600000}",
+               initialDelayString = "${product.counter-reconcile-interval:3600000}")
+    public void reconcileProductCounters() {
+        try {
+            productService.reconcileProductCounters();
+        } catch (Exception e) {
+            log.error("定时任务：商品收藏数/购买数校正失败", e);
+        }
+    }
+}
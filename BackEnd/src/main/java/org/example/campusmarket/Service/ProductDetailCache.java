@@ -0,0 +1,289 @@
+package org.example.campusmarket.Service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.example.campusmarket.DTO.ProductDto;
+import org.example.campusmarket.util.SingleFlight;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 商品详情两级缓存
+ * L1 为本地 Caffeine 缓存，L2 为 Redis（product:detail:{id}:{version}，JSON），均只缓存已组装好图片与卖家信息的商品详情；
+ * 未命中的商品由调用方从数据库加载后回填两级缓存。
+ * 缓存内容不含实时浏览量，读取后由调用方从 Redis 浏览量计数器填充。
+ *
+ * 版本号（product:ver:{id}）在商品修改、状态变更、删除、下单锁定 / 取消解锁时递增：
+ * 旧版本的 L2 条目不再被读取，随 TTL 自然过期；变更前已开始的回源即使晚于变更写回，也只会写到旧版本 key 上。
+ * 变更事件经 ProductChangeNotifier 广播，各实例收到后清除本地 L1，只有发起变更的实例递增版本号。
+ *
+ * 单个商品回源经 SingleFlight 合并：同一实例内同一商品同时只有一个线程查询数据库，其余线程等待其结果。
+ */
+@Component
+public class ProductDetailCache {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductDetailCache.class);
+
+    // Redis key 前缀
+    public static final String KEY_PRODUCT_DETAIL = "product:detail:";
+    public static final String KEY_PRODUCT_VERSION = "product:ver:";
+
+    // L2 过期时间：收藏数等不触发版本递增的字段最多滞后这么久
+    private static final Duration REDIS_TTL = Duration.ofMinutes(5);
+
+    // L1 容量与过期时间
+    private static final int LOCAL_MAX_ENTRIES = 5000;
+    private static final Duration LOCAL_TTL = Duration.ofSeconds(30);
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // L1 保存 JSON 而不是对象，每次读取反序列化出新实例，调用方修改结果不会污染缓存
+    private final Cache<Integer, String> localCache = Caffeine.newBuilder()
+            .maximumSize(LOCAL_MAX_ENTRIES)
+            .expireAfterWrite(LOCAL_TTL)
+            .build();
+
+    private final SingleFlight singleFlight;
+
+    public ProductDetailCache(StringRedisTemplate stringRedisTemplate, SingleFlight singleFlight) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.singleFlight = singleFlight;
+    }
+
+    /**
+     * 读取单个商品详情
+     * 依次查 L1、L2，未命中时调用 loader 回源；同一商品的并发未命中只回源一次
+     *
+     * @param id     商品ID
+     * @param loader 从数据库加载商品详情，商品不存在时返回 null（不缓存）
+     * @return 商品详情（新实例），不存在时返回 null
+     */
+    public ProductDto.ProductDetail get(Integer id, Supplier<ProductDto.ProductDetail> loader) {
+        if (id == null) {
+            return null;
+        }
+        String json = localCache.getIfPresent(id);
+        if (json != null) {
+            return fromJson(json);
+        }
+
+        return fromJson(singleFlight.execute("product-detail", id, () -> loadThroughRedis(id, loader)));
+    }
+
+    /**
+     * 批量读取商品详情
+     * 依次查 L1、L2（一次 MGET 版本号 + 一次 MGET 详情），仍未命中的商品交给 loader 批量加载并回填
+     *
+     * @param ids    商品ID列表（重复ID只查询一次）
+     * @param loader 批量加载未命中商品的函数，返回顺序不限，不存在的商品不返回即可
+     * @return 按 ids 顺序排列的商品详情，不存在的商品被跳过
+     */
+    public List<ProductDto.ProductDetail> getAll(List<Integer> ids,
+                                                 Function<List<Integer>, List<ProductDto.ProductDetail>> loader) {
+        List<ProductDto.ProductDetail> result = new ArrayList<>();
+        if (ids == null || ids.isEmpty()) {
+            return result;
+        }
+        List<Integer> distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));
+        distinctIds.remove(null);
+
+        // L1
+        Map<Integer, ProductDto.ProductDetail> found = new HashMap<>();
+        List<Integer> localMisses = new ArrayList<>();
+        for (Integer id : distinctIds) {
+            ProductDto.ProductDetail detail = fromJson(localCache.getIfPresent(id));
+            if (detail != null) {
+                found.put(id, detail);
+            } else {
+                localMisses.add(id);
+            }
+        }
+
+        // L2
+        List<Integer> redisMisses = new ArrayList<>();
+        Map<Integer, String> versions = new HashMap<>();
+        if (!localMisses.isEmpty()) {
+            List<String> versionValues = multiGet(localMisses, this::getVersionKey);
+            List<String> detailKeys = new ArrayList<>(localMisses.size());
+            for (int i = 0; i < localMisses.size(); i++) {
+                Integer id = localMisses.get(i);
+                String version = versionOrZero(versionValues, i);
+                versions.put(id, version);
+                detailKeys.add(getDetailKey(id, version));
+            }
+            List<String> values = multiGet(detailKeys);
+            for (int i = 0; i < localMisses.size(); i++) {
+                Integer id = localMisses.get(i);
+                String json = values != null && i < values.size() ? values.get(i) : null;
+                ProductDto.ProductDetail detail = fromJson(json);
+                if (detail != null) {
+                    localCache.put(id, json);
+                    found.put(id, detail);
+                } else {
+                    redisMisses.add(id);
+                }
+            }
+        }
+
+        // 数据库
+        if (!redisMisses.isEmpty()) {
+            List<ProductDto.ProductDetail> loaded = loader.apply(redisMisses);
+            if (loaded != null) {
+                Map<String, String> toRedis = new HashMap<>();
+                for (ProductDto.ProductDetail detail : loaded) {
+                    String json = toJson(detail);
+                    if (json == null) {
+                        found.put(detail.getId(), detail);
+                        continue;
+                    }
+                    localCache.put(detail.getId(), json);
+                    toRedis.put(getDetailKey(detail.getId(), versions.getOrDefault(detail.getId(), "0")), json);
+                    found.put(detail.getId(), fromJson(json));
+                }
+                writeRedis(toRedis);
+            }
+        }
+
+        for (Integer id : ids) {
+            ProductDto.ProductDetail detail = id != null ? found.get(id) : null;
+            if (detail != null) {
+                result.add(detail);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 使某个商品的缓存失效
+     *
+     * @param productId   商品ID
+     * @param bumpVersion 是否递增 Redis 中的版本号（使所有实例的 L2 旧条目失效）
+     */
+    public void evict(Integer productId, boolean bumpVersion) {
+        if (productId == null) {
+            return;
+        }
+        localCache.invalidate(productId);
+        if (!bumpVersion) {
+            return;
+        }
+        try {
+            stringRedisTemplate.opsForValue().increment(getVersionKey(productId));
+        } catch (Exception e) {
+            log.warn("递增商品缓存版本号失败 - id: {}, error: {}", productId, e.getMessage());
+        }
+    }
+
+    // 商品发生变更时失效其详情缓存；其他实例的广播只清除本地 L1，版本号已由发起变更的实例递增
+    @EventListener
+    public void onProductChanged(ProductChangeNotifier.ProductChangedEvent event) {
+        evict(event.productId(), !event.remote());
+    }
+
+    public String getDetailKey(Integer productId, String version) {
+        return KEY_PRODUCT_DETAIL + productId + ":" + version;
+    }
+
+    public String getVersionKey(Integer productId) {
+        return KEY_PRODUCT_VERSION + productId;
+    }
+
+    // 单个商品经 L2 回源：先读版本号，再读该版本的详情，未命中时查询数据库并写回该版本
+    private String loadThroughRedis(Integer id, Supplier<ProductDto.ProductDetail> loader) {
+        String version = versionOrZero(multiGet(List.of(id), this::getVersionKey), 0);
+        String detailKey = getDetailKey(id, version);
+        List<String> cached = multiGet(List.of(detailKey));
+        String json = cached != null && !cached.isEmpty() ? cached.get(0) : null;
+        if (json == null) {
+            ProductDto.ProductDetail detail = loader.get();
+            if (detail == null) {
+                return null;
+            }
+            json = toJson(detail);
+            if (json == null) {
+                return null;
+            }
+            writeRedis(Map.of(detailKey, json));
+        }
+        localCache.put(id, json);
+        return json;
+    }
+
+    private static String versionOrZero(List<String> versions, int index) {
+        String version = versions != null && index < versions.size() ? versions.get(index) : null;
+        return version != null ? version : "0";
+    }
+
+    private List<String> multiGet(List<Integer> ids, Function<Integer, String> keyFunction) {
+        List<String> keys = new ArrayList<>(ids.size());
+        for (Integer id : ids) {
+            keys.add(keyFunction.apply(id));
+        }
+        return multiGet(keys);
+    }
+
+    // Redis 不可用时视为全部未命中，直接回源数据库
+    private List<String> multiGet(List<String> keys) {
+        try {
+            return stringRedisTemplate.opsForValue().multiGet(keys);
+        } catch (Exception e) {
+            log.warn("批量读取商品详情缓存失败，回源数据库 - error: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeRedis(Map<String, String> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        try {
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection conn = (StringRedisConnection) connection;
+                for (Map.Entry<String, String> entry : entries.entrySet()) {
+                    conn.setEx(entry.getKey(), REDIS_TTL.getSeconds(), entry.getValue());
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("写入商品详情缓存失败 - error: {}", e.getMessage());
+        }
+    }
+
+    private String toJson(ProductDto.ProductDetail detail) {
+        try {
+            return objectMapper.writeValueAsString(detail);
+        } catch (JsonProcessingException e) {
+            log.warn("商品详情序列化失败 - id: {}, error: {}", detail.getId(), e.getMessage());
+            return null;
+        }
+    }
+
+    private ProductDto.ProductDetail fromJson(String json) {
+        if (json == null) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(json, ProductDto.ProductDetail.class);
+        } catch (JsonProcessingException e) {
+            log.warn("商品详情反序列化失败 - error: {}", e.getMessage());
+            return null;
+        }
+    }
+}
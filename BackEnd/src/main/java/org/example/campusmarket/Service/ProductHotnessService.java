@@ -4,12 +4,24 @@ import org.example.campusmarket.Mapper.ProductMapper;
 import org.example.campusmarket.config.HotnessProperties;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import jakarta.annotation.PreDestroy;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.connection.RedisZSetCommands;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.connection.zset.Aggregate;
+import org.springframework.data.redis.connection.zset.Weights;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 商品热度服务
@@ -30,10 +42,281 @@ public class ProductHotnessService {
     /** 热门商品排行榜 key */
     public static final String KEY_HOT_RANKING = "product:hot:ranking";
 
+    /** 有待同步增量的商品ID集合 */
+    public static final String KEY_VIEW_DIRTY = "product:view:dirty";
+
+    /** 正在同步中的商品ID集合，由 KEY_VIEW_DIRTY 原子改名而来 */
+    public static final String KEY_VIEW_DIRTY_SYNCING = "product:view:dirty:syncing";
+
+    /** 热度衰减基准时间（毫秒时间戳），排行榜分数以此时刻为基准 */
+    public static final String KEY_HOT_EPOCH = "product:hot:epoch";
+
+    /** 按小时分桶的热度 key 前缀，格式: product:hot:bucket:{自 1970 年起的小时数} */
+    public static final String KEY_HOT_BUCKET = "product:hot:bucket:";
+
+    /** 滑动窗口热度榜 key 前缀，格式: product:hot:trending:{1h|24h|7d} */
+    public static final String KEY_HOT_TRENDING = "product:hot:trending:";
+
+    /** 商品分类映射 hash，field 为商品ID，value 为 products.category */
+    public static final String KEY_PRODUCT_CATEGORY = "product:category";
+
+    /** 分类热门排行榜 key 前缀，格式: product:hot:category:{category} */
+    public static final String KEY_HOT_CATEGORY = "product:hot:category:";
+
+    /** 已有分类排行榜的分类集合，用于重新归一化时遍历所有分类排行榜 */
+    public static final String KEY_HOT_CATEGORIES = "product:hot:categories";
+
+    /**
+     * 暂离排行榜的商品分数 hash，field 为商品ID，value 为离榜时的分数
+     * 被下单锁定或下架的商品移出排行榜后在这里保存分数，期间的热度事件继续累加到这里，恢复在售时放回排行榜
+     */
+    public static final String KEY_HOT_PARKED = "product:hot:parked";
+
+    /** 每个小时桶的时长（毫秒） */
+    private static final long BUCKET_MILLIS = Duration.ofHours(1).toMillis();
+
+    /** 小时桶保留时间：覆盖最长的 7 天窗口，再多留 2 小时余量 */
+    private static final Duration BUCKET_TTL = Duration.ofDays(7).plusHours(2);
+
+    /** 浏览去重 key 前缀，格式: product:view:dedupe:{productId}:{requestId} */
+    public static final String KEY_VIEW_DEDUPE = "product:view:dedupe:";
+
+    /** 同一 requestId 的去重窗口 */
+    private static final Duration VIEW_DEDUPE_WINDOW = Duration.ofSeconds(1);
+
+    /**
+     * 衰减系数函数，供各热度脚本复用
+     * 采用前向衰减：事件分数乘以 2^((now - epoch) / halfLife)，新事件的权重随时间指数增长，
+     * 等价于所有旧分数按半衰期指数衰减，而每次更新仍然只是一次 O(log n) 的 ZINCRBY
+     * halfLife <= 0 表示不衰减；基准时间不存在时以当前时间初始化
+     */
+    private static final String DECAY_FACTOR_LUA = """
+            local function decay_factor(epoch_key, now, half_life)
+                if half_life <= 0 then
+                    return 1
+                end
+                local epoch = tonumber(redis.call('GET', epoch_key))
+                if not epoch then
+                    redis.call('SET', epoch_key, now)
+                    return 1
+                end
+                return 2 ^ ((tonumber(now) - epoch) / half_life)
+            end
+            """;
+
+    /**
+     * 暂存分数读写函数，供各热度脚本复用
+     * 暂存值为 "分数|写入时的衰减基准时间"，读取时按当前基准时间换算，重新归一化时无需改写整个暂存 hash；
+     * 不带基准时间的旧值视为以当前基准时间计
+     */
+    private static final String PARKED_SCORE_LUA = """
+            local function read_parked(parked, member, epoch_key, half_life)
+                local value = redis.call('HGET', parked, member)
+                if not value then
+                    return nil
+                end
+                local sep = string.find(value, '|', 1, true)
+                if not sep then
+                    return tonumber(value) or 0
+                end
+                local score = tonumber(string.sub(value, 1, sep - 1)) or 0
+                local since = tonumber(string.sub(value, sep + 1))
+                local epoch = tonumber(redis.call('GET', epoch_key))
+                if half_life > 0 and since and epoch then
+                    score = score * 2 ^ ((since - epoch) / half_life)
+                end
+                return score
+            end
+            local function write_parked(parked, member, epoch_key, score)
+                redis.call('HSET', parked, member, score .. '|' .. (redis.call('GET', epoch_key) or ''))
+            end
+            """;
+
+    /**
+     * 排行榜加分函数，供各热度脚本复用
+     * 暂离排行榜的商品只累加到暂存 hash，返回 false；
+     * 其余商品同时更新全局排行榜和所属分类排行榜（分类从分类映射 hash 中查出），返回 true
+     * 分类排行榜 key 在脚本内拼接，依赖单机 Redis 部署（集群模式下需要改为由调用方传入）
+     */
+    private static final String HOT_SCORE_LUA = PARKED_SCORE_LUA + """
+            local function add_hot_score(ranking, category_hash, category_set, parked, prefix, member, amount,
+                                         epoch_key, half_life)
+                local parked_score = read_parked(parked, member, epoch_key, half_life)
+                if parked_score then
+                    write_parked(parked, member, epoch_key, parked_score + amount)
+                    return false
+                end
+                redis.call('ZINCRBY', ranking, amount, member)
+                local category = redis.call('HGET', category_hash, member)
+                if category then
+                    redis.call('ZINCRBY', prefix .. category, amount, member)
+                    redis.call('SADD', category_set, category)
+                end
+                return true
+            end
+            """;
+
+    /**
+     * 浏览计数脚本：去重、浏览量、增量、排行榜在一次往返内原子完成
+     * KEYS[1] 浏览量 key, KEYS[2] 增量 key, KEYS[3] 排行榜 key, KEYS[4] 待同步集合 key,
+     * KEYS[5] 衰减基准时间 key, KEYS[6] 当前小时桶 key, KEYS[7] 分类映射 key, KEYS[8] 分类集合 key,
+     * KEYS[9] 暂离排行榜 key, KEYS[10] 去重 key（可选）
+     * ARGV[1] 商品ID, ARGV[2] 去重窗口（毫秒）, ARGV[3] 当前时间（毫秒）, ARGV[4] 半衰期（毫秒）, ARGV[5] 浏览权重,
+     * ARGV[6] 小时桶过期时间（秒）, ARGV[7] 分类排行榜 key 前缀
+     * 返回递增后的浏览量；重复请求时返回当前浏览量，不做任何写入
+     */
+    private static final RedisScript<Long> VIEW_INCREMENT_SCRIPT = new DefaultRedisScript<>(
+            DECAY_FACTOR_LUA + HOT_SCORE_LUA + """
+            if #KEYS >= 10 and not redis.call('SET', KEYS[10], '1', 'NX', 'PX', ARGV[2]) then
+                return tonumber(redis.call('GET', KEYS[1]) or '0')
+            end
+            local count = redis.call('INCR', KEYS[1])
+            redis.call('INCR', KEYS[2])
+            redis.call('SADD', KEYS[4], ARGV[1])
+            local amount = tonumber(ARGV[5]) * decay_factor(KEYS[5], ARGV[3], tonumber(ARGV[4]))
+            if add_hot_score(KEYS[3], KEYS[7], KEYS[8], KEYS[9], ARGV[7], ARGV[1], amount, KEYS[5], tonumber(ARGV[4])) then
+                redis.call('ZINCRBY', KEYS[6], ARGV[5], ARGV[1])
+                redis.call('EXPIRE', KEYS[6], ARGV[6])
+            end
+            return count
+            """, Long.class);
+
+    /**
+     * 热度加分脚本：按当前衰减系数为一批商品增加分数，并把未衰减的加分计入当前小时桶
+     * KEYS[1] 排行榜 key, KEYS[2] 衰减基准时间 key, KEYS[3] 当前小时桶 key, KEYS[4] 分类映射 key, KEYS[5] 分类集合 key,
+     * KEYS[6] 暂离排行榜 key
+     * ARGV[1] 当前时间（毫秒）, ARGV[2] 半衰期（毫秒）, ARGV[3] 小时桶过期时间（秒）, ARGV[4] 分类排行榜 key 前缀,
+     * 之后依次为 商品ID, 未衰减的加分
+     * 返回处理的商品数量
+     */
+    private static final RedisScript<Long> HOT_SCORE_SCRIPT = new DefaultRedisScript<>(
+            DECAY_FACTOR_LUA + HOT_SCORE_LUA + """
+            local factor = decay_factor(KEYS[2], ARGV[1], tonumber(ARGV[2]))
+            local updated = 0
+            for i = 5, #ARGV, 2 do
+                local amount = tonumber(ARGV[i + 1]) * factor
+                if add_hot_score(KEYS[1], KEYS[4], KEYS[5], KEYS[6], ARGV[4], ARGV[i], amount, KEYS[2], tonumber(ARGV[2])) then
+                    redis.call('ZINCRBY', KEYS[3], ARGV[i + 1], ARGV[i])
+                    updated = updated + 1
+                end
+            end
+            if updated > 0 then
+                redis.call('EXPIRE', KEYS[3], ARGV[3])
+            end
+            return updated
+            """, Long.class);
+
+    /**
+     * 热度重新归一化脚本：把所有分数乘以 2^((epoch - now) / halfLife) 并把基准时间移到当前时间
+     * 防止前向衰减的系数无限增长，排名不变；与加分脚本互斥执行，不会出现基准时间不一致
+     * 全局排行榜与各分类排行榜的分数使用同一个基准时间，一起缩放；
+     * 暂存分数自带写入时的基准时间，读取时再换算，这里不改写
+     * KEYS[1] 排行榜 key, KEYS[2] 衰减基准时间 key, KEYS[3] 分类集合 key
+     * ARGV[1] 当前时间（毫秒）, ARGV[2] 半衰期（毫秒）, ARGV[3] 分类排行榜 key 前缀
+     * 返回 1 表示执行了缩放
+     */
+    private static final RedisScript<Long> HOT_RENORMALIZE_SCRIPT = new DefaultRedisScript<>("""
+            local half_life = tonumber(ARGV[2])
+            if half_life <= 0 then
+                return 0
+            end
+            local epoch = tonumber(redis.call('GET', KEYS[2]))
+            redis.call('SET', KEYS[2], ARGV[1])
+            if not epoch then
+                return 0
+            end
+            local factor = 2 ^ ((epoch - tonumber(ARGV[1])) / half_life)
+            redis.call('ZUNIONSTORE', KEYS[1], 1, KEYS[1], 'WEIGHTS', factor)
+            for _, category in ipairs(redis.call('SMEMBERS', KEYS[3])) do
+                local key = ARGV[3] .. category
+                redis.call('ZUNIONSTORE', key, 1, key, 'WEIGHTS', factor)
+            end
+            return 1
+            """, Long.class);
+
+    /**
+     * 离榜脚本：把商品的分数从全局与分类排行榜移到暂存 hash（连同当前衰减基准时间）
+     * KEYS[1] 排行榜 key, KEYS[2] 暂离排行榜 key, KEYS[3] 分类映射 key, KEYS[4] 衰减基准时间 key
+     * ARGV[1] 商品ID, ARGV[2] 分类排行榜 key 前缀
+     * 返回 1 表示离榜，0 表示商品已经离榜
+     */
+    private static final RedisScript<Long> HOT_PARK_SCRIPT = new DefaultRedisScript<>(PARKED_SCORE_LUA + """
+            if redis.call('HEXISTS', KEYS[2], ARGV[1]) == 1 then
+                return 0
+            end
+            local score = redis.call('ZSCORE', KEYS[1], ARGV[1]) or '0'
+            write_parked(KEYS[2], ARGV[1], KEYS[4], score)
+            redis.call('ZREM', KEYS[1], ARGV[1])
+            local category = redis.call('HGET', KEYS[3], ARGV[1])
+            if category then
+                redis.call('ZREM', ARGV[2] .. category, ARGV[1])
+            end
+            return 1
+            """, Long.class);
+
+    /**
+     * 回榜脚本：把暂存的分数按当前衰减基准时间换算后放回全局与分类排行榜
+     * KEYS[1] 排行榜 key, KEYS[2] 暂离排行榜 key, KEYS[3] 分类映射 key, KEYS[4] 分类集合 key, KEYS[5] 衰减基准时间 key
+     * ARGV[1] 商品ID, ARGV[2] 分类排行榜 key 前缀, ARGV[3] 半衰期（毫秒）
+     * 返回 1 表示回榜，0 表示商品不在暂存中
+     */
+    private static final RedisScript<Long> HOT_RESTORE_SCRIPT = new DefaultRedisScript<>(HOT_SCORE_LUA + """
+            local half_life = tonumber(ARGV[3])
+            local score = read_parked(KEYS[2], ARGV[1], KEYS[5], half_life)
+            if not score then
+                return 0
+            end
+            redis.call('HDEL', KEYS[2], ARGV[1])
+            if score > 0 then
+                add_hot_score(KEYS[1], KEYS[3], KEYS[4], KEYS[2], ARGV[2], ARGV[1], score, KEYS[5], half_life)
+            end
+            return 1
+            """, Long.class);
+
+    /**
+     * 移除脚本：商品删除时清除其全部热度排行数据
+     * KEYS[1] 排行榜 key, KEYS[2] 暂离排行榜 key, KEYS[3] 分类映射 key
+     * ARGV[1] 商品ID, ARGV[2] 分类排行榜 key 前缀
+     */
+    private static final RedisScript<Long> HOT_EVICT_SCRIPT = new DefaultRedisScript<>("""
+            redis.call('ZREM', KEYS[1], ARGV[1])
+            redis.call('HDEL', KEYS[2], ARGV[1])
+            local category = redis.call('HGET', KEYS[3], ARGV[1])
+            if category then
+                redis.call('ZREM', ARGV[2] .. category, ARGV[1])
+                redis.call('HDEL', KEYS[3], ARGV[1])
+            end
+            return 1
+            """, Long.class);
+
+    /**
+     * 取走增量脚本：对每个 delta key 原子地 GET + DEL
+     * 取走之后到达的新增量会重新创建 delta key 并写入待同步集合，不会丢失
+     * 返回与 KEYS 一一对应的增量值，不存在时为空字符串
+     */
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> TAKE_DELTAS_SCRIPT = new DefaultRedisScript<>("""
+            local result = {}
+            for i, key in ipairs(KEYS) do
+                result[i] = redis.call('GET', key) or ''
+                redis.call('DEL', key)
+            end
+            return result
+            """, List.class);
+
     private final StringRedisTemplate stringRedisTemplate;
     private final HotnessProperties hotnessProperties;
     private final ProductMapper productMapper;
 
+    /**
+     * 本地写缓冲：商品ID -> 尚未刷新到 Redis 的浏览增量
+     * 使用 ConcurrentHashMap.merge 按桶原子累加，刷新时 remove 取走整条记录，不会丢失并发写入
+     */
+    private final ConcurrentHashMap<Integer, Long> pendingViews = new ConcurrentHashMap<>();
+
+    /** 写缓冲模式下的本地去重记录：{productId}:{requestId} -> 过期时间戳（毫秒） */
+    private final ConcurrentHashMap<String, Long> recentViewRequests = new ConcurrentHashMap<>();
+
     public ProductHotnessService(StringRedisTemplate stringRedisTemplate, 
                                   HotnessProperties hotnessProperties,
                                   ProductMapper productMapper) {
@@ -58,8 +341,8 @@ public class ProductHotnessService {
 
     /**
      * 增加商品浏览量
-     * 使用 Redis INCR 原子递增浏览量，同时更新排行榜 ZSet 分数，
-     * 并记录增量到 delta key 用于后续同步到数据库
+     * 通过 Lua 脚本原子递增浏览量、记录增量到 delta key（用于后续同步到数据库）
+     * 并更新排行榜 ZSet 分数，整个过程只需一次 Redis 往返
      * 
      * 当 Redis 连接不可用时，降级到直接更新数据库
      *
@@ -70,37 +353,19 @@ public class ProductHotnessService {
         if (productId == null) {
             throw new IllegalArgumentException("productId cannot be null");
         }
-
-        try {
-            String viewCountKey = getViewCountKey(productId);
-            String viewDeltaKey = getViewDeltaKey(productId);
-
-            // 1. 原子递增浏览量
-            Long newCount = stringRedisTemplate.opsForValue().increment(viewCountKey);
-            
-            // 2. 记录增量到 delta key，用于后续同步到数据库
-            stringRedisTemplate.opsForValue().increment(viewDeltaKey);
-            
-            // 3. 更新排行榜 ZSet 分数
-            stringRedisTemplate.opsForZSet().incrementScore(KEY_HOT_RANKING, productId.toString(), 1);
-
-            log.debug("商品 {} 浏览量递增，当前浏览量: {}", productId, newCount);
-            
-            return newCount;
-        } catch (Exception e) {
-            // Redis 连接失败，降级到直接更新 MySQL
-            log.warn("Redis 连接失败，降级到直接更新数据库。商品ID: {}, 错误: {}", productId, e.getMessage());
-            return fallbackIncrementViewCount(productId);
+        if (bufferView(productId)) {
+            return getViewCount(productId);
         }
+        return executeViewIncrement(productId, null);
     }
     
     /**
      * 安全增加商品浏览量（带防重复机制）
-     * 使用 Redis SETNX 防止短时间内重复计数（1秒内同一请求不重复计数）
+     * 去重（SET NX PX）与计数在同一个 Lua 脚本中执行（1秒内同一请求不重复计数）
      * 
      * @param productId 商品ID
      * @param requestId 请求唯一标识（可以是 sessionId + timestamp 等）
-     * @return 递增后的浏览量，如果是重复请求则返回当前浏览量而不递增
+     * @return 递增后的浏览量，如果是重复请求则返回当前浏览量而不递增；降级模式下返回 null
      */
     public Long incrementViewCountSafe(Integer productId, String requestId) {
         if (productId == null) {
@@ -112,23 +377,184 @@ public class ProductHotnessService {
             return incrementViewCount(productId);
         }
 
-        try {
-            // 使用 SETNX 检查是否是重复请求（1秒内）
-            String dedupeKey = "product:view:dedupe:" + productId + ":" + requestId;
-            Boolean isNew = stringRedisTemplate.opsForValue().setIfAbsent(
-                dedupeKey, "1", java.time.Duration.ofSeconds(1));
-            
-            if (isNew == null || !isNew) {
-                // 重复请求，只返回当前浏览量，不递增
+        String dedupeKey = KEY_VIEW_DEDUPE + productId + ":" + requestId;
+        if (hotnessProperties.isViewBufferEnabled() && isBufferAvailable(productId)) {
+            // 写缓冲模式下在本地去重，避免每次访问都访问 Redis
+            if (isDuplicateViewRequest(dedupeKey)) {
                 log.debug("商品 {} 重复浏览请求被忽略，requestId: {}", productId, requestId);
-                return getViewCount(productId);
+            } else {
+                pendingViews.merge(productId, 1L, Long::sum);
             }
-            
-            // 不是重复请求，执行正常的递增逻辑
-            return incrementViewCount(productId);
+            return getViewCount(productId);
+        }
+        return executeViewIncrement(productId, dedupeKey);
+    }
+
+    /**
+     * 写缓冲模式下记录一次浏览
+     *
+     * @return 已写入本地缓冲返回 true；未开启缓冲或缓冲已满返回 false，由调用方直接写 Redis
+     */
+    private boolean bufferView(Integer productId) {
+        if (!hotnessProperties.isViewBufferEnabled() || !isBufferAvailable(productId)) {
+            return false;
+        }
+        pendingViews.merge(productId, 1L, Long::sum);
+        return true;
+    }
+
+    /**
+     * 缓冲是否还能容纳该商品（已在缓冲中的商品总是可以继续累加）
+     * 超过上限的新商品直接走 Redis 脚本，保证内存有界
+     */
+    private boolean isBufferAvailable(Integer productId) {
+        return pendingViews.containsKey(productId)
+                || pendingViews.size() < hotnessProperties.getViewBufferMaxProducts();
+    }
+
+    /**
+     * 本地去重检查，窗口与 Redis 去重一致
+     *
+     * @return 窗口内已计数过的请求返回 true
+     */
+    private boolean isDuplicateViewRequest(String dedupeKey) {
+        long now = System.currentTimeMillis();
+        long expireAt = now + VIEW_DEDUPE_WINDOW.toMillis();
+        Long previous = recentViewRequests.get(dedupeKey);
+        if (previous == null) {
+            // 去重记录数量达到上限时不再记录，宁可多计也不阻塞
+            if (recentViewRequests.size() >= hotnessProperties.getViewBufferMaxProducts()) {
+                return false;
+            }
+            return recentViewRequests.putIfAbsent(dedupeKey, expireAt) != null;
+        }
+        if (previous > now) {
+            return true;
+        }
+        // 旧记录已过期，只有替换成功的请求计数
+        return !recentViewRequests.replace(dedupeKey, previous, expireAt);
+    }
+
+    /**
+     * 将本地缓冲的浏览增量批量刷新到 Redis
+     * 所有商品的浏览量、增量与排行榜更新在同一个 pipeline 中发送
+     * 刷新失败时增量放回缓冲，等待下次重试
+     */
+    public void flushViewBuffer() {
+        // 清理过期的去重记录
+        long now = System.currentTimeMillis();
+        recentViewRequests.values().removeIf(expireAt -> expireAt <= now);
+
+        if (pendingViews.isEmpty()) {
+            return;
+        }
+
+        Map<Integer, Long> deltas = drainPendingViews();
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        try {
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection conn = (StringRedisConnection) connection;
+                for (Map.Entry<Integer, Long> entry : deltas.entrySet()) {
+                    Integer productId = entry.getKey();
+                    long delta = entry.getValue();
+                    conn.incrBy(getViewCountKey(productId), delta);
+                    conn.incrBy(getViewDeltaKey(productId), delta);
+                    conn.sAdd(KEY_VIEW_DIRTY, productId.toString());
+                }
+                // 排行榜加分需要读取衰减基准时间，在同一个 pipeline 中用脚本一次完成
+                List<String> keysAndArgs = hotScoreKeysAndArgs(deltas, hotnessProperties.getViewWeight());
+                conn.eval(HOT_SCORE_SCRIPT.getScriptAsString(), ReturnType.INTEGER, 6,
+                        keysAndArgs.toArray(new String[0]));
+                return null;
+            });
+            log.debug("浏览量缓冲已刷新到 Redis，商品数: {}", deltas.size());
         } catch (Exception e) {
-            log.warn("防重复检查失败，降级到普通递增。商品ID: {}, 错误: {}", productId, e.getMessage());
-            return incrementViewCount(productId);
+            log.warn("浏览量缓冲刷新失败，增量放回缓冲等待重试。商品数: {}, 错误: {}", deltas.size(), e.getMessage());
+            deltas.forEach((productId, delta) -> pendingViews.merge(productId, delta, Long::sum));
+        }
+    }
+
+    /**
+     * 应用关闭时刷新剩余缓冲；Redis 不可用时直接写入数据库，避免丢失增量
+     */
+    @PreDestroy
+    public void flushViewBufferOnShutdown() {
+        flushViewBuffer();
+        if (pendingViews.isEmpty()) {
+            return;
+        }
+        Map<Integer, Long> deltas = drainPendingViews();
+        log.warn("关闭时 Redis 不可用，{} 个商品的浏览增量直接写入数据库", deltas.size());
+        deltas.forEach((productId, delta) -> {
+            try {
+                productMapper.updateViewCountDelta(productId, delta);
+            } catch (Exception e) {
+                log.error("关闭时写入浏览增量失败。商品ID: {}, 增量: {}, 错误: {}", productId, delta, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * 取走缓冲中的全部增量
+     */
+    private Map<Integer, Long> drainPendingViews() {
+        Map<Integer, Long> deltas = new HashMap<>();
+        for (Integer productId : pendingViews.keySet()) {
+            Long delta = pendingViews.remove(productId);
+            if (delta != null && delta > 0) {
+                deltas.put(productId, delta);
+            }
+        }
+        return deltas;
+    }
+
+    /**
+     * 获取本地缓冲中尚未刷新的浏览增量
+     */
+    private long getPendingViews(Integer productId) {
+        return pendingViews.getOrDefault(productId, 0L);
+    }
+
+    /**
+     * 执行浏览计数脚本
+     *
+     * @param productId 商品ID
+     * @param dedupeKey 去重 key，为 null 时不做去重
+     * @return 脚本返回的浏览量，降级模式下返回 null
+     */
+    private Long executeViewIncrement(Integer productId, String dedupeKey) {
+        List<String> keys = new ArrayList<>(10);
+        keys.add(getViewCountKey(productId));
+        keys.add(getViewDeltaKey(productId));
+        keys.add(KEY_HOT_RANKING);
+        keys.add(KEY_VIEW_DIRTY);
+        keys.add(KEY_HOT_EPOCH);
+        long now = System.currentTimeMillis();
+        keys.add(getHotBucketKey(now));
+        keys.add(KEY_PRODUCT_CATEGORY);
+        keys.add(KEY_HOT_CATEGORIES);
+        keys.add(KEY_HOT_PARKED);
+        if (dedupeKey != null) {
+            keys.add(dedupeKey);
+        }
+
+        try {
+            Long count = stringRedisTemplate.execute(VIEW_INCREMENT_SCRIPT, keys,
+                    productId.toString(), String.valueOf(VIEW_DEDUPE_WINDOW.toMillis()),
+                    String.valueOf(now),
+                    String.valueOf(hotnessProperties.getDecayHalfLife()),
+                    String.valueOf(hotnessProperties.getViewWeight()),
+                    String.valueOf(BUCKET_TTL.toSeconds()),
+                    KEY_HOT_CATEGORY);
+            log.debug("商品 {} 浏览计数完成，当前浏览量: {}", productId, count);
+            return count;
+        } catch (Exception e) {
+            // Redis 连接失败，降级到直接更新 MySQL
+            log.warn("Redis 连接失败，降级到直接更新数据库。商品ID: {}, 错误: {}", productId, e.getMessage());
+            return fallbackIncrementViewCount(productId);
         }
     }
 
@@ -157,7 +583,7 @@ public class ProductHotnessService {
 
     /**
      * 获取单个商品浏览量
-     * 从 Redis 获取商品的实时浏览量
+     * 从 Redis 获取商品的实时浏览量，并合并本地缓冲中尚未刷新的增量
      *
      * @param productId 商品ID
      * @return 当前浏览量，不存在时返回 0
@@ -169,16 +595,17 @@ public class ProductHotnessService {
 
         String viewCountKey = getViewCountKey(productId);
         String value = stringRedisTemplate.opsForValue().get(viewCountKey);
+        long pending = getPendingViews(productId);
         
         if (value == null) {
-            return 0L;
+            return pending;
         }
         
         try {
-            return Long.parseLong(value);
+            return Long.parseLong(value) + pending;
         } catch (NumberFormatException e) {
             log.warn("商品 {} 浏览量格式错误: {}", productId, value);
-            return 0L;
+            return pending;
         }
     }
 
@@ -224,7 +651,7 @@ public class ProductHotnessService {
                         log.warn("商品 {} 浏览量格式错误: {}", productId, value);
                     }
                 }
-                result.put(productId, count);
+                result.put(productId, count + getPendingViews(productId));
                 index++;
             }
         }
@@ -232,6 +659,383 @@ public class ProductHotnessService {
         return result;
     }
 
+    /**
+     * 热度事件类型，不同事件按 HotnessProperties 中配置的权重计分
+     */
+    public enum HotnessEvent {
+        VIEW, FAVORITE, ORDER, COMMENT
+    }
+
+    /**
+     * 记录一次非浏览类的热度事件（收藏、下单、评论）
+     * 只更新排行榜分数，不影响浏览量；Redis 不可用时仅记录日志，不影响业务操作
+     *
+     * @param productId 商品ID
+     * @param event     事件类型
+     */
+    public void recordHotnessEvent(Integer productId, HotnessEvent event) {
+        if (productId == null || event == null) {
+            return;
+        }
+        double weight = getEventWeight(event);
+        if (weight == 0) {
+            return;
+        }
+        try {
+            List<String> keysAndArgs = hotScoreKeysAndArgs(Map.of(productId, 1L), weight);
+            stringRedisTemplate.execute(HOT_SCORE_SCRIPT, keysAndArgs.subList(0, 6),
+                    keysAndArgs.subList(6, keysAndArgs.size()).toArray());
+            log.debug("商品 {} 记录热度事件 {}，权重: {}", productId, event, weight);
+        } catch (Exception e) {
+            log.warn("记录热度事件失败。商品ID: {}, 事件: {}, 错误: {}", productId, event, e.getMessage());
+        }
+    }
+
+    /**
+     * 获取事件权重
+     */
+    private double getEventWeight(HotnessEvent event) {
+        return switch (event) {
+            case VIEW -> hotnessProperties.getViewWeight();
+            case FAVORITE -> hotnessProperties.getFavoriteWeight();
+            case ORDER -> hotnessProperties.getOrderWeight();
+            case COMMENT -> hotnessProperties.getCommentWeight();
+        };
+    }
+
+    /**
+     * 构造热度加分脚本的 KEYS 与 ARGV（前六项为 KEYS）
+     *
+     * @param counts 商品ID -> 事件次数
+     * @param weight 单次事件权重
+     */
+    private List<String> hotScoreKeysAndArgs(Map<Integer, Long> counts, double weight) {
+        long now = System.currentTimeMillis();
+        List<String> keysAndArgs = new ArrayList<>(10 + counts.size() * 2);
+        keysAndArgs.add(KEY_HOT_RANKING);
+        keysAndArgs.add(KEY_HOT_EPOCH);
+        keysAndArgs.add(getHotBucketKey(now));
+        keysAndArgs.add(KEY_PRODUCT_CATEGORY);
+        keysAndArgs.add(KEY_HOT_CATEGORIES);
+        keysAndArgs.add(KEY_HOT_PARKED);
+        keysAndArgs.add(String.valueOf(now));
+        keysAndArgs.add(String.valueOf(hotnessProperties.getDecayHalfLife()));
+        keysAndArgs.add(String.valueOf(BUCKET_TTL.toSeconds()));
+        keysAndArgs.add(KEY_HOT_CATEGORY);
+        counts.forEach((productId, count) -> {
+            keysAndArgs.add(productId.toString());
+            keysAndArgs.add(String.valueOf(count * weight));
+        });
+        return keysAndArgs;
+    }
+
+    /**
+     * 重新归一化热度排行榜
+     * 将分数整体缩放到当前时刻为基准，排名不变，避免衰减系数持续增大导致精度下降
+     * 未开启衰减时不做任何操作
+     */
+    public void renormalizeHotRanking() {
+        long halfLife = hotnessProperties.getDecayHalfLife();
+        if (halfLife <= 0) {
+            return;
+        }
+        Long scaled = stringRedisTemplate.execute(HOT_RENORMALIZE_SCRIPT,
+                Arrays.asList(KEY_HOT_RANKING, KEY_HOT_EPOCH, KEY_HOT_CATEGORIES),
+                String.valueOf(System.currentTimeMillis()), String.valueOf(halfLife), KEY_HOT_CATEGORY);
+        log.info("热度排行榜重新归一化完成，是否缩放: {}", Long.valueOf(1L).equals(scaled));
+    }
+
+    /**
+     * 获取分类热门排行榜 key
+     */
+    public String getCategoryRankingKey(String category) {
+        return KEY_HOT_CATEGORY + category;
+    }
+
+    /**
+     * 登记商品分类，之后该商品的热度事件会同时计入分类排行榜
+     * 商品发布时调用；Redis 不可用时仅记录日志，下次启动预热时会重新登记
+     *
+     * @param productId 商品ID
+     * @param category  商品分类
+     */
+    public void registerProductCategory(Integer productId, String category) {
+        if (productId == null || category == null || category.isEmpty()) {
+            return;
+        }
+        try {
+            stringRedisTemplate.opsForHash().put(KEY_PRODUCT_CATEGORY, productId.toString(), category);
+        } catch (Exception e) {
+            log.warn("登记商品分类失败。商品ID: {}, 分类: {}, 错误: {}", productId, category, e.getMessage());
+        }
+    }
+
+    /**
+     * 商品暂离排行榜（被下单锁定或下架）
+     * 分数移到暂存 hash，期间的热度事件继续累加到暂存中，首页和分类榜不再返回该商品
+     * Redis 不可用时仅记录日志，不影响业务操作
+     *
+     * @param productId 商品ID
+     */
+    public void parkProduct(Integer productId) {
+        if (productId == null) {
+            return;
+        }
+        try {
+            stringRedisTemplate.execute(HOT_PARK_SCRIPT,
+                    Arrays.asList(KEY_HOT_RANKING, KEY_HOT_PARKED, KEY_PRODUCT_CATEGORY, KEY_HOT_EPOCH),
+                    productId.toString(), KEY_HOT_CATEGORY);
+            log.debug("商品 {} 暂离热门排行榜", productId);
+        } catch (Exception e) {
+            log.warn("商品暂离排行榜失败。商品ID: {}, 错误: {}", productId, e.getMessage());
+        }
+    }
+
+    /**
+     * 商品回到排行榜（订单取消或重新上架）
+     * 暂存的分数（包括离榜期间累积的热度）放回全局与分类排行榜
+     *
+     * @param productId 商品ID
+     */
+    public void restoreProduct(Integer productId) {
+        if (productId == null) {
+            return;
+        }
+        try {
+            stringRedisTemplate.execute(HOT_RESTORE_SCRIPT,
+                    Arrays.asList(KEY_HOT_RANKING, KEY_HOT_PARKED, KEY_PRODUCT_CATEGORY, KEY_HOT_CATEGORIES,
+                            KEY_HOT_EPOCH),
+                    productId.toString(), KEY_HOT_CATEGORY, String.valueOf(hotnessProperties.getDecayHalfLife()));
+            log.debug("商品 {} 回到热门排行榜", productId);
+        } catch (Exception e) {
+            log.warn("商品回到排行榜失败。商品ID: {}, 错误: {}", productId, e.getMessage());
+        }
+    }
+
+    /**
+     * 商品售出（订单完成）后丢弃暂存分数，商品不会再回到排行榜
+     * 分类映射保留，商品删除时由 evictProduct 一并清除
+     *
+     * @param productId 商品ID
+     */
+    public void dropParkedScore(Integer productId) {
+        if (productId == null) {
+            return;
+        }
+        try {
+            stringRedisTemplate.opsForHash().delete(KEY_HOT_PARKED, productId.toString());
+            log.debug("商品 {} 已售出，丢弃暂存热度分数", productId);
+        } catch (Exception e) {
+            log.warn("丢弃暂存热度分数失败。商品ID: {}, 错误: {}", productId, e.getMessage());
+        }
+    }
+
+    /**
+     * 商品删除时移除其全部排行数据（全局排行榜、分类排行榜、暂存分数和分类映射）
+     *
+     * @param productId 商品ID
+     */
+    public void evictProduct(Integer productId) {
+        if (productId == null) {
+            return;
+        }
+        try {
+            stringRedisTemplate.execute(HOT_EVICT_SCRIPT,
+                    Arrays.asList(KEY_HOT_RANKING, KEY_HOT_PARKED, KEY_PRODUCT_CATEGORY),
+                    productId.toString(), KEY_HOT_CATEGORY);
+            log.debug("商品 {} 的热度排行数据已移除", productId);
+        } catch (Exception e) {
+            log.warn("移除商品热度排行数据失败。商品ID: {}, 错误: {}", productId, e.getMessage());
+        }
+    }
+
+    /**
+     * 将全局排行榜和各分类排行榜裁剪到配置的容量
+     * 使用 ZREMRANGEBYRANK 移除分数最低的商品；被裁掉的商品再有热度事件时会重新进入排行榜
+     */
+    public void trimHotRankings() {
+        int capacity = hotnessProperties.getRankingCapacity();
+        if (capacity <= 0) {
+            return;
+        }
+        long removed = trimRanking(KEY_HOT_RANKING, capacity);
+        Set<String> categories = stringRedisTemplate.opsForSet().members(KEY_HOT_CATEGORIES);
+        if (categories != null) {
+            for (String category : categories) {
+                removed += trimRanking(getCategoryRankingKey(category), capacity);
+            }
+        }
+        if (removed > 0) {
+            log.info("热门排行榜裁剪完成，容量: {}, 移除商品数: {}", capacity, removed);
+        }
+    }
+
+    private long trimRanking(String key, int capacity) {
+        Long removed = stringRedisTemplate.opsForZSet().removeRange(key, 0, -(capacity + 1L));
+        return removed != null ? removed : 0L;
+    }
+
+    /**
+     * 获取分类热门排行榜
+     * 分类排行榜与全局排行榜在同一个脚本中更新，分数一致
+     *
+     * @param category 商品分类
+     * @param topN     返回前 N 个商品，如果小于等于 0 则使用配置的默认值
+     * @return 按热度降序排列的商品ID列表
+     */
+    public List<Integer> getCategoryHotRanking(String category, int topN) {
+        if (category == null || category.isEmpty()) {
+            return Collections.emptyList();
+        }
+        int size = topN > 0 ? topN : hotnessProperties.getRankingSize();
+        Set<String> productIds = stringRedisTemplate.opsForZSet()
+                .reverseRange(getCategoryRankingKey(category), 0, size - 1);
+        if (productIds == null || productIds.isEmpty()) {
+            log.debug("分类 {} 热门排行榜为空", category);
+            return Collections.emptyList();
+        }
+        List<Integer> result = new ArrayList<>(productIds.size());
+        for (String productIdStr : productIds) {
+            try {
+                result.add(Integer.parseInt(productIdStr));
+            } catch (NumberFormatException e) {
+                log.warn("分类 {} 排行榜中商品ID格式错误: {}", category, productIdStr);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 获取热度排序搜索的候选商品：总热度排行榜前 N 名中分数大于 0 的商品
+     * 同分按商品ID倒序，与数据库中 pro_id DESC 的默认顺序一致
+     *
+     * @param topN 最多读取的排名数
+     * @return 按热度降序排列的商品ID列表
+     */
+    public List<Integer> getHotRankingCandidates(int topN) {
+        if (topN <= 0) {
+            return Collections.emptyList();
+        }
+        Set<ZSetOperations.TypedTuple<String>> tuples = stringRedisTemplate.opsForZSet()
+                .reverseRangeWithScores(KEY_HOT_RANKING, 0, topN - 1);
+        if (tuples == null || tuples.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Map.Entry<Integer, Double>> ranked = new ArrayList<>(tuples.size());
+        for (ZSetOperations.TypedTuple<String> tuple : tuples) {
+            Double score = tuple.getScore();
+            if (tuple.getValue() == null || score == null || score <= 0) {
+                continue;
+            }
+            try {
+                ranked.add(Map.entry(Integer.parseInt(tuple.getValue()), score));
+            } catch (NumberFormatException e) {
+                log.warn("排行榜中商品ID格式错误: {}", tuple.getValue());
+            }
+        }
+        ranked.sort(Map.Entry.<Integer, Double>comparingByValue().reversed()
+                .thenComparing(Map.Entry.<Integer, Double>comparingByKey().reversed()));
+        return ranked.stream().map(Map.Entry::getKey).toList();
+    }
+
+    /**
+     * 获取某一时刻所在的小时桶 key
+     */
+    public String getHotBucketKey(long timeMillis) {
+        return KEY_HOT_BUCKET + (timeMillis / BUCKET_MILLIS);
+    }
+
+    /**
+     * 滑动窗口热度榜
+     */
+    public enum TrendingWindow {
+        HOUR("1h", 1),
+        DAY("24h", 24),
+        WEEK("7d", 24 * 7);
+
+        private final String code;
+        private final int hours;
+
+        TrendingWindow(String code, int hours) {
+            this.code = code;
+            this.hours = hours;
+        }
+
+        public String getCode() {
+            return code;
+        }
+
+        public int getHours() {
+            return hours;
+        }
+
+        public String getKey() {
+            return KEY_HOT_TRENDING + code;
+        }
+
+        /**
+         * 根据窗口代码（1h / 24h / 7d）查找窗口
+         *
+         * @return 对应的窗口，无法识别时返回 null
+         */
+        public static TrendingWindow fromCode(String code) {
+            for (TrendingWindow window : values()) {
+                if (window.code.equalsIgnoreCase(code)) {
+                    return window;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 汇总小时桶，生成各滑动窗口的热度榜
+     * 每个窗口对最近 N 个完整小时桶和当前小时桶做 ZUNIONSTORE，
+     * 最早的小时桶按仍落在窗口内的比例加权，使窗口平滑滑动而不是整点跳变
+     */
+    public void aggregateTrendingRankings() {
+        long now = System.currentTimeMillis();
+        long currentBucket = now / BUCKET_MILLIS;
+        double oldestWeight = 1.0 - (double) (now % BUCKET_MILLIS) / BUCKET_MILLIS;
+
+        for (TrendingWindow window : TrendingWindow.values()) {
+            List<String> bucketKeys = new ArrayList<>(window.getHours() + 1);
+            double[] weights = new double[window.getHours() + 1];
+            for (int i = 0; i <= window.getHours(); i++) {
+                bucketKeys.add(KEY_HOT_BUCKET + (currentBucket - window.getHours() + i));
+                weights[i] = i == 0 ? oldestWeight : 1.0;
+            }
+            stringRedisTemplate.opsForZSet().unionAndStore(bucketKeys.get(0), bucketKeys.subList(1, bucketKeys.size()),
+                    window.getKey(), Aggregate.SUM, Weights.of(weights));
+        }
+        log.debug("滑动窗口热度榜汇总完成");
+    }
+
+    /**
+     * 获取滑动窗口热度榜
+     *
+     * @param window 时间窗口
+     * @param topN   返回前 N 个商品，如果小于等于 0 则使用配置的默认值
+     * @return 按窗口内热度降序排列的商品ID列表
+     */
+    public List<Integer> getTrendingRanking(TrendingWindow window, int topN) {
+        int size = topN > 0 ? topN : hotnessProperties.getRankingSize();
+        Set<String> productIds = stringRedisTemplate.opsForZSet().reverseRange(window.getKey(), 0, size - 1);
+        if (productIds == null || productIds.isEmpty()) {
+            log.debug("{} 热度榜为空", window.getCode());
+            return Collections.emptyList();
+        }
+        List<Integer> result = new ArrayList<>(productIds.size());
+        for (String productIdStr : productIds) {
+            try {
+                result.add(Integer.parseInt(productIdStr));
+            } catch (NumberFormatException e) {
+                log.warn("{} 热度榜中商品ID格式错误: {}", window.getCode(), productIdStr);
+            }
+        }
+        return result;
+    }
+
     /**
      * 获取热门商品排行榜
      * 从 Redis Sorted Set 获取 Top N 商品，按热度分数降序排列
@@ -268,127 +1072,240 @@ public class ProductHotnessService {
 
     /**
      * 同步热度数据到数据库
-     * 扫描所有 delta key，批量更新 MySQL 中的 view_count，然后清除已同步的 delta key
+     * 将待同步集合原子改名为同步中集合，按批取走（GET + DEL）各商品的 delta key，
+     * 每批使用一条 UPDATE ... CASE 语句写入 MySQL
+     * 
+     * 不使用 KEYS 扫描，也不在方法上开启事务：每批语句独立提交，
+     * 写库失败时把取走的增量加回 Redis 等待下次同步
      * 
      * Requirements: 3.1, 3.2
      */
-    @Transactional
     public void syncToDatabase() {
         log.info("开始同步热度数据到数据库...");
-        
-        // 扫描所有 delta key
-        Set<String> deltaKeys = stringRedisTemplate.keys(KEY_VIEW_DELTA + "*");
-        
-        if (deltaKeys == null || deltaKeys.isEmpty()) {
+
+        // 先把本地缓冲刷到 Redis，使本次同步包含最新增量
+        flushViewBuffer();
+
+        // 上次同步中断时遗留的同步中集合优先处理，否则把当前待同步集合改名为同步中集合
+        if (!Boolean.TRUE.equals(stringRedisTemplate.hasKey(KEY_VIEW_DIRTY_SYNCING))) {
+            if (!Boolean.TRUE.equals(stringRedisTemplate.renameIfAbsent(KEY_VIEW_DIRTY, KEY_VIEW_DIRTY_SYNCING))) {
+                log.info("没有需要同步的热度数据");
+                return;
+            }
+        }
+
+        Set<String> members = stringRedisTemplate.opsForSet().members(KEY_VIEW_DIRTY_SYNCING);
+        if (members == null || members.isEmpty()) {
+            stringRedisTemplate.delete(KEY_VIEW_DIRTY_SYNCING);
             log.info("没有需要同步的热度数据");
             return;
         }
-        
+
+        int batchSize = Math.max(1, hotnessProperties.getSyncBatchSize());
+        List<Integer> productIds = new ArrayList<>(members.size());
+        for (String member : members) {
+            try {
+                productIds.add(Integer.parseInt(member));
+            } catch (NumberFormatException e) {
+                log.error("解析待同步商品ID失败: {}", member);
+                stringRedisTemplate.opsForSet().remove(KEY_VIEW_DIRTY_SYNCING, member);
+            }
+        }
+
         int successCount = 0;
         int failCount = 0;
-        List<String> syncedKeys = new ArrayList<>();
-        
-        for (String deltaKey : deltaKeys) {
+        for (int from = 0; from < productIds.size(); from += batchSize) {
+            List<Integer> batch = productIds.subList(from, Math.min(from + batchSize, productIds.size()));
+            int synced = syncBatch(batch);
+            if (synced >= 0) {
+                successCount += synced;
+            } else {
+                failCount += batch.size();
+            }
+        }
+
+        stringRedisTemplate.delete(KEY_VIEW_DIRTY_SYNCING);
+        log.info("热度数据同步完成，成功: {}, 失败: {}", successCount, failCount);
+    }
+
+    /**
+     * 同步一批商品的浏览增量
+     *
+     * @param batch 商品ID列表
+     * @return 写入数据库的商品数量，失败返回 -1
+     */
+    private int syncBatch(List<Integer> batch) {
+        List<String> deltaKeys = new ArrayList<>(batch.size());
+        for (Integer productId : batch) {
+            deltaKeys.add(getViewDeltaKey(productId));
+        }
+
+        // 原子取走这批增量
+        List<?> values = stringRedisTemplate.execute(TAKE_DELTAS_SCRIPT, deltaKeys);
+        List<ProductMapper.ProductViewCount> deltas = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            Object value = values != null && i < values.size() ? values.get(i) : null;
+            if (value == null || value.toString().isEmpty()) {
+                continue;
+            }
             try {
-                // 从 delta key 中提取商品ID
-                String productIdStr = deltaKey.substring(KEY_VIEW_DELTA.length());
-                Integer productId = Integer.parseInt(productIdStr);
-                
-                // 获取增量值
-                String deltaValue = stringRedisTemplate.opsForValue().get(deltaKey);
-                if (deltaValue == null || deltaValue.isEmpty()) {
-                    continue;
-                }
-                
-                long delta = Long.parseLong(deltaValue);
-                if (delta <= 0) {
-                    // 无效增量，直接删除
-                    syncedKeys.add(deltaKey);
-                    continue;
-                }
-                
-                // 更新数据库
-                int updated = productMapper.updateViewCountDelta(productId, delta);
-                if (updated > 0) {
-                    syncedKeys.add(deltaKey);
-                    successCount++;
-                    log.debug("商品 {} 浏览量增量 {} 已同步到数据库", productId, delta);
-                } else {
-                    // 商品可能已被删除，也清除 delta key
-                    syncedKeys.add(deltaKey);
-                    log.warn("商品 {} 不存在，跳过同步", productId);
+                long delta = Long.parseLong(value.toString());
+                if (delta > 0) {
+                    ProductMapper.ProductViewCount item = new ProductMapper.ProductViewCount();
+                    item.setPro_id(batch.get(i));
+                    item.setViewCount(delta);
+                    deltas.add(item);
                 }
             } catch (NumberFormatException e) {
-                log.error("解析 delta key 失败: {}", deltaKey, e);
-                failCount++;
-            } catch (Exception e) {
-                log.error("同步商品热度数据失败: {}", deltaKey, e);
-                failCount++;
+                log.error("商品 {} 的增量格式错误: {}", batch.get(i), value);
             }
         }
-        
-        // 批量清除已同步的 delta key
-        if (!syncedKeys.isEmpty()) {
-            stringRedisTemplate.delete(syncedKeys);
-            log.info("已清除 {} 个已同步的 delta key", syncedKeys.size());
+
+        try {
+            if (!deltas.isEmpty()) {
+                // 商品可能已被删除，未命中的行直接忽略
+                productMapper.updateViewCountDeltas(deltas);
+                log.debug("{} 个商品的浏览量增量已同步到数据库", deltas.size());
+            }
+            stringRedisTemplate.opsForSet().remove(KEY_VIEW_DIRTY_SYNCING, batch.stream().map(String::valueOf).toArray());
+            return deltas.size();
+        } catch (Exception e) {
+            log.error("同步商品热度数据失败，增量放回 Redis 等待下次同步。商品数: {}", deltas.size(), e);
+            restoreDeltas(deltas);
+            return -1;
         }
-        
-        log.info("热度数据同步完成，成功: {}, 失败: {}", successCount, failCount);
+    }
+
+    /**
+     * 把取走但未写入数据库的增量加回 Redis，并重新标记为待同步
+     */
+    private void restoreDeltas(List<ProductMapper.ProductViewCount> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            for (ProductMapper.ProductViewCount item : deltas) {
+                conn.incrBy(getViewDeltaKey(item.getPro_id()), item.getViewCount());
+                conn.sAdd(KEY_VIEW_DIRTY, item.getPro_id().toString());
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 将尚未登记到待同步集合的 delta key 补登记
+     * 兼容升级前写入的增量；使用 SCAN 增量遍历，不会像 KEYS 一样阻塞 Redis
+     *
+     * @return 补登记的商品数量
+     */
+    public int registerUntrackedDeltaKeys() {
+        ScanOptions options = ScanOptions.scanOptions().match(KEY_VIEW_DELTA + "*").count(1000).build();
+        List<String> productIds = new ArrayList<>();
+        try (Cursor<String> cursor = stringRedisTemplate.scan(options)) {
+            while (cursor.hasNext()) {
+                productIds.add(cursor.next().substring(KEY_VIEW_DELTA.length()));
+            }
+        }
+        if (!productIds.isEmpty()) {
+            stringRedisTemplate.opsForSet().add(KEY_VIEW_DIRTY, productIds.toArray(new String[0]));
+        }
+        return productIds.size();
     }
 
     /**
      * 从数据库加载热度数据到 Redis
      * 在系统启动时调用，初始化 Redis 中的浏览量和排行榜
+     * 使用流式查询逐行读取商品表，按 hotness.load-batch-size 分批用管道写入 Redis
      * 
      * Requirements: 3.4
+     *
+     * @return 实际写入 Redis 的商品数量（Redis 中已存在的不计入）
      */
-    public void loadFromDatabase() {
+    public int loadFromDatabase() {
         log.info("开始从数据库加载热度数据到 Redis...");
-        
+
+        int batchSize = Math.max(1, hotnessProperties.getLoadBatchSize());
+        List<ProductMapper.ProductViewCount> batch = new ArrayList<>(batchSize);
+        int[] loadedCount = {0};
+
         try {
-            // 查询所有商品的浏览量
-            List<ProductMapper.ProductViewCount> viewCounts = productMapper.getAllProductViewCounts();
-            
-            if (viewCounts == null || viewCounts.isEmpty()) {
-                log.info("数据库中没有商品数据");
-                return;
-            }
-            
-            int loadedCount = 0;
-            
-            for (ProductMapper.ProductViewCount vc : viewCounts) {
-                Integer productId = vc.getPro_id();
-                Long viewCount = vc.getViewCount();
-                
-                if (productId == null) {
-                    continue;
+            // 游标逐行读取，攒满一批就用一个管道写入 Redis
+            productMapper.streamAllProductViewCounts(context -> {
+                ProductMapper.ProductViewCount vc = context.getResultObject();
+                if (vc == null || vc.getPro_id() == null) {
+                    return;
                 }
-                
-                // 设置浏览量到 Redis（仅当 Redis 中不存在时）
-                String viewCountKey = getViewCountKey(productId);
-                Boolean exists = stringRedisTemplate.hasKey(viewCountKey);
-                
-                if (exists == null || !exists) {
-                    // Redis 中不存在，从数据库加载
-                    long count = viewCount != null ? viewCount : 0L;
-                    stringRedisTemplate.opsForValue().set(viewCountKey, String.valueOf(count));
-                    
-                    // 同时更新排行榜
-                    if (count > 0) {
-                        stringRedisTemplate.opsForZSet().add(KEY_HOT_RANKING, productId.toString(), count);
-                    }
-                    
-                    loadedCount++;
+                batch.add(vc);
+                if (batch.size() >= batchSize) {
+                    loadedCount[0] += loadBatch(batch);
+                    batch.clear();
                 }
+            });
+            if (!batch.isEmpty()) {
+                loadedCount[0] += loadBatch(batch);
             }
-            
-            log.info("从数据库加载热度数据完成，加载了 {} 个商品的浏览量", loadedCount);
+
+            log.info("从数据库加载热度数据完成，加载了 {} 个商品的浏览量", loadedCount[0]);
+            return loadedCount[0];
         } catch (Exception e) {
             log.error("从数据库加载热度数据失败", e);
             throw new RuntimeException("加载热度数据失败", e);
         }
     }
 
+    /**
+     * 用一个管道写入一批商品的浏览量
+     * SETNX 保证不覆盖 Redis 中已有（比数据库更新）的浏览量，
+     * ZADD NX 保证不覆盖排行榜中已有的分数；同时登记商品分类并初始化分类排行榜，
+     * 已锁定或下架的商品只暂存分数（按当前衰减基准时间记录），不进入排行榜；分数为 0 的不写入暂存
+     *
+     * @return 本批实际写入浏览量的商品数量
+     */
+    private int loadBatch(List<ProductMapper.ProductViewCount> batch) {
+        String epoch = stringRedisTemplate.opsForValue().get(KEY_HOT_EPOCH);
+        List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            // 先发送全部 SETNX，使结果列表的前 batch.size() 项与商品一一对应
+            for (ProductMapper.ProductViewCount vc : batch) {
+                long count = vc.getViewCount() != null ? vc.getViewCount() : 0L;
+                conn.setNX(getViewCountKey(vc.getPro_id()), String.valueOf(count));
+            }
+            for (ProductMapper.ProductViewCount vc : batch) {
+                long count = vc.getViewCount() != null ? vc.getViewCount() : 0L;
+                String member = vc.getPro_id().toString();
+                String category = vc.getCategory();
+                if (category != null && !category.isEmpty()) {
+                    conn.hSet(KEY_PRODUCT_CATEGORY, member, category);
+                }
+                if (Boolean.TRUE.equals(vc.getSealed())) {
+                    // 已锁定或下架的商品不进入排行榜，分数暂存，恢复在售时回榜
+                    if (count > 0) {
+                        conn.hSetNX(KEY_HOT_PARKED, member,
+                                count * hotnessProperties.getViewWeight() + "|" + (epoch != null ? epoch : ""));
+                    }
+                } else if (count > 0) {
+                    double score = count * hotnessProperties.getViewWeight();
+                    conn.zAdd(KEY_HOT_RANKING, score, member, RedisZSetCommands.ZAddArgs.ifNotExists());
+                    if (category != null && !category.isEmpty()) {
+                        conn.zAdd(getCategoryRankingKey(category), score, member,
+                                RedisZSetCommands.ZAddArgs.ifNotExists());
+                        conn.sAdd(KEY_HOT_CATEGORIES, category);
+                    }
+                }
+            }
+            return null;
+        });
+
+        int loaded = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            if (Boolean.TRUE.equals(results.get(i))) {
+                loaded++;
+            }
+        }
+        return loaded;
+    }
+
     /**
      * 获取 ProductMapper（用于测试）
      */
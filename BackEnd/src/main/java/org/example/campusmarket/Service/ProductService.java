@@ -3,17 +3,26 @@ package org.example.campusmarket.Service;
 import org.example.campusmarket.DTO.ProductDto;
 import org.example.campusmarket.Mapper.ProductMapper;
 import org.example.campusmarket.entity.Product;
+import org.example.campusmarket.util.SingleFlight;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Base64;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 // 商品服务层，处理商品相关的业务逻辑
@@ -32,6 +41,18 @@ public class ProductService {
     @Autowired
     private ProductHotnessService productHotnessService;
 
+    @Autowired
+    private ProductChangeNotifier productChangeNotifier;
+
+    @Autowired
+    private ProductDetailCache productDetailCache;
+
+    @Autowired
+    private SingleFlight singleFlight;
+
+    @Autowired
+    private UserSummaryCache userSummaryCache;
+
     // 搜索商品的核心业务方法
     // keyword: 搜索关键词
     // category: 分类过滤
@@ -44,60 +65,276 @@ public class ProductService {
     public ProductDto.ProductListResponse searchProducts(String keyword, String category, String location, 
                                                          String status, Double priceMin, Double priceMax, 
                                                          String sort, int page, int pageSize) {
-        // 计算分页偏移量 (Offset)
-        int offset = (page - 1) * pageSize;
+        return searchProducts(keyword, category, location, status, priceMin, priceMax, sort, page, pageSize, null, false);
+    }
+
+    // 搜索商品，支持游标分页与估算总数
+    // cursor: 为 null 时按 page 分页；非 null 时进入游标模式（空串表示第一页），忽略 page，
+    //         按上一页返回的 nextCursor 继续取，每页代价恒定，不随翻页深度增长；游标模式下不统计 total；
+    //         游标无效或与 sort 不匹配时抛出 IllegalArgumentException
+    // estimateTotal: 页码模式下只数到当前页之后 ESTIMATE_EXTRA_PAGES 页，数满时 totalEstimated = true
+    public ProductDto.ProductListResponse searchProducts(String keyword, String category, String location, 
+                                                         String status, Double priceMin, Double priceMax, 
+                                                         String sort, int page, int pageSize, String cursor,
+                                                         boolean estimateTotal) {
+        // 过滤条件只规范化一次，Mapper 查询与总数缓存 key 使用同一组值
+        keyword = normalizeFilter(keyword);
+        category = normalizeFilter(category);
+        location = normalizeFilter(location);
+        status = normalizeFilter(status);
         
-        // 调用 Mapper 查询商品列表
-        List<ProductDto.ProductDetail> items = productMapper.searchProducts(keyword, category, location, status, priceMin, priceMax, sort, offset, pageSize);
+        boolean cursorMode = cursor != null;
+        // 计算分页偏移量 (Offset)，游标模式下从游标位置开始，不再跳过行
+        int offset = cursorMode ? 0 : (page - 1) * pageSize;
+        SearchCursor after = cursorMode ? SearchCursor.decode(cursor, sort) : null;
         
-        // 调用 Mapper 查询符合条件的总数
-        long total = productMapper.countProducts(keyword, category, location, status, priceMin, priceMax);
+        // 关键词转换为全文索引查询串，无法走全文索引时为 null（退回 LIKE）
+        String matchQuery = buildMatchQuery(keyword);
         
-        // 对查询结果进行后处理：填充图片列表和卖家信息结构
-        if (items != null) {
-            items.forEach(this::populateDetails);
-            
-            // 热度排序时从 Redis 获取实时浏览量并重新排序
-            // Requirements: 2.1 - 热度排序时从 Redis 获取浏览量
-            if ("popular".equals(sort) && !items.isEmpty()) {
-                items = sortByRedisHotness(items);
-            } else if (!items.isEmpty()) {
-                // 非热度排序时，也需要填充 Redis 中的实时浏览量
-                fillRedisViewCounts(items);
-            }
-        } else {
+        // 页码模式的热度排序：排行榜前列按热度排序，其余按 pro_id 倒序，再统一分页
+        // Requirements: 2.1 - 热度排序时从 Redis 获取浏览量
+        if ("popular".equals(sort) && !cursorMode) {
+            return searchPopularProducts(keyword, matchQuery, category, location, status, priceMin, priceMax, page, pageSize);
+        }
+        
+        // 调用 Mapper 查询商品列表，游标模式多取一条用于判断是否还有下一页
+        List<ProductDto.ProductDetail> items = productMapper.searchProducts(keyword, matchQuery, category, location, status, priceMin, priceMax, sort,
+                after != null ? after.id() : null,
+                after != null ? after.price() : null,
+                after != null ? after.views() : null,
+                offset, cursorMode ? pageSize + 1 : pageSize);
+        if (items == null) {
             items = new ArrayList<>();
         }
         
+        // 游标取自数据库排序键，必须在填充 Redis 实时浏览量、重新排序之前生成
+        String nextCursor = null;
+        if (cursorMode && items.size() > pageSize) {
+            items = new ArrayList<>(items.subList(0, pageSize));
+            nextCursor = SearchCursor.of(items.get(pageSize - 1)).encode(sort);
+        }
+        
+        // 查询符合条件的总数（游标模式下不统计），相同过滤条件短时间内复用缓存结果
+        Long total = null;
+        Boolean totalEstimated = null;
+        if (!cursorMode) {
+            Integer cap = estimateTotal ? (Math.max(page, 1) + ESTIMATE_EXTRA_PAGES) * pageSize : null;
+            total = countProducts(keyword, matchQuery, category, location, status, priceMin, priceMax, cap);
+            totalEstimated = cap != null && total >= cap;
+        }
+        
+        // 对查询结果进行后处理：填充图片列表和卖家信息结构
+        populateDetails(items);
+        
+        // 填充 Redis 中的实时浏览量（游标模式的热度排序仍按数据库浏览量分页，不在页内重排，以免游标错位）
+        if (!items.isEmpty()) {
+            fillRedisViewCounts(items);
+        }
+        
         // 返回包含列表和总数的响应对象
-        return new ProductDto.ProductListResponse(items, total);
+        ProductDto.ProductListResponse response = new ProductDto.ProductListResponse(items, total);
+        response.setTotalEstimated(totalEstimated);
+        response.setNextCursor(nextCursor);
+        return response;
+    }
+
+    // 估算模式下在当前页之后最多再数的页数
+    private static final int ESTIMATE_EXTRA_PAGES = 10;
+
+    // 搜索总数缓存：key 为 searchProducts 中规范化后的过滤条件（含估算上限），短 TTL，商品变更时整体失效
+    private record CountKey(String keyword, String category, String location, String status,
+                            Double priceMin, Double priceMax, Integer cap) {
+    }
+
+    private final Cache<CountKey, Long> countCache = Caffeine.newBuilder()
+            .maximumSize(1000)
+            .expireAfterWrite(Duration.ofSeconds(30))
+            .build();
+
+    private long countProducts(String keyword, String matchQuery, String category, String location,
+                               String status, Double priceMin, Double priceMax, Integer cap) {
+        CountKey key = new CountKey(keyword, category, location, status, priceMin, priceMax, cap);
+        return countCache.get(key, k -> productMapper.countProducts(
+                keyword, matchQuery, category, location, status, priceMin, priceMax, cap));
+    }
+
+    // 过滤条件规范化：去掉首尾空白，空白串视为未过滤（null），结果同时用于 Mapper 查询与缓存 key
+    private static String normalizeFilter(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        return value.trim();
+    }
+
+    // 热度排序候选缓存：key 同总数缓存（cap 为 null），value 为排行榜前 POPULAR_CANDIDATE_LIMIT 名中符合过滤条件的商品ID（按热度排序）
+    private final Cache<CountKey, List<Integer>> popularIdsCache = Caffeine.newBuilder()
+            .maximumSize(50)
+            .expireAfterWrite(Duration.ofSeconds(30))
+            .build();
+
+    // 热度排序时从排行榜读取的候选数量，排名更靠后的商品按 pro_id 倒序排在其后
+    private static final int POPULAR_CANDIDATE_LIMIT = 1000;
+
+    // 商品变更后清空总数缓存，避免列表与总数长时间不一致；
+    // 热度候选只失效包含该商品的条目，新商品不在排行榜中，由数据库实时分页的尾部覆盖，热度名次变化由短 TTL 收敛
+    @EventListener
+    public void onProductChanged(ProductChangeNotifier.ProductChangedEvent event) {
+        countCache.invalidateAll();
+        Integer productId = event.productId();
+        if (productId != null) {
+            popularIdsCache.asMap().values().removeIf(ids -> ids.contains(productId));
+        }
+    }
+
+    /**
+     * 搜索游标：上一页最后一条商品的排序键 + pro_id
+     * 编码为 Base64URL("排序方式|排序键|pro_id")，对客户端不透明；排序方式不一致或格式错误时视为第一页
+     */
+    private record SearchCursor(Integer id, Double price, Long views) {
+
+        static SearchCursor of(ProductDto.ProductDetail last) {
+            Integer views = last.getViews();
+            return new SearchCursor(last.getId(), last.getPrice(), views != null ? views.longValue() : 0L);
+        }
+
+        String encode(String sort) {
+            String key = switch (sortKey(sort)) {
+                case "price-low", "price-high" -> String.valueOf(price);
+                case "popular" -> String.valueOf(views);
+                default -> "";
+            };
+            String raw = sortKey(sort) + "|" + key + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        /**
+         * 解析游标；空串表示第一页，返回 null
+         * 游标格式错误或与当前排序方式不匹配时抛出 IllegalArgumentException，
+         * 不静默回到第一页，避免客户端在翻页中途重复拿到首页数据
+         */
+        static SearchCursor decode(String cursor, String sort) {
+            if (cursor == null || cursor.isBlank()) {
+                return null;
+            }
+            String[] parts;
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                parts = raw.split("\\|", -1);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("无效的分页游标");
+            }
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("无效的分页游标");
+            }
+            if (!parts[0].equals(sortKey(sort))) {
+                throw new IllegalArgumentException("分页游标与排序方式不匹配");
+            }
+            try {
+                Integer id = Integer.valueOf(parts[2]);
+                return switch (parts[0]) {
+                    case "price-low", "price-high" -> new SearchCursor(id, Double.valueOf(parts[1]), null);
+                    case "popular" -> new SearchCursor(id, null, Long.valueOf(parts[1]));
+                    default -> new SearchCursor(id, null, null);
+                };
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("无效的分页游标");
+            }
+        }
+
+        private static String sortKey(String sort) {
+            if ("price-low".equals(sort) || "price-high".equals(sort) || "popular".equals(sort)) {
+                return sort;
+            }
+            return "latest";
+        }
     }
-    
+
+    // 全文索引使用 ngram 分词（MySQL 默认 ngram_token_size = 2），短于该长度的词无法命中索引
+    private static final int MATCH_MIN_TERM_LENGTH = 2;
+
+    /**
+     * 将搜索关键词转换为 MySQL 布尔模式全文查询串
+     * 按空白拆分为多个词，每个词去掉布尔模式运算符后作为必须出现的短语（+"词"），
+     * ngram 分词下短语匹配等价于子串匹配，与原 LIKE 语义一致
+     * 
+     * @return 查询串；关键词为空、只含运算符或包含单字词时返回 null，由调用方退回 LIKE
+     */
+    static String buildMatchQuery(String keyword) {
+        if (keyword == null || keyword.isBlank()) {
+            return null;
+        }
+        StringBuilder query = new StringBuilder();
+        for (String term : keyword.trim().split("\\s+")) {
+            String cleaned = term.replaceAll("[+\\-<>()~*\"@]", "");
+            if (cleaned.isEmpty()) {
+                continue;
+            }
+            if (cleaned.length() < MATCH_MIN_TERM_LENGTH) {
+                return null;
+            }
+            if (query.length() > 0) {
+                query.append(' ');
+            }
+            query.append("+\"").append(cleaned).append('"');
+        }
+        return query.length() > 0 ? query.toString() : null;
+    }
+
     /**
-     * 使用 Redis 中的实时浏览量对商品列表进行热度排序
+     * 热度排序分页
+     * 头部：从 Redis 排行榜取前 POPULAR_CANDIDATE_LIMIT 名，一次 IN 查询筛出符合过滤条件的商品，按热度排序后短时间缓存；
+     * 尾部：其余符合条件的商品（未上榜或排名靠后）按 pro_id 倒序由数据库分页，排除头部已出现的ID。
+     * 每页代价与结果集大小无关，总数复用搜索总数缓存
      * Requirements: 2.1
      */
-    private List<ProductDto.ProductDetail> sortByRedisHotness(List<ProductDto.ProductDetail> items) {
-        // 获取所有商品ID
-        List<Integer> productIds = items.stream()
-                .map(ProductDto.ProductDetail::getId)
-                .collect(Collectors.toList());
-        
-        // 批量获取 Redis 中的实时浏览量
-        Map<Integer, Long> viewCounts = productHotnessService.getViewCounts(productIds);
+    private ProductDto.ProductListResponse searchPopularProducts(String keyword, String matchQuery, String category,
+                                                                 String location, String status, Double priceMin,
+                                                                 Double priceMax, int page, int pageSize) {
+        CountKey key = new CountKey(keyword, category, location, status, priceMin, priceMax, null);
+        List<Integer> rankedIds = popularIdsCache.get(key, k -> loadPopularCandidates(
+                keyword, matchQuery, category, location, status, priceMin, priceMax));
         
-        // 更新每个商品的浏览量并按热度降序排序
-        for (ProductDto.ProductDetail item : items) {
-            Long viewCount = viewCounts.getOrDefault(item.getId(), 0L);
-            item.setViews(viewCount.intValue());
+        int from = Math.max(page - 1, 0) * pageSize;
+        List<Integer> pageIds = new ArrayList<>();
+        if (from < rankedIds.size()) {
+            pageIds.addAll(rankedIds.subList(from, Math.min(from + pageSize, rankedIds.size())));
+        }
+        if (pageIds.size() < pageSize) {
+            int tailOffset = Math.max(from - rankedIds.size(), 0);
+            List<Integer> tailIds = productMapper.searchProductIds(keyword, matchQuery, category, location, status,
+                    priceMin, priceMax, null, rankedIds, tailOffset, pageSize - pageIds.size());
+            if (tailIds != null) {
+                pageIds.addAll(tailIds);
+            }
+        }
+        List<ProductDto.ProductDetail> items = findProductsInOrder(pageIds);
+        populateDetails(items);
+        if (!items.isEmpty()) {
+            fillRedisViewCounts(items);
         }
         
-        // 按浏览量降序排序
-        return items.stream()
-                .sorted(Comparator.comparingInt(ProductDto.ProductDetail::getViews).reversed())
-                .collect(Collectors.toList());
+        long total = countProducts(keyword, matchQuery, category, location, status, priceMin, priceMax, null);
+        ProductDto.ProductListResponse response = new ProductDto.ProductListResponse(items, total);
+        response.setTotalEstimated(false);
+        return response;
+    }
+
+    // 读取排行榜候选并按过滤条件筛选，保持排行榜顺序
+    private List<Integer> loadPopularCandidates(String keyword, String matchQuery, String category, String location,
+                                                String status, Double priceMin, Double priceMax) {
+        List<Integer> candidates = productHotnessService.getHotRankingCandidates(POPULAR_CANDIDATE_LIMIT);
+        if (candidates == null || candidates.isEmpty()) {
+            return List.of();
+        }
+        List<Integer> matched = productMapper.searchProductIds(keyword, matchQuery, category, location, status,
+                priceMin, priceMax, candidates, null, 0, null);
+        if (matched == null || matched.isEmpty()) {
+            return List.of();
+        }
+        Set<Integer> matchedSet = new HashSet<>(matched);
+        return candidates.stream().filter(matchedSet::contains).toList();
     }
-    
+
     /**
      * 填充商品列表的 Redis 实时浏览量
      */
@@ -117,33 +354,51 @@ public class ProductService {
     // 获取单个商品详情的业务方法
     // id: 商品ID
     // 同时增加浏览量并从 Redis 获取实时浏览量
+    // 商品详情经两级缓存读取，同一商品的并发未命中只查询一次数据库
     // Requirements: 1.1, 4.1
     public ProductDto.ProductDetail getProductDetail(Integer id) {
         log.debug("getProductDetail 被调用，商品ID: {}", id);
-        ProductDto.ProductDetail detail = productMapper.getProductDetail(id);
+        ProductDto.ProductDetail detail = productDetailCache.get(id, () -> loadProductDetail(id));
         if (detail != null) {
-            // 同样需要填充图片和卖家信息
-            populateDetails(detail);
-            
             // 增加商品浏览量（使用带防重复机制的方法）
             // Requirements: 1.1 - 用户访问商品详情页时自动增加浏览量
             // 使用时间戳作为 requestId，防止短时间内重复计数
             String requestId = String.valueOf(System.currentTimeMillis() / 1000); // 1秒内的请求视为同一请求
-            productHotnessService.incrementViewCountSafe(id, requestId);
+            Long viewCount = productHotnessService.incrementViewCountSafe(id, requestId);
             
-            // 从 Redis 获取实时浏览量填充到返回结果
+            // 计数脚本已返回 Redis 中的实时浏览量，仅在降级模式下（返回 null）再单独查询
             // Requirements: 4.1 - 返回 Redis 中的实时 View_Count
-            Long viewCount = productHotnessService.getViewCount(id);
+            if (viewCount == null) {
+                viewCount = productHotnessService.getViewCount(id);
+            }
             detail.setViews(viewCount != null ? viewCount.intValue() : 0);
         }
         return detail;
     }
 
+    // 相关商品推荐的数量
+    private static final int RELATED_LIMIT = 4;
+
+    // 从数据库加载单个商品详情，并填充图片和卖家信息（详情缓存未命中时调用）
+    private ProductDto.ProductDetail loadProductDetail(Integer id) {
+        ProductDto.ProductDetail row = productMapper.getProductDetail(id);
+        if (row != null) {
+            populateDetails(row);
+        }
+        return row;
+    }
+
     // 获取相关商品推荐的业务方法
     // id: 当前商品ID (用于排除自身)
+    // 优先使用 Redis 分类热门排行榜，数量不足时用同分类的数据库查询补充
+    // 同一商品的并发请求经 SingleFlight 合并为一次查询
     public List<ProductDto.ProductDetail> getRelatedProducts(Integer id) {
-        // 先获取当前商品信息以确定分类
-        ProductDto.ProductDetail current = productMapper.getProductDetail(id);
+        return singleFlight.execute("product-related", id, () -> loadRelatedProducts(id));
+    }
+
+    private List<ProductDto.ProductDetail> loadRelatedProducts(Integer id) {
+        // 先获取当前商品信息以确定分类（走详情缓存）
+        ProductDto.ProductDetail current = productDetailCache.get(id, () -> loadProductDetail(id));
         if (current == null) {
              return new ArrayList<>();
         }
@@ -154,16 +409,91 @@ public class ProductService {
             return new ArrayList<>();
         }
 
-        // 查询同分类下的其他商品
-        List<ProductDto.ProductDetail> related = productMapper.getRelatedProducts(category, id);
-        if (related != null) {
-            related.forEach(this::populateDetails);
-        } else {
-            related = new ArrayList<>();
+        // 从分类排行榜取热门商品（多取一个，排除当前商品后仍够数）
+        List<Integer> hotIds = new ArrayList<>(productHotnessService.getCategoryHotRanking(category, RELATED_LIMIT + 1));
+        hotIds.remove(id);
+        if (hotIds.size() > RELATED_LIMIT) {
+            hotIds = hotIds.subList(0, RELATED_LIMIT);
         }
+        List<ProductDto.ProductDetail> related = findProductsInOrder(hotIds);
+
+        // 排行榜数量不足时，查询同分类下的其他商品补充
+        if (related.size() < RELATED_LIMIT) {
+            List<ProductDto.ProductDetail> fallback = productMapper.getRelatedProducts(category, id);
+            if (fallback != null) {
+                for (ProductDto.ProductDetail item : fallback) {
+                    if (related.size() >= RELATED_LIMIT) {
+                        break;
+                    }
+                    if (!hotIds.contains(item.getId())) {
+                        related.add(item);
+                    }
+                }
+            }
+        }
+        populateDetails(related);
         return related;
     }
 
+    // 获取分类热门商品
+    // category: 商品分类
+    // limit: 返回的最大条目数
+    // 商品顺序由 Redis 分类热门排行榜决定，并填充实时浏览量
+    public List<ProductDto.ProductDetail> getCategoryHotProducts(String category, int limit) {
+        List<Integer> hotIds = productHotnessService.getCategoryHotRanking(category, limit);
+        List<ProductDto.ProductDetail> items = findProductsInOrder(hotIds);
+        if (!items.isEmpty()) {
+            populateDetails(items);
+            fillRedisViewCounts(items);
+        }
+        return items;
+    }
+
+    // 批量详情接口单次最多返回的商品数量
+    public static final int BATCH_DETAIL_LIMIT = 50;
+
+    // 批量获取商品详情（购物车、收藏、聊天商品卡片等场景）
+    // ids: 商品ID列表，只取前 BATCH_DETAIL_LIMIT 个
+    // 经两级缓存读取，未命中的商品一次 IN 查询加载；不增加浏览量，只填充实时浏览量
+    public List<ProductDto.ProductDetail> getProductDetails(List<Integer> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Integer> requested = ids.size() > BATCH_DETAIL_LIMIT ? ids.subList(0, BATCH_DETAIL_LIMIT) : ids;
+        List<ProductDto.ProductDetail> items = productDetailCache.getAll(requested, missing -> {
+            List<ProductDto.ProductDetail> rows = productMapper.getProductDetailsByIds(missing);
+            if (rows != null) {
+                populateDetails(rows);
+            }
+            return rows;
+        });
+        if (!items.isEmpty()) {
+            fillRedisViewCounts(items);
+        }
+        return items;
+    }
+
+    // 按给定ID顺序批量查询商品，已删除的商品会被跳过
+    private List<ProductDto.ProductDetail> findProductsInOrder(List<Integer> ids) {
+        List<ProductDto.ProductDetail> result = new ArrayList<>();
+        if (ids == null || ids.isEmpty()) {
+            return result;
+        }
+        List<ProductDto.ProductDetail> rows = productMapper.getProductDetailsByIds(ids);
+        if (rows == null || rows.isEmpty()) {
+            return result;
+        }
+        Map<Integer, ProductDto.ProductDetail> rowMap = rows.stream()
+                .collect(Collectors.toMap(ProductDto.ProductDetail::getId, row -> row, (a, b) -> a));
+        for (Integer productId : ids) {
+            ProductDto.ProductDetail row = rowMap.get(productId);
+            if (row != null) {
+                result.add(row);
+            }
+        }
+        return result;
+    }
+
 
 
 
@@ -213,6 +543,8 @@ public class ProductService {
         // 4. 保存商品到数据库
         try {
             productMapper.insertProduct(product);
+            productHotnessService.registerProductCategory(product.getPro_id(), product.getCategory());
+            productChangeNotifier.notifyChanged(product.getPro_id(), ProductChangeNotifier.ChangeType.CREATED);
             log.info("商品创建成功 - id: {}, name: {}, imageCount: {}", 
                      product.getPro_id(), product.getPro_name(), imageUrls.size());
             return product.getPro_id();
@@ -253,6 +585,8 @@ public class ProductService {
 
         // 3. 删除商品记录
         productMapper.deleteProduct(productId);
+        productHotnessService.evictProduct(productId);
+        productChangeNotifier.notifyChanged(productId, ProductChangeNotifier.ChangeType.DELETED);
         log.info("商品删除成功 - id: {}", productId);
     }
 
@@ -335,10 +669,46 @@ public class ProductService {
         product.setPro_id(productId);
         product.setPicture(String.join(",", finalImageUrls));
         productMapper.updateProduct(product);
+        productChangeNotifier.notifyChanged(productId, ProductChangeNotifier.ChangeType.UPDATED);
         
         log.info("商品更新成功 - id: {}, finalImageCount: {}", productId, finalImageUrls.size());
     }
 
+    // 批量填充商品列表：先从用户摘要缓存补齐卖家信息与所在地（列表查询不再关联 userinfo），再逐条组装
+    private void populateDetails(List<ProductDto.ProductDetail> items) {
+        if (items == null || items.isEmpty()) {
+            return;
+        }
+        fillSellerInfo(items);
+        items.forEach(this::populateDetails);
+    }
+
+    // 从用户摘要缓存批量补齐卖家昵称、用户名、头像与所在地；已由 SQL 查出卖家信息的商品跳过
+    private void fillSellerInfo(List<ProductDto.ProductDetail> items) {
+        List<Integer> sellerIds = items.stream()
+                .filter(item -> item.getTempSellerId() != null
+                        && item.getTempSellerName() == null && item.getTempSellerUsername() == null)
+                .map(ProductDto.ProductDetail::getTempSellerId)
+                .distinct()
+                .collect(Collectors.toList());
+        if (sellerIds.isEmpty()) {
+            return;
+        }
+        Map<Integer, UserSummaryCache.UserSummary> sellers = userSummaryCache.getAll(sellerIds);
+        for (ProductDto.ProductDetail item : items) {
+            UserSummaryCache.UserSummary seller = item.getTempSellerId() != null ? sellers.get(item.getTempSellerId()) : null;
+            if (seller == null || item.getTempSellerName() != null || item.getTempSellerUsername() != null) {
+                continue;
+            }
+            item.setTempSellerName(seller.nickname());
+            item.setTempSellerUsername(seller.username());
+            item.setTempSellerAvatar(seller.avatar());
+            if (item.getLocation() == null) {
+                item.setLocation(seller.address());
+            }
+        }
+    }
+
     // 私有辅助方法：填充商品详情中的复杂字段
     // 将数据库扁平化的查询结果转换为嵌套对象结构
     private void populateDetails(ProductDto.ProductDetail product) {
@@ -386,6 +756,32 @@ public class ProductService {
         
         // 更新状态
         productMapper.updateProductStatus(productId, status);
+        // 下架或售出的商品移出热门排行榜，重新上架时放回
+        if ("已下架".equals(status) || "已售出".equals(status)) {
+            productHotnessService.parkProduct(productId);
+        } else {
+            productHotnessService.restoreProduct(productId);
+        }
+        productChangeNotifier.notifyChanged(productId, ProductChangeNotifier.ChangeType.STATUS_CHANGED);
         log.info("商品状态更新成功 - id: {}, status: {}", productId, status);
     }
+
+    // 收藏数 / 购买数校正时每段处理的商品ID跨度，避免一条 UPDATE 长时间锁住整张表
+    private static final int COUNTER_RECONCILE_CHUNK = 1000;
+
+    /**
+     * 重新统计所有商品的收藏数与购买数
+     * 冗余计数列由收藏、下单、取消订单增量维护，此处按商品ID分段重新统计，修正遗漏或重复计数
+     * 
+     * @return 被校正的商品数量
+     */
+    public int reconcileProductCounters() {
+        int maxId = productMapper.getMaxProductId();
+        int updated = 0;
+        for (int fromId = 0; fromId < maxId; fromId += COUNTER_RECONCILE_CHUNK) {
+            updated += productMapper.reconcileCounters(fromId, Math.min(fromId + COUNTER_RECONCILE_CHUNK, maxId));
+        }
+        log.info("商品收藏数/购买数校正完成 - maxId: {}, updated: {}", maxId, updated);
+        return updated;
+    }
 }
@@ -5,6 +5,7 @@ import org.example.campusmarket.Mapper.AuthMapper;
 import org.example.campusmarket.Mapper.UserMapper;
 import org.example.campusmarket.entity.Product;
 import org.example.campusmarket.entity.UserInfo;
+import org.example.campusmarket.util.SingleFlight;
 import org.example.campusmarket.util.VerificationCodeService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -37,16 +38,28 @@ public class UserService {
     @Autowired
     private ImageService imageService;
 
+    @Autowired
+    private SingleFlight singleFlight;
+
+    @Autowired
+    private UserSummaryCache userSummaryCache;
+
     @Value("${spring.mail.username}")
     private String from;
 
-    //通过id查找用户信息
+    //通过id查找用户信息，同一用户的并发请求合并为一次查询
     public UserInfo GetUserInfoById(Integer user_id){
+        return singleFlight.execute("user-info", user_id, () -> userMapper.findUserinfoById(user_id));
+    }
+    //写后读取用户信息，直接查库，避免合并到写入前发起的查询而读到旧数据
+    public UserInfo GetLatestUserInfoById(Integer user_id){
         return userMapper.findUserinfoById(user_id);
     }
     //更新用户信息
     public boolean ResetUserInfo(Integer user_id, @RequestBody UserDto.SetInfoRequest body){
-        return userMapper.updateUserInfo(user_id,body.getAvatar(),body.getNickname(),body.getPhone(),body.getAddress(),body.getBio(),body.getGender()) == 1;
+        boolean updated = userMapper.updateUserInfo(user_id,body.getAvatar(),body.getNickname(),body.getPhone(),body.getAddress(),body.getBio(),body.getGender()) == 1;
+        userSummaryCache.evict(user_id);
+        return updated;
     }
 
     //更新密码
@@ -139,6 +152,7 @@ public class UserService {
             imageService.deleteImage(newAvatarUrl);
             throw new RuntimeException("头像更新失败");
         }
+        userSummaryCache.evict(userId);
 
         // 4. 删除旧头像（如果存在）
         if (oldAvatar != null && !oldAvatar.isEmpty()) {
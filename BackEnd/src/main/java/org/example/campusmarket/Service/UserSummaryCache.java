@@ -0,0 +1,157 @@
+package org.example.campusmarket.Service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.example.campusmarket.Mapper.UserInfoMapper;
+import org.example.campusmarket.entity.UserInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * 用户摘要本地缓存
+ * 缓存订单、会话、商品列表展示卖家 / 买家时需要的少量字段，避免每一行都查询或关联 userinfo。
+ * 用户修改资料、上传头像时由 UserService 失效本实例缓存，并经 Redis pub/sub 通知其他实例失效
+ * （广播失败时其他实例最多滞后 TTL）。
+ */
+@Component
+public class UserSummaryCache implements MessageListener {
+
+    private static final Logger log = LoggerFactory.getLogger(UserSummaryCache.class);
+
+    /** 用户摘要失效广播频道，消息格式: {nodeId}|{userId} */
+    public static final String CHANNEL = "user:summary:evict";
+
+    // 缓存容量与过期时间
+    private static final int MAX_ENTRIES = 10000;
+    private static final Duration TTL = Duration.ofMinutes(5);
+
+    /** 当前实例标识，用于忽略自己发出的广播 */
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final UserInfoMapper userInfoMapper;
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final Cache<Integer, UserSummary> cache = Caffeine.newBuilder()
+            .maximumSize(MAX_ENTRIES)
+            .expireAfterWrite(TTL)
+            .build();
+
+    /**
+     * 用户摘要
+     *
+     * @param id       用户ID
+     * @param nickname 昵称
+     * @param username 用户名
+     * @param avatar   头像 URL
+     * @param address  地址（用作商品所在地）
+     */
+    public record UserSummary(Integer id, String nickname, String username, String avatar, String address) {
+
+        // 展示名称：优先昵称，其次用户名
+        public String displayName() {
+            return nickname != null && !nickname.trim().isEmpty() ? nickname : username;
+        }
+    }
+
+    public UserSummaryCache(UserInfoMapper userInfoMapper, StringRedisTemplate stringRedisTemplate) {
+        this.userInfoMapper = userInfoMapper;
+        this.stringRedisTemplate = stringRedisTemplate;
+    }
+
+    /**
+     * 获取单个用户摘要，用户不存在时返回 null（不缓存）
+     */
+    public UserSummary get(Integer userId) {
+        if (userId == null) {
+            return null;
+        }
+        return getAll(List.of(userId)).get(userId);
+    }
+
+    /**
+     * 批量获取用户摘要，未命中的用户一次 IN 查询加载
+     *
+     * @return 用户ID -> 摘要，不存在的用户不包含在结果中
+     */
+    public Map<Integer, UserSummary> getAll(Collection<Integer> userIds) {
+        Map<Integer, UserSummary> result = new HashMap<>();
+        if (userIds == null || userIds.isEmpty()) {
+            return result;
+        }
+        Set<Integer> misses = new LinkedHashSet<>();
+        for (Integer userId : userIds) {
+            if (userId == null) {
+                continue;
+            }
+            UserSummary summary = cache.getIfPresent(userId);
+            if (summary != null) {
+                result.put(userId, summary);
+            } else {
+                misses.add(userId);
+            }
+        }
+        if (!misses.isEmpty()) {
+            List<UserInfo> rows = userInfoMapper.findSummariesByIds(misses);
+            if (rows != null) {
+                for (UserInfo row : rows) {
+                    UserSummary summary = new UserSummary(row.getUser_id(), row.getNickname(),
+                            row.getUsername(), row.getAvatar(), row.getAddress());
+                    cache.put(summary.id(), summary);
+                    result.put(summary.id(), summary);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 用户资料变更后失效缓存
+     * 本实例立即生效；Redis 广播失败时只记录日志，其他实例的缓存等到过期后自然刷新
+     */
+    public void evict(Integer userId) {
+        if (userId == null) {
+            return;
+        }
+        cache.invalidate(userId);
+        try {
+            stringRedisTemplate.convertAndSend(CHANNEL, nodeId + "|" + userId);
+        } catch (Exception e) {
+            log.warn("用户摘要失效广播失败：userId={}, error={}", userId, e.getMessage());
+        }
+    }
+
+    /**
+     * 收到其他实例的用户摘要失效广播
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        String[] parts = body.split("\\|", 2);
+        if (parts.length != 2) {
+            log.warn("无法解析用户摘要失效消息: {}", body);
+            return;
+        }
+        if (nodeId.equals(parts[0])) {
+            return;
+        }
+        try {
+            cache.invalidate(Integer.valueOf(parts[1]));
+        } catch (NumberFormatException e) {
+            log.warn("无法解析用户摘要失效消息: {}", body);
+        }
+    }
+}
@@ -23,6 +23,86 @@ public class HotnessProperties {
      */
     private int rankingSize = 100;
 
+    /**
+     * 热门排行榜（全局及每个分类）最多保留的商品数量，超出部分定时裁剪
+     * 小于等于 0 表示不裁剪；默认 10000 个
+     */
+    private int rankingCapacity = 10000;
+
+    /**
+     * 热门排行榜裁剪的间隔时间（毫秒）
+     * 默认 10 分钟
+     */
+    private long rankingTrimInterval = 600000;
+
+    /**
+     * 热度数据同步到数据库时每批处理的商品数量
+     * 每批对应一条 UPDATE ... CASE 语句，默认 500 个
+     */
+    private int syncBatchSize = 500;
+
+    /**
+     * 启动预热时每个 Redis 管道提交的商品数量，默认 1000 个
+     */
+    private int loadBatchSize = 1000;
+
+    /**
+     * 是否开启浏览量本地写缓冲
+     * 开启后浏览增量先在 JVM 内聚合，再按刷新间隔批量写入 Redis
+     * 默认关闭
+     */
+    private boolean viewBufferEnabled = false;
+
+    /**
+     * 浏览量本地写缓冲刷新到 Redis 的间隔时间（毫秒）
+     * 默认 500 毫秒
+     */
+    private long viewBufferFlushInterval = 500;
+
+    /**
+     * 浏览量本地写缓冲最多容纳的商品数量，超出部分直接写 Redis
+     * 默认 10000 个
+     */
+    private int viewBufferMaxProducts = 10000;
+
+    /**
+     * 热度分数的半衰期（毫秒），事件的热度贡献每经过一个半衰期减半
+     * 小于等于 0 表示不衰减，排行榜分数为累计加权总和；默认不衰减
+     */
+    private long decayHalfLife = 0;
+
+    /**
+     * 热度排行榜重新归一化的间隔时间（毫秒）
+     * 默认 1 小时
+     */
+    private long decayRenormalizeInterval = 3600000;
+
+    /**
+     * 滑动窗口热度榜（1h / 24h / 7d）的汇总间隔（毫秒）
+     * 默认 1 分钟
+     */
+    private long trendingRefreshInterval = 60000;
+
+    /**
+     * 一次浏览的热度权重，默认 1
+     */
+    private double viewWeight = 1.0;
+
+    /**
+     * 一次收藏的热度权重，默认 3
+     */
+    private double favoriteWeight = 3.0;
+
+    /**
+     * 一次下单的热度权重，默认 5
+     */
+    private double orderWeight = 5.0;
+
+    /**
+     * 一条评论的热度权重，默认 2
+     */
+    private double commentWeight = 2.0;
+
     public long getSyncInterval() {
         return syncInterval;
     }
@@ -38,4 +118,116 @@ public class HotnessProperties {
     public void setRankingSize(int rankingSize) {
         this.rankingSize = rankingSize;
     }
+
+    public int getSyncBatchSize() {
+        return syncBatchSize;
+    }
+
+    public void setSyncBatchSize(int syncBatchSize) {
+        this.syncBatchSize = syncBatchSize;
+    }
+
+    public int getLoadBatchSize() {
+        return loadBatchSize;
+    }
+
+    public void setLoadBatchSize(int loadBatchSize) {
+        this.loadBatchSize = loadBatchSize;
+    }
+
+    public boolean isViewBufferEnabled() {
+        return viewBufferEnabled;
+    }
+
+    public void setViewBufferEnabled(boolean viewBufferEnabled) {
+        this.viewBufferEnabled = viewBufferEnabled;
+    }
+
+    public long getViewBufferFlushInterval() {
+        return viewBufferFlushInterval;
+    }
+
+    public void setViewBufferFlushInterval(long viewBufferFlushInterval) {
+        this.viewBufferFlushInterval = viewBufferFlushInterval;
+    }
+
+    public int getViewBufferMaxProducts() {
+        return viewBufferMaxProducts;
+    }
+
+    public void setViewBufferMaxProducts(int viewBufferMaxProducts) {
+        this.viewBufferMaxProducts = viewBufferMaxProducts;
+    }
+
+    public long getDecayHalfLife() {
+        return decayHalfLife;
+    }
+
+    public void setDecayHalfLife(long decayHalfLife) {
+        this.decayHalfLife = decayHalfLife;
+    }
+
+    public long getDecayRenormalizeInterval() {
+        return decayRenormalizeInterval;
+    }
+
+    public void setDecayRenormalizeInterval(long decayRenormalizeInterval) {
+        this.decayRenormalizeInterval = decayRenormalizeInterval;
+    }
+
+    public double getViewWeight() {
+        return viewWeight;
+    }
+
+    public void setViewWeight(double viewWeight) {
+        this.viewWeight = viewWeight;
+    }
+
+    public double getFavoriteWeight() {
+        return favoriteWeight;
+    }
+
+    public void setFavoriteWeight(double favoriteWeight) {
+        this.favoriteWeight = favoriteWeight;
+    }
+
+    public double getOrderWeight() {
+        return orderWeight;
+    }
+
+    public void setOrderWeight(double orderWeight) {
+        this.orderWeight = orderWeight;
+    }
+
+    public double getCommentWeight() {
+        return commentWeight;
+    }
+
+    public void setCommentWeight(double commentWeight) {
+        this.commentWeight = commentWeight;
+    }
+
+    public long getTrendingRefreshInterval() {
+        return trendingRefreshInterval;
+    }
+
+    public void setTrendingRefreshInterval(long trendingRefreshInterval) {
+        this.trendingRefreshInterval = trendingRefreshInterval;
+    }
+
+    public int getRankingCapacity() {
+        return rankingCapacity;
+    }
+
+    public void setRankingCapacity(int rankingCapacity) {
+        this.rankingCapacity = rankingCapacity;
+    }
+
+    public long getRankingTrimInterval() {
+        return rankingTrimInterval;
+    }
+
+    public void setRankingTrimInterval(long rankingTrimInterval) {
+        this.rankingTrimInterval = rankingTrimInterval;
+    }
 }
@@ -1,5 +1,9 @@
 package org.example.campusmarket.config;
 
+import org.example.campusmarket.Service.ChatConversationService;
+import org.example.campusmarket.Service.ProductChangeNotifier;
+import org.example.campusmarket.Service.UserSummaryCache;
+import org.example.campusmarket.websocket.ChatWebSocketHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Bean;
@@ -7,12 +11,14 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 /**
  * Redis 配置类
- * 配置 RedisTemplate 和 StringRedisTemplate，设置序列化方式
+ * 配置 RedisTemplate 和 StringRedisTemplate，设置序列化方式，以及 pub/sub 消息监听容器
  */
 @Configuration
 public class RedisConfig {
@@ -62,4 +68,33 @@ public class RedisConfig {
         log.info("StringRedisTemplate 初始化成功");
         return template;
     }
+
+    /**
+     * 配置 Redis 消息监听容器
+     * 订阅商品变更、会话配对失效与用户摘要失效频道，用于跨实例失效本地缓存；订阅聊天推送频道，用于把消息投递到连接在其他实例上的用户
+     *
+     * @param connectionFactory       Redis 连接工厂
+     * @param productChangeNotifier   商品变更通知
+     * @param chatWebSocketHandler    聊天 WebSocket 处理器
+     * @param chatConversationService 聊天会话服务（会话配对缓存）
+     * @param userSummaryCache        用户摘要缓存
+     * @return 配置好的消息监听容器
+     */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                       ProductChangeNotifier productChangeNotifier,
+                                                                       ChatWebSocketHandler chatWebSocketHandler,
+                                                                       ChatConversationService chatConversationService,
+                                                                       UserSummaryCache userSummaryCache) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(productChangeNotifier, new ChannelTopic(ProductChangeNotifier.CHANNEL));
+        container.addMessageListener(chatWebSocketHandler, new ChannelTopic(ChatWebSocketHandler.CHANNEL));
+        container.addMessageListener(chatConversationService,
+                new ChannelTopic(ChatConversationService.PAIR_EVICT_CHANNEL));
+        container.addMessageListener(userSummaryCache, new ChannelTopic(UserSummaryCache.CHANNEL));
+
+        log.info("Redis 消息监听容器初始化成功");
+        return container;
+    }
 }
@@ -0,0 +1,76 @@
+package org.example.campusmarket.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * 请求合并（single-flight）
+ * 同一分组下相同 key 的并发调用只执行一次 loader，其余调用等待并共享其结果（或异常）。
+ * loader 执行完毕后立即移除，之后的调用会重新执行，不做缓存。
+ *
+ * 指标：singleflight.calls（tag: name = 分组，result = executed / coalesced）
+ */
+@Component
+public class SingleFlight {
+
+    private final MeterRegistry meterRegistry;
+
+    // 正在执行的调用：分组 + key -> 执行结果
+    private final ConcurrentHashMap<FlightKey, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    private record FlightKey(String name, Object key) {
+    }
+
+    public SingleFlight(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * 执行或加入一次调用
+     *
+     * @param name   分组名（如 product-detail），用于区分不同接口的 key 并作为指标标签
+     * @param key    调用参数，需实现 equals/hashCode
+     * @param loader 实际加载逻辑
+     * @return loader 的返回值；合并的调用返回同一个对象，调用方不应修改
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String name, Object key, Supplier<T> loader) {
+        FlightKey flightKey = new FlightKey(name, key);
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(flightKey, flight);
+        if (existing != null) {
+            counter(name, "coalesced").increment();
+            try {
+                return (T) existing.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException re ? re : e;
+            }
+        }
+
+        counter(name, "executed").increment();
+        try {
+            T result = loader.get();
+            flight.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(flightKey, flight);
+        }
+    }
+
+    private Counter counter(String name, String result) {
+        return Counter.builder("singleflight.calls")
+                .description("合并前的调用次数，result=coalesced 为被合并的调用")
+                .tag("name", name)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,39 @@
+package org.example.campusmarket.websocket;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * WebSocket 慢连接巡检定时任务
+ * 定期关闭单次发送超过 chat.ws.send-time-limit 的连接，释放卡在阻塞写上的写线程
+ */
+@Component
+public class ChatSessionSweepScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(ChatSessionSweepScheduler.class);
+
+    private final ChatWebSocketHandler chatWebSocketHandler;
+
+    public ChatSessionSweepScheduler(ChatWebSocketHandler chatWebSocketHandler) {
+        this.chatWebSocketHandler = chatWebSocketHandler;
+    }
+
+    /**
+     * 定时巡检慢连接
+     * 巡检间隔从配置文件读取，默认 1 秒
+     */
+    @Scheduled(fixedDelayString = "${chat.ws.sweep-interval:1000}",
+               initialDelayString = "${chat.ws.sweep-interval:1000}")
+    public void closeStalledSessions() {
+        try {
+            int closed = chatWebSocketHandler.closeStalledSessions();
+            if (closed > 0) {
+                log.warn("定时任务：关闭发送超时的 WebSocket 连接 {} 个", closed);
+            }
+        } catch (Exception e) {
+            log.error("定时任务：WebSocket 慢连接巡检失败", e);
+        }
+    }
+}
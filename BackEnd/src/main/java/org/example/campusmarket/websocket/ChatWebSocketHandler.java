@@ -1,45 +1,152 @@
 package org.example.campusmarket.websocket;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 聊天 WebSocket 处理器
  * 管理用户连接，转发消息
+ *
+ * 同一用户可同时在多个设备上连接，每个连接都会收到推送。
+ * 推送先投递到本实例上该用户的连接，再通过 Redis pub/sub 广播给其他实例，
+ * 其他实例收到后投递到各自持有的该用户连接，因此用户连接在任意实例上都能收到消息。
+ *
+ * 推送不在调用方线程上写 socket：消息在调用方线程序列化后放入目标连接自己的有界发送队列，发送消息的 HTTP 请求在消息入库后即返回。
+ * 每个连接同一时刻最多有一个发送任务在写线程池中运行，按入队顺序逐条发送，保证单个连接内的消息顺序；
+ * 卡住的连接只占住执行它的那一个写线程，其他连接由其余写线程继续发送。
+ * 发送队列超过 session-queue-capacity 条或 buffer-size-limit 字节的连接视为慢连接直接关闭；
+ * 单次发送超过 send-time-limit 的连接由定时巡检（ChatSessionSweepScheduler）关闭，客户端重连后重新拉取消息。
+ * Redis 广播由独立的单线程发布，不排在本地投递之后。
+ *
+ * 指标：chat.ws.sessions（本实例连接数）、chat.ws.outbound.queue（等待写线程的连接数与待广播消息数之和）、
+ * chat.ws.outbound.buffered（各连接发送队列中的字节数之和）、chat.ws.outbound.dropped（tag: reason = queue_full / slow_consumer）
  */
 @Component
-public class ChatWebSocketHandler extends TextWebSocketHandler {
+public class ChatWebSocketHandler extends TextWebSocketHandler implements MessageListener {
 
     private static final Logger log = LoggerFactory.getLogger(ChatWebSocketHandler.class);
-    
-    // 存储用户ID -> WebSocket会话的映射
-    private static final Map<Integer, WebSocketSession> userSessions = new ConcurrentHashMap<>();
-    
+
+    /** 聊天推送广播频道，消息格式: {nodeId}|{userId}|{json} */
+    public static final String CHANNEL = "chat:deliver";
+
+    /** 当前实例标识，用于忽略自己发出的广播 */
+    private final String nodeId = UUID.randomUUID().toString();
+
+    // 存储用户ID -> 本实例上该用户全部 WebSocket 会话（sessionId -> 发送队列）
+    private final Map<Integer, Map<String, SessionOutbox>> userSessions = new ConcurrentHashMap<>();
+
     private final ObjectMapper objectMapper = new ObjectMapper();
 
+    private final StringRedisTemplate stringRedisTemplate;
+
+    // 单次发送时间上限，每个连接发送队列的字节数与消息数上限
+    private final int sendTimeLimitMillis;
+    private final int bufferSizeLimitBytes;
+    private final int sessionQueueCapacity;
+
+    // 写线程池：执行各连接的发送任务，每个连接最多排入一个任务，任务队列长度不超过连接数
+    private final ThreadPoolExecutor writerExecutor;
+
+    // Redis 广播专用单线程，保持同一实例发出的广播顺序；队列有界，满时丢弃广播
+    private final ThreadPoolExecutor publishExecutor;
+
+    private final Counter queueFullCounter;
+    private final Counter slowConsumerCounter;
+
+    public ChatWebSocketHandler(StringRedisTemplate stringRedisTemplate,
+                                MeterRegistry meterRegistry,
+                                @Value("${chat.ws.send-time-limit:10000}") int sendTimeLimitMillis,
+                                @Value("${chat.ws.buffer-size-limit:524288}") int bufferSizeLimitBytes,
+                                @Value("${chat.ws.session-queue-capacity:1000}") int sessionQueueCapacity,
+                                @Value("${chat.ws.writer-threads:8}") int writerThreads,
+                                @Value("${chat.ws.publish-queue-capacity:10000}") int publishQueueCapacity) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.sendTimeLimitMillis = sendTimeLimitMillis;
+        this.bufferSizeLimitBytes = bufferSizeLimitBytes;
+        this.sessionQueueCapacity = sessionQueueCapacity;
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        int threads = Math.max(1, writerThreads);
+        this.writerExecutor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "chat-ws-writer-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.publishExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, publishQueueCapacity)), runnable -> {
+                    Thread thread = new Thread(runnable, "chat-ws-publisher");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        Gauge.builder("chat.ws.sessions", userSessions,
+                        sessions -> sessions.values().stream().mapToInt(Map::size).sum())
+                .description("本实例 WebSocket 连接数")
+                .register(meterRegistry);
+        Gauge.builder("chat.ws.outbound.queue", this,
+                        handler -> handler.writerExecutor.getQueue().size() + handler.publishExecutor.getQueue().size())
+                .description("等待写线程发送的连接数与等待广播的消息数之和")
+                .register(meterRegistry);
+        Gauge.builder("chat.ws.outbound.buffered", userSessions,
+                        sessions -> sessions.values().stream()
+                                .flatMap(byId -> byId.values().stream())
+                                .mapToLong(outbox -> outbox.bufferedBytes.get())
+                                .sum())
+                .description("各连接发送队列中待发送的字节数之和")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.queueFullCounter = droppedCounter(meterRegistry, "queue_full");
+        this.slowConsumerCounter = droppedCounter(meterRegistry, "slow_consumer");
+    }
+
     @Override
     public void afterConnectionEstablished(WebSocketSession session) {
         Integer userId = getUserId(session);
         if (userId != null) {
-            // 如果用户已有连接，关闭旧连接
-            WebSocketSession oldSession = userSessions.put(userId, session);
-            if (oldSession != null && oldSession.isOpen()) {
-                try {
-                    oldSession.close();
-                } catch (IOException e) {
-                    log.warn("关闭旧连接失败：userId={}", userId);
-                }
-            }
+            // 包装只用于并发发送保护（心跳回复与推送可能同时写）和记录发送开始时间，缓冲区上限由发送队列控制
+            ConcurrentWebSocketSessionDecorator decorator = new ConcurrentWebSocketSessionDecorator(session,
+                    sendTimeLimitMillis, bufferSizeLimitBytes, ConcurrentWebSocketSessionDecorator.OverflowStrategy.TERMINATE);
+            SessionOutbox outbox = new SessionOutbox(decorator);
+            // 登记在 compute 内完成，与 afterConnectionClosed 中移除空会话表的操作互斥，
+            // 避免新连接写入一个刚被移除的会话表而收不到推送
+            userSessions.compute(userId, (key, sessions) -> {
+                Map<String, SessionOutbox> target = sessions != null ? sessions : new ConcurrentHashMap<>();
+                target.put(session.getId(), outbox);
+                return target;
+            });
             log.info("用户连接 WebSocket：userId={}, sessionId={}", userId, session.getId());
         }
     }
@@ -48,9 +155,15 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
         Integer userId = getUserId(session);
         if (userId != null) {
-            // 只有当前session是该用户的活跃session时才移除
-            userSessions.remove(userId, session);
-            log.info("用户断开 WebSocket：userId={}, status={}", userId, status);
+            // 只移除当前会话，用户的其他设备连接保持不变
+            userSessions.computeIfPresent(userId, (key, sessions) -> {
+                SessionOutbox removed = sessions.remove(session.getId());
+                if (removed != null) {
+                    removed.clear();
+                }
+                return sessions.isEmpty() ? null : sessions;
+            });
+            log.info("用户断开 WebSocket：userId={}, sessionId={}, status={}", userId, session.getId(), status);
         }
     }
 
@@ -59,11 +172,14 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
         // 客户端发来的消息（心跳等）
         String payload = message.getPayload();
         log.debug("收到消息：{}", payload);
-        
-        // 如果是心跳消息，回复 pong
+
+        // 如果是心跳消息，回复 pong（经并发发送包装，避免与推送同时写同一连接）
         if ("ping".equals(payload)) {
+            WebSocketSession target = getDecorator(session);
             try {
-                session.sendMessage(new TextMessage("pong"));
+                target.sendMessage(new TextMessage("pong"));
+            } catch (SessionLimitExceededException e) {
+                closeSlowConsumer(target);
             } catch (IOException e) {
                 log.warn("发送 pong 失败");
             }
@@ -77,40 +193,227 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
     }
 
     /**
-     * 向指定用户发送消息
+     * 向指定用户的全部连接发送消息（包括连接在其他实例上的）
+     * 只在调用方线程序列化并入队；广播与本地发送分别异步执行，互不等待
+     * Redis 广播失败或广播队列已满时只记录日志，本实例上的连接仍会收到消息
      */
     public void sendMessageToUser(Integer userId, Object message) {
-        WebSocketSession session = userSessions.get(userId);
-        if (session != null && session.isOpen()) {
-            try {
-                String json = objectMapper.writeValueAsString(message);
-                session.sendMessage(new TextMessage(json));
-                log.debug("发送消息给用户：userId={}, message={}", userId, json);
-            } catch (IOException e) {
-                log.error("发送消息失败：userId={}, error={}", userId, e.getMessage());
-            }
-        } else {
-            log.debug("用户不在线：userId={}", userId);
+        if (userId == null) {
+            return;
+        }
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(message);
+        } catch (IOException e) {
+            log.error("消息序列化失败：userId={}, error={}", userId, e.getMessage());
+            return;
+        }
+        try {
+            publishExecutor.execute(() -> {
+                try {
+                    stringRedisTemplate.convertAndSend(CHANNEL, nodeId + "|" + userId + "|" + json);
+                } catch (Exception e) {
+                    log.warn("聊天消息广播失败：userId={}, error={}", userId, e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            queueFullCounter.increment();
+            log.warn("广播队列已满，丢弃广播：userId={}", userId);
+        }
+        deliverLocally(userId, json);
+    }
+
+    /**
+     * 收到其他实例的聊天推送广播，投递给本实例上该用户的连接
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        String[] parts = body.split("\\|", 3);
+        if (parts.length != 3) {
+            log.warn("无法解析聊天推送消息: {}", body);
+            return;
+        }
+        if (nodeId.equals(parts[0])) {
+            return;
+        }
+        Integer userId;
+        try {
+            userId = Integer.valueOf(parts[1]);
+        } catch (NumberFormatException e) {
+            log.warn("无法解析聊天推送消息: {}", body);
+            return;
         }
+        deliverLocally(userId, parts[2]);
     }
 
     /**
-     * 检查用户是否在线
+     * 检查用户是否在本实例上在线
      */
     public boolean isUserOnline(Integer userId) {
-        WebSocketSession session = userSessions.get(userId);
-        return session != null && session.isOpen();
+        Map<String, SessionOutbox> sessions = userSessions.get(userId);
+        return sessions != null && sessions.values().stream().anyMatch(outbox -> outbox.session.isOpen());
     }
 
     /**
-     * 获取在线用户数
+     * 获取本实例在线用户数
      */
     public int getOnlineUserCount() {
-        return (int) userSessions.values().stream().filter(WebSocketSession::isOpen).count();
+        return (int) userSessions.values().stream()
+                .filter(sessions -> sessions.values().stream().anyMatch(outbox -> outbox.session.isOpen()))
+                .count();
+    }
+
+    /**
+     * 关闭单次发送超过 send-time-limit 的连接
+     * 写线程卡在阻塞写上时无法自行检查超时，由定时巡检关闭连接，释放被占住的写线程
+     *
+     * @return 关闭的连接数
+     */
+    public int closeStalledSessions() {
+        int closed = 0;
+        for (Map<String, SessionOutbox> sessions : userSessions.values()) {
+            for (SessionOutbox outbox : sessions.values()) {
+                if (outbox.session.isOpen() && outbox.session.getTimeSinceSendStarted() > sendTimeLimitMillis) {
+                    closeSlowConsumer(outbox.session);
+                    outbox.clear();
+                    closed++;
+                }
+            }
+        }
+        return closed;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        publishExecutor.shutdown();
+        writerExecutor.shutdown();
+    }
+
+    // 放入本实例上该用户全部打开的连接的发送队列
+    private void deliverLocally(Integer userId, String json) {
+        Map<String, SessionOutbox> sessions = userSessions.get(userId);
+        if (sessions == null || sessions.isEmpty()) {
+            log.debug("用户不在本实例在线：userId={}", userId);
+            return;
+        }
+        TextMessage textMessage = new TextMessage(json);
+        for (SessionOutbox outbox : sessions.values()) {
+            outbox.offer(textMessage);
+        }
+    }
+
+    // 超过发送时间或发送队列上限的连接直接关闭，客户端重连后重新拉取消息
+    private void closeSlowConsumer(WebSocketSession session) {
+        slowConsumerCounter.increment();
+        log.warn("连接发送过慢，关闭连接：sessionId={}", session.getId());
+        try {
+            session.close(CloseStatus.SESSION_NOT_RELIABLE);
+        } catch (IOException e) {
+            log.warn("关闭慢连接失败：sessionId={}", session.getId());
+        }
+    }
+
+    // 找到连接对应的并发发送包装，未登记的连接（如未登录）直接使用原连接
+    private WebSocketSession getDecorator(WebSocketSession session) {
+        Integer userId = getUserId(session);
+        Map<String, SessionOutbox> sessions = userId != null ? userSessions.get(userId) : null;
+        SessionOutbox outbox = sessions != null ? sessions.get(session.getId()) : null;
+        return outbox != null ? outbox.session : session;
+    }
+
+    private static Counter droppedCounter(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("chat.ws.outbound.dropped")
+                .description("被丢弃的广播数或被关闭的慢连接数")
+                .tag("reason", reason)
+                .register(meterRegistry);
     }
 
     private Integer getUserId(WebSocketSession session) {
         Object userId = session.getAttributes().get("userId");
         return userId instanceof Integer ? (Integer) userId : null;
     }
+
+    /**
+     * 单个连接的有界发送队列
+     * 入队后若该连接没有发送任务在运行，则向写线程池提交一个；发送任务按顺序发完队列后退出，
+     * 因此同一连接的消息不会乱序，也不会有两个写线程同时写同一连接
+     */
+    private final class SessionOutbox implements Runnable {
+
+        private final ConcurrentWebSocketSessionDecorator session;
+        private final Queue<TextMessage> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger size = new AtomicInteger();
+        private final AtomicLong bufferedBytes = new AtomicLong();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        private SessionOutbox(ConcurrentWebSocketSessionDecorator session) {
+            this.session = session;
+        }
+
+        // 入队，超过消息数或字节数上限时关闭连接
+        void offer(TextMessage message) {
+            if (!session.isOpen()) {
+                return;
+            }
+            if (size.get() >= sessionQueueCapacity
+                    || bufferedBytes.get() + message.getPayloadLength() > bufferSizeLimitBytes) {
+                closeSlowConsumer(session);
+                clear();
+                return;
+            }
+            queue.add(message);
+            size.incrementAndGet();
+            bufferedBytes.addAndGet(message.getPayloadLength());
+            schedule();
+        }
+
+        // 丢弃尚未发送的消息（连接已关闭）
+        void clear() {
+            TextMessage message;
+            while ((message = queue.poll()) != null) {
+                size.decrementAndGet();
+                bufferedBytes.addAndGet(-message.getPayloadLength());
+            }
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    writerExecutor.execute(this);
+                } catch (RejectedExecutionException e) {
+                    // 写线程池已关闭（应用停止中）
+                    scheduled.set(false);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                TextMessage message;
+                while ((message = queue.poll()) != null) {
+                    size.decrementAndGet();
+                    bufferedBytes.addAndGet(-message.getPayloadLength());
+                    if (!session.isOpen()) {
+                        continue;
+                    }
+                    try {
+                        session.sendMessage(message);
+                        log.debug("发送消息：sessionId={}", session.getId());
+                    } catch (SessionLimitExceededException e) {
+                        closeSlowConsumer(session);
+                    } catch (IOException e) {
+                        log.error("发送消息失败：sessionId={}, error={}", session.getId(), e.getMessage());
+                    }
+                }
+            } finally {
+                scheduled.set(false);
+                // 退出前到达的消息由下一个发送任务处理
+                if (!queue.isEmpty()) {
+                    schedule();
+                }
+            }
+        }
+    }
 }
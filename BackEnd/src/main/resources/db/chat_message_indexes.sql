@@ -0,0 +1,5 @@
+-- 聊天消息索引
+-- GET /chat/conversations/{id}/messages 的 before / after 分页按 (conversation_id, id) 范围扫描，不再整表排序
+-- 上线前执行一次
+
+CREATE INDEX idx_chat_message_conversation_id ON chat_message (conversation_id, id);
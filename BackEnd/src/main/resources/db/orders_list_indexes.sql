@@ -0,0 +1,6 @@
+-- 订单列表索引
+-- GET /orders 分别按买家（user_id）与卖家（seller_id）取最近的订单后合并，两路都按 created_at 倒序取前 N 条
+-- 上线前执行一次
+
+CREATE INDEX idx_orders_user_created ON orders (user_id, created_at, id);
+CREATE INDEX idx_orders_seller_created ON orders (seller_id, created_at, id);
@@ -0,0 +1,23 @@
+-- 商品收藏数 / 购买数冗余计数列
+-- 列表、详情、首页查询直接读取 products.fav_count / buy_count，不再对 fav_products、buy_products 做 GROUP BY 聚合
+-- 收藏增删、下单、取消订单时增量维护；ProductCounterReconcileScheduler 定期按商品ID分段重新统计校正
+-- 上线前执行一次
+
+ALTER TABLE products
+    ADD COLUMN fav_count INT NOT NULL DEFAULT 0,
+    ADD COLUMN buy_count INT NOT NULL DEFAULT 0,
+    ADD COLUMN popularity INT AS (fav_count + buy_count) STORED;
+
+-- 首页热门列表按 popularity 倒序取前 N 条，走索引无需全表排序
+CREATE INDEX idx_products_popularity ON products (popularity, pro_id);
+
+-- 校正任务按商品ID做关联子查询，需要以下索引
+CREATE INDEX idx_fav_products_pro_id ON fav_products (pro_id);
+CREATE INDEX idx_buy_products_pro_id ON buy_products (pro_id);
+CREATE INDEX idx_orders_product_status ON orders (product_id, status);
+
+-- 回填历史数据（与校正任务口径一致：收藏记录数；购买记录数 + 未取消订单数）
+UPDATE products p
+SET fav_count = (SELECT COUNT(*) FROM fav_products f WHERE f.pro_id = p.pro_id),
+    buy_count = (SELECT COUNT(*) FROM buy_products b WHERE b.pro_id = p.pro_id)
+              + (SELECT COUNT(*) FROM orders o WHERE o.product_id = p.pro_id AND o.status <> 'cancelled');
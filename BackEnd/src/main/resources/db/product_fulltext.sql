@@ -0,0 +1,11 @@
+-- 商品标题 / 描述全文索引
+-- 使用 MySQL 内置 ngram 分词器（默认二元切分，支持中文），替代 LIKE '%关键词%' 全表扫描
+-- 索引由 MySQL 随商品增删改自动维护；上线前执行一次
+
+-- 关闭 InnoDB 默认停用词表：ngram 分词器会丢弃包含停用词的词元（如含 a / i 的二元词、on、is），
+-- 英文及中英混合标题会因此匹配不到。停用词设置在建索引时生效，必须在创建索引的同一会话中先执行。
+-- 若索引已按默认停用词表建好，需先 DROP INDEX ft_products_name_desc ON products 再重新执行本脚本。
+SET SESSION innodb_ft_enable_stopword = OFF;
+
+ALTER TABLE products
+    ADD FULLTEXT INDEX ft_products_name_desc (pro_name, discription) WITH PARSER ngram;
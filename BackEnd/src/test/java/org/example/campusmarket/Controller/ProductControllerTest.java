@@ -52,7 +52,7 @@ class ProductControllerTest {
         );
         when(productService.searchProducts(
                 isNull(), isNull(), isNull(), isNull(),
-                isNull(), isNull(), isNull(), eq(1), eq(12)
+                isNull(), isNull(), isNull(), eq(1), eq(12), isNull(), eq(false)
         )).thenReturn(response);
 
         mockMvc.perform(get("/products"))
@@ -77,7 +77,7 @@ class ProductControllerTest {
         );
         when(productService.searchProducts(
                 eq("测试"), isNull(), isNull(), isNull(),
-                isNull(), isNull(), isNull(), eq(1), eq(12)
+                isNull(), isNull(), isNull(), eq(1), eq(12), isNull(), eq(false)
         )).thenReturn(response);
 
         mockMvc.perform(get("/products").param("keyword", "测试"))
@@ -97,7 +97,7 @@ class ProductControllerTest {
         );
         when(productService.searchProducts(
                 isNull(), isNull(), isNull(), isNull(),
-                isNull(), isNull(), isNull(), eq(2), eq(20)
+                isNull(), isNull(), isNull(), eq(2), eq(20), isNull(), eq(false)
         )).thenReturn(response);
 
         mockMvc.perform(get("/products")
@@ -118,7 +118,7 @@ class ProductControllerTest {
         );
         when(productService.searchProducts(
                 isNull(), isNull(), isNull(), isNull(),
-                eq(100.0), eq(500.0), isNull(), eq(1), eq(12)
+                eq(100.0), eq(500.0), isNull(), eq(1), eq(12), isNull(), eq(false)
         )).thenReturn(response);
 
         mockMvc.perform(get("/products")
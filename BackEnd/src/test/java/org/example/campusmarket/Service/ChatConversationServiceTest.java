@@ -0,0 +1,129 @@
+package org.example.campusmarket.Service;
+
+import org.example.campusmarket.DTO.CreateConversationRequest;
+import org.example.campusmarket.Mapper.ChatConversationMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * ChatConversationService 单元测试
+ * 测试会话配对缓存的缓存与失效
+ */
+@ExtendWith(MockitoExtension.class)
+class ChatConversationServiceTest {
+
+    @Mock
+    private ChatConversationMapper conversationMapper;
+
+    @Mock
+    private UserSummaryCache userSummaryCache;
+
+    @Mock
+    private ConversationInboxCache conversationInboxCache;
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+
+    @InjectMocks
+    private ChatConversationService conversationService;
+
+    /**
+     * 测试双方会话都存在的配对被缓存，重复查询不再访问数据库
+     */
+    @Test
+    void testGetConversationPair_CachesCompletePair() {
+        when(conversationMapper.findConversationPair(1)).thenReturn(pairRow(1, 7, 8, 2));
+
+        ChatConversationService.ConversationPair first = conversationService.getConversationPair(1);
+        ChatConversationService.ConversationPair second = conversationService.getConversationPair(1);
+
+        assertEquals(new ChatConversationService.ConversationPair(1, 7, 8, 2), first);
+        assertSame(first, second);
+        verify(conversationMapper, times(1)).findConversationPair(1);
+    }
+
+    /**
+     * 测试缺少对方会话的配对不缓存，对方会话创建后能查到
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void testGetConversationPair_PairWithoutPartnerNotCached() {
+        when(conversationMapper.findConversationPair(1))
+                .thenReturn(pairRow(1, 7, 8, null), pairRow(1, 7, 8, 2));
+
+        assertNull(conversationService.getConversationPair(1).partnerConversationId());
+        assertEquals(2, conversationService.getConversationPair(1).partnerConversationId());
+        verify(conversationMapper, times(2)).findConversationPair(1);
+    }
+
+    /**
+     * 测试删除会话时失效双方的配对并广播给其他实例
+     */
+    @Test
+    void testDeleteConversation_EvictsAndBroadcastsPair() {
+        when(conversationMapper.findConversationPair(1)).thenReturn(pairRow(1, 7, 8, 2));
+        when(conversationMapper.deleteConversation(1, 7)).thenReturn(1);
+        conversationService.getConversationPair(1);
+
+        assertTrue(conversationService.deleteConversation(1, 7));
+
+        verify(conversationInboxCache).remove(1, 7);
+        verify(stringRedisTemplate).convertAndSend(eq(ChatConversationService.PAIR_EVICT_CHANNEL), endsWith("|1,2"));
+        // 本实例的缓存已失效，下次查询回到数据库
+        conversationService.getConversationPair(1);
+        verify(conversationMapper, times(2)).findConversationPair(1);
+    }
+
+    /**
+     * 测试对方已有会话时新建会话会失效对方的配对并广播
+     */
+    @Test
+    void testCreateConversation_EvictsAndBroadcastsPartnerPair() {
+        when(conversationMapper.findConversationPair(2)).thenReturn(pairRow(2, 8, 7, null));
+        conversationService.getConversationPair(2);
+        when(conversationMapper.findConversationId(7, 8, null)).thenReturn(null);
+        when(conversationMapper.findConversationId(8, 7, null)).thenReturn(2);
+        when(userSummaryCache.getAll(anyList())).thenReturn(Map.of());
+
+        CreateConversationRequest request = new CreateConversationRequest();
+        request.setUserId(8);
+        conversationService.createConversation(7, request);
+
+        verify(conversationMapper, times(1)).createConversation(any());
+        verify(stringRedisTemplate).convertAndSend(eq(ChatConversationService.PAIR_EVICT_CHANNEL), endsWith("|2"));
+    }
+
+    /**
+     * 测试广播失败不影响删除会话
+     */
+    @Test
+    void testDeleteConversation_BroadcastFailureIgnored() {
+        when(conversationMapper.findConversationPair(1)).thenReturn(pairRow(1, 7, 8, null));
+        when(conversationMapper.deleteConversation(1, 7)).thenReturn(1);
+        doThrow(new RuntimeException("connection refused"))
+                .when(stringRedisTemplate).convertAndSend(anyString(), anyString());
+
+        assertTrue(conversationService.deleteConversation(1, 7));
+    }
+
+    private static Map<String, Object> pairRow(Integer id, Integer userId, Integer partnerId,
+                                               Integer partnerConversationId) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("id", id);
+        row.put("user_id", userId);
+        row.put("partner_id", partnerId);
+        row.put("partner_conversation_id", partnerConversationId);
+        return row;
+    }
+}
@@ -0,0 +1,112 @@
+package org.example.campusmarket.Service;
+
+import org.example.campusmarket.Mapper.ChatMessageMapper;
+import org.example.campusmarket.Mapper.UserInfoMapper;
+import org.example.campusmarket.entity.ChatMessage;
+import org.example.campusmarket.websocket.ChatWebSocketHandler;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * ChatMessageService 单元测试
+ * 测试消息分页查询
+ */
+@ExtendWith(MockitoExtension.class)
+class ChatMessageServiceTest {
+
+    @Mock
+    private ChatMessageMapper messageMapper;
+
+    @Mock
+    private ChatConversationService conversationService;
+
+    @Mock
+    private UserInfoMapper userInfoMapper;
+
+    @Mock
+    private ChatWebSocketHandler webSocketHandler;
+
+    @Mock
+    private UserSummaryCache userSummaryCache;
+
+    @InjectMocks
+    private ChatMessageService messageService;
+
+    @BeforeEach
+    void setUp() {
+        // 会话 5 的对方会话为 3，消息存储在较小的会话ID下
+        when(conversationService.getPartnerConversationId(5)).thenReturn(3);
+        when(userSummaryCache.getAll(anyCollection())).thenReturn(Map.of(
+                7, new UserSummaryCache.UserSummary(7, "小明", "u7", null, null),
+                8, new UserSummaryCache.UserSummary(8, "小红", "u8", null, null)));
+    }
+
+    /**
+     * 测试历史分页：倒序查询结果翻转为正序返回，并填充发送者昵称
+     */
+    @Test
+    void testListMessages_BeforeReturnsAscending() {
+        when(messageMapper.listMessagesBefore(3, 100, 3)).thenReturn(List.of(
+                message(99, 8), message(98, 7), message(97, 8)));
+
+        List<ChatMessage> result = messageService.listMessages(5, 7, 100, null, 3);
+
+        assertEquals(List.of(97, 98, 99), result.stream().map(ChatMessage::getId).toList());
+        assertEquals("小红", result.get(0).getSenderName());
+        assertEquals("我", result.get(1).getSenderName());
+        assertTrue(result.get(1).getIsOwn());
+        assertFalse(result.get(2).getIsOwn());
+        verify(userSummaryCache).getAll(Set.of(7, 8));
+    }
+
+    /**
+     * 测试增量同步：after 优先于 before，按正序原样返回
+     */
+    @Test
+    void testListMessages_AfterTakesPrecedence() {
+        when(messageMapper.listMessagesAfter(3, 50, 20)).thenReturn(List.of(message(51, 8), message(52, 7)));
+
+        List<ChatMessage> result = messageService.listMessages(5, 7, 100, 50, 20);
+
+        assertEquals(List.of(51, 52), result.stream().map(ChatMessage::getId).toList());
+        assertEquals("小红", result.get(0).getSenderName());
+        assertEquals("我", result.get(1).getSenderName());
+        verify(messageMapper, never()).listMessagesBefore(anyInt(), any(), anyInt());
+    }
+
+    /**
+     * 测试每页数量限制在 1 到 MAX_PAGE_SIZE 之间
+     */
+    @Test
+    void testListMessages_LimitClamped() {
+        when(messageMapper.listMessagesBefore(eq(3), isNull(), anyInt())).thenReturn(List.of(message(1, 8)));
+
+        messageService.listMessages(5, 7, null, null, 1000);
+        messageService.listMessages(5, 7, null, null, 0);
+
+        verify(messageMapper).listMessagesBefore(3, null, ChatMessageService.MAX_PAGE_SIZE);
+        verify(messageMapper).listMessagesBefore(3, null, 1);
+    }
+
+    private static ChatMessage message(Integer id, Integer senderId) {
+        ChatMessage message = new ChatMessage();
+        message.setId(id);
+        message.setConversationId(3);
+        message.setSenderId(senderId);
+        message.setContent("消息" + id);
+        message.setType("text");
+        return message;
+    }
+}
@@ -0,0 +1,176 @@
+package org.example.campusmarket.Service;
+
+import org.example.campusmarket.Mapper.ChatConversationMapper;
+import org.example.campusmarket.entity.ChatConversation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.SetOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * ConversationInboxCache 单元测试
+ */
+@ExtendWith(MockitoExtension.class)
+class ConversationInboxCacheTest {
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Mock
+    private HashOperations<String, Object, Object> hashOperations;
+
+    @Mock
+    private SetOperations<String, String> setOperations;
+
+    @Mock
+    private ChatConversationMapper conversationMapper;
+
+    private ConversationInboxCache conversationInboxCache;
+
+    @BeforeEach
+    void setUp() {
+        conversationInboxCache = new ConversationInboxCache(stringRedisTemplate, conversationMapper);
+    }
+
+    /**
+     * 测试会话列表使用 Redis 中的未读数与最后一条消息，并按最后活跃时间倒序
+     * 尚未载入 Redis 的会话保持数据库数据并被载入
+     */
+    @Test
+    void testApply_OverlaysRedisFieldsAndSorts() {
+        ChatConversation first = conversation(1, 0, "旧消息", new Date(1000));
+        ChatConversation second = conversation(2, 4, "数据库消息", new Date(2000));
+        when(stringRedisTemplate.opsForHash()).thenReturn(hashOperations);
+        when(hashOperations.entries("chat:inbox:7")).thenReturn(Map.of(
+                "1:unread", "3", "1:last", "新消息", "1:time", "5000"));
+
+        List<ChatConversation> result = conversationInboxCache.apply(7, new ArrayList<>(List.of(first, second)));
+
+        assertEquals(List.of(1, 2), result.stream().map(ChatConversation::getId).toList());
+        assertEquals(3, result.get(0).getUnreadCount());
+        assertEquals("新消息", result.get(0).getLastMessage());
+        assertEquals(4, result.get(1).getUnreadCount());
+        verify(stringRedisTemplate, times(1)).executePipelined(any(RedisCallback.class));
+    }
+
+    /**
+     * 测试会话未载入时先从数据库载入再重试，成功后不需要调用方写数据库
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void testRecordMessage_LoadsMissingConversationsThenRetries() {
+        when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class)))
+                .thenReturn(0L, 1L);
+        when(conversationMapper.getConversationById(anyInt()))
+                .thenAnswer(invocation -> conversation(invocation.getArgument(0), 0, null, null));
+
+        boolean recorded = conversationInboxCache.recordMessage(
+                new ChatConversationService.ConversationPair(1, 7, 8, 2), "你好", new Date(), 1);
+
+        assertTrue(recorded);
+        verify(conversationMapper).getConversationById(1);
+        verify(conversationMapper).getConversationById(2);
+        verify(stringRedisTemplate, times(2)).execute(any(RedisScript.class), anyList(), any(Object[].class));
+    }
+
+    /**
+     * 测试最后消息时间使用消息的创建时间，而不是写入 Redis 的时间
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void testRecordMessage_UsesMessageCreatedAt() {
+        when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class))).thenReturn(1L);
+
+        conversationInboxCache.recordMessage(
+                new ChatConversationService.ConversationPair(1, 7, 8, 2), "你好", new Date(12345), 1);
+
+        verify(stringRedisTemplate).execute(any(RedisScript.class), anyList(),
+                eq("1"), eq("2"), eq("你好"), eq("12345"), eq("1"), eq("7"), eq("8"));
+    }
+
+    /**
+     * 测试 Redis 不可用时返回 false，由调用方直接写数据库
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void testRecordMessage_RedisDownFallsBackToDatabase() {
+        when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class)))
+                .thenThrow(new RuntimeException("connection refused"));
+
+        boolean recorded = conversationInboxCache.recordMessage(
+                new ChatConversationService.ConversationPair(1, 7, 8, 2), "你好", new Date(), 1);
+
+        assertFalse(recorded);
+    }
+
+    /**
+     * 测试直接写数据库后删除缓存字段失败时记下，Redis 恢复后在写回之前补删，且只补删一次
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void testEvict_RetriedBeforeFlushWhenRedisRecovers() {
+        when(stringRedisTemplate.executePipelined(any(RedisCallback.class)))
+                .thenThrow(new RuntimeException("connection refused"))
+                .thenReturn(List.of());
+        when(stringRedisTemplate.hasKey(ConversationInboxCache.KEY_INBOX_DIRTY_SYNCING)).thenReturn(false);
+        when(stringRedisTemplate.renameIfAbsent(ConversationInboxCache.KEY_INBOX_DIRTY,
+                ConversationInboxCache.KEY_INBOX_DIRTY_SYNCING)).thenReturn(false);
+
+        conversationInboxCache.evict(1, 7);
+        conversationInboxCache.flush();
+        conversationInboxCache.flush();
+
+        verify(stringRedisTemplate, times(2)).executePipelined(any(RedisCallback.class));
+        verify(conversationMapper, never()).flushInbox(anyList());
+    }
+
+    /**
+     * 测试写回：按用户读取收件箱，只写回仍存在的会话，完成后删除写回中集合
+     */
+    @Test
+    void testFlush_WritesDirtyConversationsBack() {
+        when(stringRedisTemplate.hasKey(ConversationInboxCache.KEY_INBOX_DIRTY_SYNCING)).thenReturn(false);
+        when(stringRedisTemplate.renameIfAbsent(ConversationInboxCache.KEY_INBOX_DIRTY,
+                ConversationInboxCache.KEY_INBOX_DIRTY_SYNCING)).thenReturn(true);
+        when(stringRedisTemplate.opsForSet()).thenReturn(setOperations);
+        when(setOperations.members(ConversationInboxCache.KEY_INBOX_DIRTY_SYNCING)).thenReturn(Set.of("7:1", "7:3"));
+        when(stringRedisTemplate.opsForHash()).thenReturn(hashOperations);
+        when(hashOperations.entries("chat:inbox:7")).thenReturn(Map.of(
+                "1:unread", "2", "1:last", "新消息", "1:time", "5000"));
+
+        conversationInboxCache.flush();
+
+        verify(conversationMapper).flushInbox(argThat(rows -> rows.size() == 1
+                && rows.get(0).getId() == 1
+                && rows.get(0).getUnreadCount() == 2
+                && "新消息".equals(rows.get(0).getLastMessage())
+                && rows.get(0).getLastMessageTime().getTime() == 5000L));
+        verify(stringRedisTemplate).delete(ConversationInboxCache.KEY_INBOX_DIRTY_SYNCING);
+    }
+
+    private static ChatConversation conversation(Integer id, int unread, String lastMessage, Date time) {
+        ChatConversation conversation = new ChatConversation();
+        conversation.setId(id);
+        conversation.setUserId(7);
+        conversation.setUnreadCount(unread);
+        conversation.setLastMessage(lastMessage);
+        conversation.setLastMessageTime(time);
+        return conversation;
+    }
+}
@@ -2,6 +2,7 @@ package org.example.campusmarket.Service;
 
 import org.example.campusmarket.DTO.FavoriteDto;
 import org.example.campusmarket.Mapper.FavoriteMapper;
+import org.example.campusmarket.Mapper.ProductMapper;
 import org.example.campusmarket.entity.Product;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -27,6 +28,12 @@ class FavoriteServiceTest {
     @Mock
     private FavoriteMapper favoriteMapper;
 
+    @Mock
+    private ProductHotnessService productHotnessService;
+
+    @Mock
+    private ProductMapper productMapper;
+
     @InjectMocks
     private FavoriteService favoriteService;
 
@@ -60,6 +67,7 @@ class FavoriteServiceTest {
         assertEquals(100, response.getProductId());
         assertNotNull(response.getCreatedAt());
         verify(favoriteMapper, times(1)).insertFavorite(eq(1), eq(100), any(LocalDateTime.class));
+        verify(productMapper, times(1)).incrementFavCount(100, 1);
     }
 
     /**
@@ -78,6 +86,7 @@ class FavoriteServiceTest {
         assertEquals(100, response.getProductId());
         // 不应该再次插入
         verify(favoriteMapper, never()).insertFavorite(anyInt(), anyInt(), any(LocalDateTime.class));
+        verify(productMapper, never()).incrementFavCount(anyInt(), anyInt());
     }
 
     /**
@@ -110,6 +119,7 @@ class FavoriteServiceTest {
 
         assertTrue(result);
         verify(favoriteMapper, times(1)).deleteFavorite(1, 100);
+        verify(productMapper, times(1)).incrementFavCount(100, -1);
     }
 
     /**
@@ -123,6 +133,7 @@ class FavoriteServiceTest {
         boolean result = favoriteService.RemoveFavorite(1, 100);
 
         assertTrue(result);
+        verify(productMapper, never()).incrementFavCount(anyInt(), anyInt());
     }
 
     /**
@@ -198,4 +198,21 @@ class HomeServiceTest {
         assertNotNull(result);
         assertTrue(result.isEmpty());
     }
+
+    /**
+     * 测试最新商品本地缓存 - 命中缓存不再查询数据库，商品变更后失效
+     */
+    @Test
+    void testGetLatestProducts_CachedUntilProductChanged() {
+        when(homeMapper.listLatest(10)).thenReturn(List.of());
+
+        homeService.getLatestProducts(10);
+        homeService.getLatestProducts(10);
+        verify(homeMapper, times(1)).listLatest(10);
+
+        homeService.onProductChanged(new ProductChangeNotifier.ProductChangedEvent(
+                1, ProductChangeNotifier.ChangeType.UPDATED));
+        homeService.getLatestProducts(10);
+        verify(homeMapper, times(2)).listLatest(10);
+    }
 }
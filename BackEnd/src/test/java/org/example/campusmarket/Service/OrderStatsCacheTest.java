@@ -0,0 +1,149 @@
+package org.example.campusmarket.Service;
+
+import org.example.campusmarket.DTO.OrderDto;
+import org.example.campusmarket.Mapper.OrdersMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * OrderStatsCache 单元测试
+ */
+@ExtendWith(MockitoExtension.class)
+class OrderStatsCacheTest {
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Mock
+    private HashOperations<String, Object, Object> hashOperations;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    @Mock
+    private OrdersMapper ordersMapper;
+
+    private OrderStatsCache orderStatsCache;
+
+    @BeforeEach
+    void setUp() {
+        orderStatsCache = new OrderStatsCache(stringRedisTemplate, ordersMapper);
+    }
+
+    /**
+     * 测试缓存命中时直接读取 hash，不查询数据库
+     */
+    @Test
+    void testGet_CacheHit() {
+        when(stringRedisTemplate.opsForHash()).thenReturn(hashOperations);
+        when(hashOperations.entries("order:stats:1")).thenReturn(Map.of(
+                "total", "10", "pending", "3", "completed", "5", "cancelled", "2"));
+
+        OrderDto.Stats stats = orderStatsCache.get(1);
+
+        assertEquals(new OrderDto.Stats(10, 3, 5, 2), stats);
+        verify(ordersMapper, never()).countByStatus(anyInt());
+    }
+
+    /**
+     * 测试缓存缺失时一次 GROUP BY 查询重建，total 为各状态之和
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void testGet_RebuildsFromGroupBy() {
+        when(stringRedisTemplate.opsForHash()).thenReturn(hashOperations);
+        when(hashOperations.entries("order:stats:1")).thenReturn(Map.of());
+        when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.get("order:stats:ver:1")).thenReturn("4");
+        when(ordersMapper.countByStatus(1)).thenReturn(List.of(
+                Map.of("status", "pending", "cnt", 3L),
+                Map.of("status", "completed", "cnt", 5L)));
+        List<Object> rebuildArgs = new ArrayList<>();
+        when(stringRedisTemplate.execute(any(RedisScript.class), eq(List.of("order:stats:1", "order:stats:ver:1")),
+                any(Object[].class))).thenAnswer(invocation -> {
+                    rebuildArgs.addAll(List.of(invocation.getArguments()).subList(2, invocation.getArguments().length));
+                    return 1L;
+                });
+
+        OrderDto.Stats stats = orderStatsCache.get(1);
+
+        assertEquals(new OrderDto.Stats(8, 3, 5, 0), stats);
+        verify(ordersMapper, times(1)).countByStatus(1);
+        // 写入以查询前读到的版本号为条件
+        assertEquals("4", rebuildArgs.get(0));
+    }
+
+    /**
+     * 测试统计查询与写入之间发生状态迁移时，重建不写入缓存，下次读取重新统计
+     * 用一个按版本号判断的替身模拟两个脚本的原子行为
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void testRebuild_SkipsWriteWhenTransitionInterleaves() {
+        AtomicLong version = new AtomicLong(4);
+        AtomicBoolean written = new AtomicBoolean();
+        when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.get("order:stats:ver:1")).thenAnswer(invocation -> String.valueOf(version.get()));
+        when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class)))
+                .thenAnswer(invocation -> {
+                    RedisScript<Long> script = invocation.getArgument(0);
+                    if (script.getScriptAsString().contains("INCR")) {
+                        version.incrementAndGet();
+                        return written.get() ? 1L : 0L;
+                    }
+                    if (!String.valueOf(version.get()).equals(invocation.getArgument(2))) {
+                        return 0L;
+                    }
+                    written.set(true);
+                    return 1L;
+                });
+        // 统计查询返回后、写入前，另一个请求新建了订单
+        when(ordersMapper.countByStatus(1)).thenAnswer(invocation -> {
+            orderStatsCache.recordTransition(1, null, "pending");
+            return List.of(Map.of("status", "completed", "cnt", 5L));
+        });
+
+        orderStatsCache.rebuild(1);
+
+        assertFalse(written.get());
+        assertEquals(5, version.get());
+
+        // 没有迁移时重建正常写入
+        when(ordersMapper.countByStatus(1)).thenReturn(List.of(
+                Map.of("status", "pending", "cnt", 1L),
+                Map.of("status", "completed", "cnt", 5L)));
+
+        assertEquals(new OrderDto.Stats(6, 1, 5, 0), orderStatsCache.rebuild(1));
+        assertTrue(written.get());
+    }
+
+    /**
+     * 测试状态迁移只在状态确实变化时执行脚本，新建订单原状态传空串
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void testRecordTransition() {
+        orderStatsCache.recordTransition(1, null, "pending");
+        orderStatsCache.recordTransition(1, "completed", "completed");
+
+        verify(stringRedisTemplate, times(1)).execute(any(RedisScript.class),
+                eq(List.of("order:stats:1", "order:stats:ver:1")), eq(""), eq("pending"), eq("86400"));
+    }
+}
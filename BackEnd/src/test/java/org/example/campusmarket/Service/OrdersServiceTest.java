@@ -17,6 +17,7 @@ import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -35,6 +36,18 @@ class OrdersServiceTest {
     @Mock
     private ProductMapper productMapper;
 
+    @Mock
+    private ProductHotnessService productHotnessService;
+
+    @Mock
+    private ProductChangeNotifier productChangeNotifier;
+
+    @Mock
+    private UserSummaryCache userSummaryCache;
+
+    @Mock
+    private OrderStatsCache orderStatsCache;
+
     @InjectMocks
     private OrdersService ordersService;
 
@@ -136,12 +149,15 @@ class OrdersServiceTest {
      */
     @Test
     void testConfirmOrder_Success() {
+        when(ordersMapper.getOrderById(1)).thenReturn(testOrder);
         when(ordersMapper.updateStatus(1, 1, "completed")).thenReturn(1);
 
         boolean result = ordersService.confirmOrder(1, 1);
 
         assertTrue(result);
         verify(ordersMapper, times(1)).updateStatus(1, 1, "completed");
+        verify(orderStatsCache).recordTransition(1, "pending", "completed");
+        verify(productHotnessService).dropParkedScore(testOrder.getProductId());
     }
 
     /**
@@ -164,12 +180,50 @@ class OrdersServiceTest {
      */
     @Test
     void testCancelOrder_Success() {
+        when(ordersMapper.getOrderList(1, null, null, null, null)).thenReturn(List.of(testOrder));
         when(ordersMapper.updateStatus(1, 1, "cancelled")).thenReturn(1);
 
         boolean result = ordersService.cancelOrder(1, 1);
 
         assertTrue(result);
         verify(ordersMapper, times(1)).updateStatus(1, 1, "cancelled");
+        verify(productMapper).updateProductSealStatus(1, false);
+        verify(productMapper).incrementBuyCount(1, -1);
+        verify(orderStatsCache).recordTransition(1, "pending", "cancelled");
+    }
+
+    /**
+     * 测试重复取消 - 已取消的订单不再更新，也不重复回退购买计数
+     */
+    @Test
+    void testCancelOrder_AlreadyCancelled() {
+        testOrder.setStatus("cancelled");
+        when(ordersMapper.getOrderList(1, null, null, null, null)).thenReturn(List.of(testOrder));
+
+        boolean result = ordersService.cancelOrder(1, 1);
+
+        assertFalse(result);
+        verify(ordersMapper, never()).updateStatus(anyInt(), anyInt(), anyString());
+        verify(productMapper, never()).incrementBuyCount(anyInt(), anyInt());
+        verify(productHotnessService, never()).restoreProduct(anyInt());
+    }
+
+    /**
+     * 测试卖家将订单设为取消 - 与买家取消相同地解锁商品并回退购买计数
+     */
+    @Test
+    void testUpdateOrderStatus_CancelAppliesSideEffects() {
+        when(ordersMapper.getOrderById(1)).thenReturn(testOrder);
+        when(ordersMapper.updateOrderStatusWithMessage(1, "cancelled", "缺货", null)).thenReturn(1);
+
+        boolean result = ordersService.updateOrderStatus(1, "cancelled", "缺货", null);
+
+        assertTrue(result);
+        verify(productMapper).updateProductSealStatus(1, false);
+        verify(productMapper).incrementBuyCount(1, -1);
+        verify(orderStatsCache).recordTransition(1, "pending", "cancelled");
+        verify(productHotnessService).restoreProduct(1);
+        verify(productChangeNotifier).notifyChanged(1, ProductChangeNotifier.ChangeType.STATUS_CHANGED);
     }
 
     // ==================== 订单评价测试 ====================
@@ -225,8 +279,8 @@ class OrdersServiceTest {
     @Test
     void testGetOrderList_Success() {
         List<Order> orders = Arrays.asList(testOrder);
-        when(ordersMapper.getOrderList(1, "pending", null, null, null)).thenReturn(orders);
-        when(productMapper.findProductBasicById(1)).thenReturn(testProduct);
+        when(ordersMapper.getOrderPage(1, "pending", null, null, null, null, null, null)).thenReturn(orders);
+        when(productMapper.findProductBasicByIds(anyCollection())).thenReturn(List.of(testProduct));
 
         List<OrderDto.Response> result = ordersService.getOrderList(1, "pending", null, null, null);
 
@@ -241,7 +295,7 @@ class OrdersServiceTest {
      */
     @Test
     void testGetOrderList_Empty() {
-        when(ordersMapper.getOrderList(1, null, null, null, null)).thenReturn(null);
+        when(ordersMapper.getOrderPage(1, null, null, null, null, null, null, null)).thenReturn(null);
 
         List<OrderDto.Response> result = ordersService.getOrderList(1, null, null, null, null);
 
@@ -249,6 +303,41 @@ class OrdersServiceTest {
         assertTrue(result.isEmpty());
     }
 
+    /**
+     * 测试分页查询订单列表 - 商品与用户信息各批量加载一次
+     */
+    @Test
+    void testGetOrderPage_BatchesLookups() {
+        Order second = new Order();
+        second.setId(2);
+        second.setUserId(3);
+        second.setSellerId(1);
+        second.setProductId(2);
+        second.setStatus("pending");
+        Product secondProduct = new Product();
+        secondProduct.setPro_id(2);
+        secondProduct.setPrice("10");
+        testOrder.setSellerId(2);
+        when(ordersMapper.getOrderPage(1, null, null, null, null, 10, 10, 20)).thenReturn(List.of(testOrder, second));
+        when(ordersMapper.countOrderPage(1, null, null, null, null)).thenReturn(12);
+        when(productMapper.findProductBasicByIds(anyCollection())).thenReturn(List.of(testProduct, secondProduct));
+        when(userSummaryCache.getAll(anyCollection())).thenReturn(Map.of(
+                1, new UserSummaryCache.UserSummary(1, "买家", "u1", null, null),
+                2, new UserSummaryCache.UserSummary(2, null, "u2", null, "东区"),
+                3, new UserSummaryCache.UserSummary(3, "买家3", "u3", null, null)));
+
+        OrderDto.PageResponse result = ordersService.getOrderPage(1, null, null, null, null, 2, 10);
+
+        assertEquals(12, result.getTotal());
+        assertEquals(2, result.getItems().size());
+        assertEquals("u2", result.getItems().get(0).getSeller().getNickname());
+        assertEquals("东区", result.getItems().get(0).getProduct().getLocation());
+        assertEquals("买家3", result.getItems().get(1).getBuyer().getNickname());
+        verify(productMapper, times(1)).findProductBasicByIds(anyCollection());
+        verify(userSummaryCache, times(1)).getAll(anyCollection());
+        verify(productMapper, never()).findProductBasicById(anyInt());
+    }
+
     // ==================== 订单统计测试 ====================
 
     /**
@@ -256,10 +345,7 @@ class OrdersServiceTest {
      */
     @Test
     void testGetOrderStats() {
-        when(ordersMapper.countTotal(1)).thenReturn(10);
-        when(ordersMapper.countPending(1)).thenReturn(3);
-        when(ordersMapper.countCompleted(1)).thenReturn(5);
-        when(ordersMapper.countCancelled(1)).thenReturn(2);
+        when(orderStatsCache.get(1)).thenReturn(new OrderDto.Stats(10, 3, 5, 2));
 
         OrderDto.Stats stats = ordersService.getOrderStats(1);
 
@@ -0,0 +1,157 @@
+package org.example.campusmarket.Service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.campusmarket.DTO.ProductDto;
+import org.example.campusmarket.util.SingleFlight;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * ProductDetailCache 单元测试
+ */
+@ExtendWith(MockitoExtension.class)
+class ProductDetailCacheTest {
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    private ProductDetailCache productDetailCache;
+
+    private final List<List<Integer>> loadedBatches = new ArrayList<>();
+
+    private final Function<List<Integer>, List<ProductDto.ProductDetail>> loader = ids -> {
+        loadedBatches.add(new ArrayList<>(ids));
+        List<ProductDto.ProductDetail> rows = new ArrayList<>();
+        for (Integer id : ids) {
+            if (id == 404) {
+                continue;
+            }
+            ProductDto.ProductDetail row = new ProductDto.ProductDetail();
+            row.setId(id);
+            row.setTitle("商品" + id);
+            rows.add(row);
+        }
+        return rows;
+    };
+
+    @BeforeEach
+    void setUp() {
+        productDetailCache = new ProductDetailCache(stringRedisTemplate, new SingleFlight(new SimpleMeterRegistry()));
+        when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.multiGet(anyList())).thenAnswer(invocation -> {
+            List<String> keys = invocation.getArgument(0);
+            return Arrays.asList(new String[keys.size()]);
+        });
+        when(stringRedisTemplate.executePipelined(any(RedisCallback.class))).thenReturn(List.of());
+    }
+
+    /**
+     * 测试未命中时一次批量回源，结果按请求顺序返回并跳过不存在的商品
+     */
+    @Test
+    void testGetAll_LoadsMissesInOneBatch() {
+        List<ProductDto.ProductDetail> result = productDetailCache.getAll(List.of(3, 404, 1, 3), loader);
+
+        assertEquals(List.of(3, 1, 3), result.stream().map(ProductDto.ProductDetail::getId).toList());
+        assertEquals(List.of(List.of(3, 404, 1)), loadedBatches);
+        // 一次读取版本号，一次读取详情
+        verify(valueOperations, times(2)).multiGet(anyList());
+    }
+
+    /**
+     * 测试本地缓存命中时不再访问 Redis 与数据库，且返回的是独立副本
+     */
+    @Test
+    void testGetAll_LocalHitReturnsCopies() {
+        productDetailCache.getAll(List.of(1), loader).get(0).setTitle("被修改");
+
+        List<ProductDto.ProductDetail> again = productDetailCache.getAll(List.of(1), loader);
+
+        assertEquals("商品1", again.get(0).getTitle());
+        assertEquals(1, loadedBatches.size());
+        verify(valueOperations, times(2)).multiGet(anyList());
+    }
+
+    /**
+     * 测试本实例发起的商品变更递增版本号，其他实例的广播只清除本地缓存
+     */
+    @Test
+    void testOnProductChanged_BumpsVersionOnlyOnOrigin() {
+        productDetailCache.getAll(List.of(1), loader);
+
+        productDetailCache.onProductChanged(new ProductChangeNotifier.ProductChangedEvent(
+                1, ProductChangeNotifier.ChangeType.UPDATED));
+        productDetailCache.getAll(List.of(1), loader);
+        productDetailCache.onProductChanged(new ProductChangeNotifier.ProductChangedEvent(
+                1, ProductChangeNotifier.ChangeType.UPDATED, true));
+        productDetailCache.getAll(List.of(1), loader);
+
+        assertEquals(3, loadedBatches.size());
+        verify(valueOperations, times(1)).increment("product:ver:1");
+    }
+
+    /**
+     * 测试单个商品并发未命中只回源一次
+     */
+    @Test
+    void testGet_CoalescesConcurrentMisses() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Supplier<ProductDto.ProductDetail> slowLoader = () -> {
+            loads.incrementAndGet();
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            ProductDto.ProductDetail row = new ProductDto.ProductDetail();
+            row.setId(7);
+            return row;
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<ProductDto.ProductDetail>> results = new ArrayList<>();
+            results.add(executor.submit(() -> productDetailCache.get(7, slowLoader)));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            for (int i = 0; i < 3; i++) {
+                results.add(executor.submit(() -> productDetailCache.get(7, slowLoader)));
+            }
+            Thread.sleep(100);
+            release.countDown();
+            for (Future<ProductDto.ProductDetail> result : results) {
+                assertEquals(7, result.get(5, TimeUnit.SECONDS).getId());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, loads.get());
+    }
+}
@@ -2,16 +2,20 @@ package org.example.campusmarket.Service;
 
 import net.jqwik.api.*;
 import net.jqwik.api.constraints.IntRange;
+import net.jqwik.api.constraints.LongRange;
 import net.jqwik.api.constraints.Positive;
+import org.apache.ibatis.executor.result.DefaultResultContext;
+import org.apache.ibatis.session.ResultHandler;
 import org.example.campusmarket.Mapper.ProductMapper;
 import org.example.campusmarket.config.HotnessProperties;
-import org.junit.jupiter.api.AfterAll;
-import org.junit.jupiter.api.BeforeAll;
+import net.jqwik.api.lifecycle.AfterContainer;
+import net.jqwik.api.lifecycle.BeforeContainer;
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import redis.embedded.RedisServer;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.mockito.Mockito.*;
@@ -26,9 +30,10 @@ public class ProductHotnessServicePropertyTest {
     private static LettuceConnectionFactory connectionFactory;
     private static StringRedisTemplate stringRedisTemplate;
     private static ProductHotnessService hotnessService;
+    private static ProductHotnessService bufferedHotnessService;
     private static ProductMapper mockProductMapper;
 
-    @BeforeAll
+    @BeforeContainer
     static void setUp() throws IOException {
         // 启动嵌入式 Redis
         redisServer = new RedisServer(6370);
@@ -47,9 +52,13 @@ public class ProductHotnessServicePropertyTest {
 
         HotnessProperties properties = new HotnessProperties();
         hotnessService = new ProductHotnessService(stringRedisTemplate, properties, mockProductMapper);
+
+        HotnessProperties bufferedProperties = new HotnessProperties();
+        bufferedProperties.setViewBufferEnabled(true);
+        bufferedHotnessService = new ProductHotnessService(stringRedisTemplate, bufferedProperties, mockProductMapper);
     }
 
-    @AfterAll
+    @AfterContainer
     static void tearDown() throws IOException {
         if (connectionFactory != null) {
             connectionFactory.destroy();
@@ -107,6 +116,97 @@ public class ProductHotnessServicePropertyTest {
         stringRedisTemplate.opsForZSet().remove(ProductHotnessService.KEY_HOT_RANKING, productId.toString());
     }
 
+    /**
+     * Property 7: Safe Increment Deduplication
+     * **Feature: redis-product-hotness, Property 7: Safe Increment Deduplication**
+     * **Validates: Requirements 1.1**
+     * 
+     * For any product and any number of repeated calls with the same requestId inside the dedupe window,
+     * only the first call should be counted, and every call should return the current view count.
+     */
+    @Property(tries = 50)
+    void safeIncrementDeduplication(
+            @ForAll @Positive @IntRange(min = 1, max = 10000) Integer productId,
+            @ForAll @IntRange(min = 1, max = 10) int repeatCount) {
+        
+        // 清理测试数据
+        String viewCountKey = hotnessService.getViewCountKey(productId);
+        String viewDeltaKey = hotnessService.getViewDeltaKey(productId);
+        String requestId = "req-" + System.nanoTime();
+        stringRedisTemplate.delete(viewCountKey);
+        stringRedisTemplate.delete(viewDeltaKey);
+        stringRedisTemplate.opsForZSet().remove(ProductHotnessService.KEY_HOT_RANKING, productId.toString());
+
+        // 同一 requestId 重复调用
+        for (int i = 0; i < repeatCount; i++) {
+            Long count = hotnessService.incrementViewCountSafe(productId, requestId);
+            assert count != null && count == 1L :
+                String.format("Call %d should return 1 but got %s", i + 1, count);
+        }
+
+        // 验证浏览量、增量与排行榜分数都只增加了一次
+        assert "1".equals(stringRedisTemplate.opsForValue().get(viewCountKey)) : "View count should be 1";
+        assert "1".equals(stringRedisTemplate.opsForValue().get(viewDeltaKey)) : "Delta should be 1";
+        Double score = stringRedisTemplate.opsForZSet()
+            .score(ProductHotnessService.KEY_HOT_RANKING, productId.toString());
+        assert score != null && Math.abs(score - 1.0) < 0.001 : "Ranking score should be 1";
+
+        // 清理测试数据
+        stringRedisTemplate.delete(viewCountKey);
+        stringRedisTemplate.delete(viewDeltaKey);
+        stringRedisTemplate.delete(ProductHotnessService.KEY_VIEW_DEDUPE + productId + ":" + requestId);
+        stringRedisTemplate.opsForZSet().remove(ProductHotnessService.KEY_HOT_RANKING, productId.toString());
+    }
+
+    /**
+     * Property 8: Buffered View Count Flush Consistency
+     * **Feature: redis-product-hotness, Property 8: Buffered View Count Flush Consistency**
+     * **Validates: Requirements 1.1, 4.1**
+     * 
+     * With the local write buffer enabled, for any number of increments N,
+     * reads should include the unflushed delta, and after flushViewBuffer
+     * the view count, delta key and ranking score in Redis should all have grown by N.
+     */
+    @Property(tries = 50)
+    void bufferedViewCountFlushConsistency(
+            @ForAll @Positive @IntRange(min = 1, max = 10000) Integer productId,
+            @ForAll @IntRange(min = 1, max = 50) int incrementCount) {
+        
+        // 清理测试数据
+        String viewCountKey = bufferedHotnessService.getViewCountKey(productId);
+        String viewDeltaKey = bufferedHotnessService.getViewDeltaKey(productId);
+        stringRedisTemplate.delete(viewCountKey);
+        stringRedisTemplate.delete(viewDeltaKey);
+        stringRedisTemplate.opsForZSet().remove(ProductHotnessService.KEY_HOT_RANKING, productId.toString());
+
+        // 执行 N 次递增，只写入本地缓冲
+        Long lastCount = null;
+        for (int i = 0; i < incrementCount; i++) {
+            lastCount = bufferedHotnessService.incrementViewCount(productId);
+        }
+        assert lastCount != null && lastCount == incrementCount :
+            String.format("Expected buffered count %d but got %s", incrementCount, lastCount);
+        assert stringRedisTemplate.opsForValue().get(viewCountKey) == null : "Redis should not be written before flush";
+
+        // 刷新到 Redis
+        bufferedHotnessService.flushViewBuffer();
+
+        assert String.valueOf(incrementCount).equals(stringRedisTemplate.opsForValue().get(viewCountKey)) :
+            "View count in Redis should equal the buffered increments";
+        assert String.valueOf(incrementCount).equals(stringRedisTemplate.opsForValue().get(viewDeltaKey)) :
+            "Delta in Redis should equal the buffered increments";
+        Double score = stringRedisTemplate.opsForZSet()
+            .score(ProductHotnessService.KEY_HOT_RANKING, productId.toString());
+        assert score != null && Math.abs(score - incrementCount) < 0.001 : "Ranking score should equal the buffered increments";
+        assert bufferedHotnessService.getViewCount(productId) == incrementCount :
+            "View count should not be double counted after flush";
+
+        // 清理测试数据
+        stringRedisTemplate.delete(viewCountKey);
+        stringRedisTemplate.delete(viewDeltaKey);
+        stringRedisTemplate.opsForZSet().remove(ProductHotnessService.KEY_HOT_RANKING, productId.toString());
+    }
+
     /**
      * Property 6: View Count Query Correctness
      * **Feature: redis-product-hotness, Property 6: View Count Query Correctness**
@@ -118,7 +218,7 @@ public class ProductHotnessServicePropertyTest {
     @Property(tries = 100)
     void viewCountQueryCorrectness(
             @ForAll @Positive @IntRange(min = 1, max = 10000) Integer productId,
-            @ForAll @IntRange(min = 0, max = 100000) long expectedCount) {
+            @ForAll @LongRange(min = 0, max = 100000) long expectedCount) {
         
         String viewCountKey = hotnessService.getViewCountKey(productId);
         
@@ -318,11 +418,15 @@ public class ProductHotnessServicePropertyTest {
         
         // 记录实际传递给数据库的增量值
         AtomicInteger actualDelta = new AtomicInteger(0);
-        when(mockProductMapper.updateViewCountDelta(eq(productId), anyLong()))
+        when(mockProductMapper.updateViewCountDeltas(anyList()))
             .thenAnswer(invocation -> {
-                long delta = invocation.getArgument(1);
-                actualDelta.addAndGet((int) delta);
-                return 1; // 模拟更新成功
+                List<ProductMapper.ProductViewCount> deltas = invocation.getArgument(0);
+                for (ProductMapper.ProductViewCount item : deltas) {
+                    if (productId.equals(item.getPro_id())) {
+                        actualDelta.addAndGet(item.getViewCount().intValue());
+                    }
+                }
+                return deltas.size(); // 模拟更新成功
             });
         
         // 执行 N 次递增
@@ -346,12 +450,58 @@ public class ProductHotnessServicePropertyTest {
         // 验证 delta key 已被清除
         String deltaAfterSync = stringRedisTemplate.opsForValue().get(viewDeltaKey);
         assert deltaAfterSync == null : "Delta key should be cleared after sync";
+        assert !Boolean.TRUE.equals(stringRedisTemplate.opsForSet()
+                .isMember(ProductHotnessService.KEY_VIEW_DIRTY, productId.toString())) :
+            "Product should no longer be marked dirty after sync";
         
         // 清理测试数据
         stringRedisTemplate.delete(viewCountKey);
         stringRedisTemplate.opsForZSet().remove(ProductHotnessService.KEY_HOT_RANKING, productId.toString());
     }
 
+    /**
+     * Property 4b: Database Sync Failure Keeps Delta
+     * **Feature: redis-product-hotness, Property 4: Database Sync Round Trip**
+     * **Validates: Requirements 3.1, 3.2**
+     * 
+     * When the batched database write fails, the taken delta should be put back
+     * into Redis and the product should stay marked for the next sync.
+     */
+    @Property(tries = 50)
+    void databaseSyncFailureKeepsDelta(
+            @ForAll @Positive @IntRange(min = 1, max = 10000) Integer productId,
+            @ForAll @IntRange(min = 1, max = 50) int incrementCount) {
+        
+        String viewCountKey = hotnessService.getViewCountKey(productId);
+        String viewDeltaKey = hotnessService.getViewDeltaKey(productId);
+        stringRedisTemplate.delete(viewCountKey);
+        stringRedisTemplate.delete(viewDeltaKey);
+        stringRedisTemplate.delete(ProductHotnessService.KEY_VIEW_DIRTY);
+        stringRedisTemplate.delete(ProductHotnessService.KEY_VIEW_DIRTY_SYNCING);
+        
+        reset(mockProductMapper);
+        when(mockProductMapper.updateViewCountDeltas(anyList()))
+            .thenThrow(new RuntimeException("db down"));
+        
+        for (int i = 0; i < incrementCount; i++) {
+            hotnessService.incrementViewCount(productId);
+        }
+        
+        hotnessService.syncToDatabase();
+        
+        String deltaValue = stringRedisTemplate.opsForValue().get(viewDeltaKey);
+        assert deltaValue != null && Long.parseLong(deltaValue) == incrementCount :
+            String.format("Delta should be restored to %d but was %s", incrementCount, deltaValue);
+        assert Boolean.TRUE.equals(stringRedisTemplate.opsForSet()
+                .isMember(ProductHotnessService.KEY_VIEW_DIRTY, productId.toString())) :
+            "Product should stay marked dirty after a failed sync";
+        
+        stringRedisTemplate.delete(viewCountKey);
+        stringRedisTemplate.delete(viewDeltaKey);
+        stringRedisTemplate.delete(ProductHotnessService.KEY_VIEW_DIRTY);
+        stringRedisTemplate.opsForZSet().remove(ProductHotnessService.KEY_HOT_RANKING, productId.toString());
+    }
+
     /**
      * Property 5: Database Load Consistency
      * **Feature: redis-product-hotness, Property 5: Database Load Consistency**
@@ -363,7 +513,7 @@ public class ProductHotnessServicePropertyTest {
     @Property(tries = 100)
     void databaseLoadConsistency(
             @ForAll @Positive @IntRange(min = 1, max = 10000) Integer productId,
-            @ForAll @IntRange(min = 0, max = 100000) long dbViewCount) {
+            @ForAll @LongRange(min = 0, max = 100000) long dbViewCount) {
         
         // 清理测试数据
         String viewCountKey = hotnessService.getViewCountKey(productId);
@@ -378,8 +528,13 @@ public class ProductHotnessServicePropertyTest {
         viewCount.setPro_id(productId);
         viewCount.setViewCount(dbViewCount);
         
-        when(mockProductMapper.getAllProductViewCounts())
-            .thenReturn(java.util.Collections.singletonList(viewCount));
+        doAnswer(invocation -> {
+            ResultHandler<ProductMapper.ProductViewCount> handler = invocation.getArgument(0);
+            DefaultResultContext<ProductMapper.ProductViewCount> context = new DefaultResultContext<>();
+            context.nextResultObject(viewCount);
+            handler.handleResult(context);
+            return null;
+        }).when(mockProductMapper).streamAllProductViewCounts(any());
         
         // 执行加载
         hotnessService.loadFromDatabase();
@@ -403,4 +558,345 @@ public class ProductHotnessServicePropertyTest {
         stringRedisTemplate.delete(viewCountKey);
         stringRedisTemplate.opsForZSet().remove(ProductHotnessService.KEY_HOT_RANKING, productId.toString());
     }
+
+    /**
+     * Property 5b: Batched Load Keeps Existing Counts
+     * **Feature: redis-product-hotness, Property 5: Database Load Consistency**
+     * **Validates: Requirements 3.4**
+     * 
+     * When rows are streamed across several pipeline batches, products missing in Redis
+     * get the database value, products already in Redis keep theirs, and the returned
+     * count equals the number of products actually written.
+     */
+    @Property(tries = 50)
+    void databaseLoadBatchesKeepExistingCounts(
+            @ForAll @IntRange(min = 1, max = 20) int productCount,
+            @ForAll @IntRange(min = 1, max = 7) int batchSize,
+            @ForAll @IntRange(min = 0, max = 20) int existingCount) {
+        
+        HotnessProperties properties = new HotnessProperties();
+        properties.setLoadBatchSize(batchSize);
+        ProductHotnessService service = new ProductHotnessService(stringRedisTemplate, properties, mockProductMapper);
+        
+        int baseId = 20000;
+        List<ProductMapper.ProductViewCount> rows = new java.util.ArrayList<>();
+        for (int i = 0; i < productCount; i++) {
+            int productId = baseId + i;
+            stringRedisTemplate.delete(service.getViewCountKey(productId));
+            stringRedisTemplate.opsForZSet().remove(ProductHotnessService.KEY_HOT_RANKING, String.valueOf(productId));
+            ProductMapper.ProductViewCount row = new ProductMapper.ProductViewCount();
+            row.setPro_id(productId);
+            row.setViewCount((long) (i % 3)); // 包含浏览量为 0 的商品
+            rows.add(row);
+        }
+        int existing = Math.min(existingCount, productCount);
+        for (int i = 0; i < existing; i++) {
+            stringRedisTemplate.opsForValue().set(service.getViewCountKey(baseId + i), "999");
+        }
+        
+        reset(mockProductMapper);
+        doAnswer(invocation -> {
+            ResultHandler<ProductMapper.ProductViewCount> handler = invocation.getArgument(0);
+            DefaultResultContext<ProductMapper.ProductViewCount> context = new DefaultResultContext<>();
+            for (ProductMapper.ProductViewCount row : rows) {
+                context.nextResultObject(row);
+                handler.handleResult(context);
+            }
+            return null;
+        }).when(mockProductMapper).streamAllProductViewCounts(any());
+        
+        int loaded = service.loadFromDatabase();
+        
+        assert loaded == productCount - existing :
+            String.format("Loaded %d but expected %d", loaded, productCount - existing);
+        for (int i = 0; i < productCount; i++) {
+            long expected = i < existing ? 999L : (long) (i % 3);
+            Long actual = service.getViewCount(baseId + i);
+            assert actual != null && actual == expected :
+                String.format("Product %d should have %d views but had %s", baseId + i, expected, actual);
+        }
+        
+        for (int i = 0; i < productCount; i++) {
+            stringRedisTemplate.delete(service.getViewCountKey(baseId + i));
+            stringRedisTemplate.opsForZSet().remove(ProductHotnessService.KEY_HOT_RANKING, String.valueOf(baseId + i));
+        }
+    }
+
+    /**
+     * Property 9: Decayed Score Renormalization
+     * **Feature: redis-product-hotness, Property 9: Decayed Score Renormalization**
+     * 
+     * With decay enabled, an event recorded one half-life after the epoch counts double,
+     * and renormalizing moves the epoch to now and halves every score without changing the order.
+     */
+    @Property(tries = 30)
+    void decayedScoreRenormalization(
+            @ForAll @IntRange(min = 1, max = 20) int viewCount,
+            @ForAll @IntRange(min = 1, max = 5) int favoriteCount) {
+        
+        long halfLife = 3_600_000L;
+        HotnessProperties properties = new HotnessProperties();
+        properties.setDecayHalfLife(halfLife);
+        ProductHotnessService service = new ProductHotnessService(stringRedisTemplate, properties, mockProductMapper);
+        
+        Integer viewed = 30001;
+        Integer favorited = 30002;
+        stringRedisTemplate.delete(ProductHotnessService.KEY_HOT_RANKING);
+        stringRedisTemplate.delete(service.getViewCountKey(viewed));
+        stringRedisTemplate.delete(service.getViewDeltaKey(viewed));
+        // 基准时间设为一个半衰期之前，此时新事件的分数应为权重的 2 倍
+        stringRedisTemplate.opsForValue().set(ProductHotnessService.KEY_HOT_EPOCH,
+                String.valueOf(System.currentTimeMillis() - halfLife));
+        
+        for (int i = 0; i < viewCount; i++) {
+            service.incrementViewCount(viewed);
+        }
+        for (int i = 0; i < favoriteCount; i++) {
+            service.recordHotnessEvent(favorited, ProductHotnessService.HotnessEvent.FAVORITE);
+        }
+        
+        double viewScore = stringRedisTemplate.opsForZSet().score(ProductHotnessService.KEY_HOT_RANKING, viewed.toString());
+        double favoriteScore = stringRedisTemplate.opsForZSet().score(ProductHotnessService.KEY_HOT_RANKING, favorited.toString());
+        assert Math.abs(viewScore - 2.0 * viewCount) < 0.01 :
+            String.format("View score %f should be about %d", viewScore, 2 * viewCount);
+        assert Math.abs(favoriteScore - 2.0 * 3.0 * favoriteCount) < 0.01 :
+            String.format("Favorite score %f should be about %f", favoriteScore, 6.0 * favoriteCount);
+        
+        service.renormalizeHotRanking();
+        
+        double viewAfter = stringRedisTemplate.opsForZSet().score(ProductHotnessService.KEY_HOT_RANKING, viewed.toString());
+        double favoriteAfter = stringRedisTemplate.opsForZSet().score(ProductHotnessService.KEY_HOT_RANKING, favorited.toString());
+        assert Math.abs(viewAfter - viewCount) < 0.01 :
+            String.format("View score after renormalization %f should be about %d", viewAfter, viewCount);
+        assert Math.abs(favoriteAfter - 3.0 * favoriteCount) < 0.01 :
+            String.format("Favorite score after renormalization %f should be about %f", favoriteAfter, 3.0 * favoriteCount);
+        long epoch = Long.parseLong(stringRedisTemplate.opsForValue().get(ProductHotnessService.KEY_HOT_EPOCH));
+        assert System.currentTimeMillis() - epoch < 60_000 : "Epoch should move to now after renormalization";
+        
+        stringRedisTemplate.delete(ProductHotnessService.KEY_HOT_RANKING);
+        stringRedisTemplate.delete(ProductHotnessService.KEY_HOT_EPOCH);
+        stringRedisTemplate.delete(service.getViewCountKey(viewed));
+        stringRedisTemplate.delete(service.getViewDeltaKey(viewed));
+        stringRedisTemplate.delete(ProductHotnessService.KEY_VIEW_DIRTY);
+    }
+
+    /**
+     * Property 10: Trending Window Aggregation
+     * **Feature: redis-product-hotness, Property 10: Trending Window Aggregation**
+     * 
+     * Events recorded in the current hour appear in every trending window with their raw weight,
+     * while an hour bucket older than a day only contributes to the 7d window.
+     */
+    @Property(tries = 20)
+    void trendingWindowAggregation(
+            @ForAll @IntRange(min = 1, max = 20) int recentViews,
+            @ForAll @IntRange(min = 1, max = 20) int oldScore) {
+        
+        Integer recent = 40001;
+        Integer old = 40002;
+        long now = System.currentTimeMillis();
+        String oldBucket = hotnessService.getHotBucketKey(now - java.time.Duration.ofHours(48).toMillis());
+        stringRedisTemplate.delete(hotnessService.getHotBucketKey(now));
+        stringRedisTemplate.delete(oldBucket);
+        stringRedisTemplate.delete(hotnessService.getViewCountKey(recent));
+        stringRedisTemplate.delete(hotnessService.getViewDeltaKey(recent));
+        
+        for (int i = 0; i < recentViews; i++) {
+            hotnessService.incrementViewCount(recent);
+        }
+        stringRedisTemplate.opsForZSet().add(oldBucket, old.toString(), oldScore);
+        
+        hotnessService.aggregateTrendingRankings();
+        
+        for (ProductHotnessService.TrendingWindow window : ProductHotnessService.TrendingWindow.values()) {
+            Double recentScore = stringRedisTemplate.opsForZSet().score(window.getKey(), recent.toString());
+            assert recentScore != null && Math.abs(recentScore - recentViews) < 0.001 :
+                String.format("%s score of recent product should be %d but was %s", window.getCode(), recentViews, recentScore);
+            List<Integer> ranking = hotnessService.getTrendingRanking(window, 10);
+            assert ranking.contains(recent) : window.getCode() + " ranking should contain the recent product";
+            assert ranking.contains(old) == (window == ProductHotnessService.TrendingWindow.WEEK) :
+                window.getCode() + " ranking should only contain the 48h old product in the 7d window";
+        }
+        
+        stringRedisTemplate.delete(hotnessService.getHotBucketKey(now));
+        stringRedisTemplate.delete(oldBucket);
+        stringRedisTemplate.delete(hotnessService.getViewCountKey(recent));
+        stringRedisTemplate.delete(hotnessService.getViewDeltaKey(recent));
+        stringRedisTemplate.delete(ProductHotnessService.KEY_VIEW_DIRTY);
+        for (ProductHotnessService.TrendingWindow window : ProductHotnessService.TrendingWindow.values()) {
+            stringRedisTemplate.delete(window.getKey());
+        }
+    }
+
+    /**
+     * Property 11: Category Ranking Consistency
+     * **Feature: redis-product-hotness, Property 11: Category Ranking Consistency**
+     * 
+     * For a product with a registered category, every view and hotness event adds the same
+     * score to the category ranking as to the global ranking, and eviction removes it.
+     */
+    @Property(tries = 30)
+    void categoryRankingConsistency(
+            @ForAll @IntRange(min = 1, max = 20) int viewCount,
+            @ForAll @IntRange(min = 0, max = 5) int commentCount) {
+        
+        Integer productId = 50001;
+        String category = "books";
+        String categoryKey = hotnessService.getCategoryRankingKey(category);
+        stringRedisTemplate.delete(categoryKey);
+        stringRedisTemplate.delete(hotnessService.getViewCountKey(productId));
+        stringRedisTemplate.delete(hotnessService.getViewDeltaKey(productId));
+        stringRedisTemplate.opsForZSet().remove(ProductHotnessService.KEY_HOT_RANKING, productId.toString());
+        
+        hotnessService.registerProductCategory(productId, category);
+        for (int i = 0; i < viewCount; i++) {
+            hotnessService.incrementViewCount(productId);
+        }
+        for (int i = 0; i < commentCount; i++) {
+            hotnessService.recordHotnessEvent(productId, ProductHotnessService.HotnessEvent.COMMENT);
+        }
+        
+        Double globalScore = stringRedisTemplate.opsForZSet().score(ProductHotnessService.KEY_HOT_RANKING, productId.toString());
+        Double categoryScore = stringRedisTemplate.opsForZSet().score(categoryKey, productId.toString());
+        double expected = viewCount + 2.0 * commentCount;
+        assert globalScore != null && Math.abs(globalScore - expected) < 0.001 :
+            String.format("Global score %s should be %f", globalScore, expected);
+        assert categoryScore != null && Math.abs(categoryScore - globalScore) < 0.001 :
+            String.format("Category score %s should equal global score %s", categoryScore, globalScore);
+        assert hotnessService.getCategoryHotRanking(category, 10).contains(productId) :
+            "Category ranking should contain the product";
+        
+        hotnessService.evictProduct(productId);
+        assert stringRedisTemplate.opsForZSet().score(categoryKey, productId.toString()) == null :
+            "Product should be removed from the category ranking after eviction";
+        
+        stringRedisTemplate.delete(categoryKey);
+        stringRedisTemplate.delete(hotnessService.getViewCountKey(productId));
+        stringRedisTemplate.delete(hotnessService.getViewDeltaKey(productId));
+        stringRedisTemplate.delete(ProductHotnessService.KEY_VIEW_DIRTY);
+        stringRedisTemplate.opsForZSet().remove(ProductHotnessService.KEY_HOT_RANKING, productId.toString());
+    }
+
+    /**
+     * Property 12: Park And Restore Round Trip
+     * **Feature: redis-product-hotness, Property 12: Park And Restore Round Trip**
+     * 
+     * A parked product leaves the global ranking, views while parked accumulate in the parked hash,
+     * and restoring puts the product back with its old score plus everything accumulated.
+     */
+    @Property(tries = 30)
+    void parkAndRestoreRoundTrip(
+            @ForAll @IntRange(min = 1, max = 20) int viewsBefore,
+            @ForAll @IntRange(min = 0, max = 20) int viewsWhileParked) {
+        
+        Integer productId = 60001;
+        String member = productId.toString();
+        stringRedisTemplate.delete(hotnessService.getViewCountKey(productId));
+        stringRedisTemplate.delete(hotnessService.getViewDeltaKey(productId));
+        stringRedisTemplate.opsForZSet().remove(ProductHotnessService.KEY_HOT_RANKING, member);
+        stringRedisTemplate.opsForHash().delete(ProductHotnessService.KEY_HOT_PARKED, member);
+        
+        for (int i = 0; i < viewsBefore; i++) {
+            hotnessService.incrementViewCount(productId);
+        }
+        hotnessService.parkProduct(productId);
+        assert stringRedisTemplate.opsForZSet().score(ProductHotnessService.KEY_HOT_RANKING, member) == null :
+            "Parked product should not be in the ranking";
+        assert !hotnessService.getHotRanking(100).contains(productId) : "Parked product should not be returned";
+        
+        for (int i = 0; i < viewsWhileParked; i++) {
+            hotnessService.incrementViewCount(productId);
+        }
+        assert stringRedisTemplate.opsForZSet().score(ProductHotnessService.KEY_HOT_RANKING, member) == null :
+            "Views on a parked product should not put it back into the ranking";
+        assert hotnessService.getViewCount(productId) == viewsBefore + viewsWhileParked :
+            "View counting should continue while parked";
+        
+        hotnessService.restoreProduct(productId);
+        Double restored = stringRedisTemplate.opsForZSet().score(ProductHotnessService.KEY_HOT_RANKING, member);
+        assert restored != null && Math.abs(restored - (viewsBefore + viewsWhileParked)) < 0.001 :
+            String.format("Restored score %s should be %d", restored, viewsBefore + viewsWhileParked);
+        assert !stringRedisTemplate.opsForHash().hasKey(ProductHotnessService.KEY_HOT_PARKED, member) :
+            "Restored product should leave the parked hash";
+        
+        stringRedisTemplate.delete(hotnessService.getViewCountKey(productId));
+        stringRedisTemplate.delete(hotnessService.getViewDeltaKey(productId));
+        stringRedisTemplate.delete(ProductHotnessService.KEY_VIEW_DIRTY);
+        stringRedisTemplate.opsForZSet().remove(ProductHotnessService.KEY_HOT_RANKING, member);
+    }
+
+    /**
+     * Property 13: Ranking Capacity Trim
+     * **Feature: redis-product-hotness, Property 13: Ranking Capacity Trim**
+     * 
+     * After trimming, the ranking holds at most the configured capacity and keeps the highest scores.
+     */
+    @Property(tries = 30)
+    void rankingCapacityTrim(
+            @ForAll @IntRange(min = 1, max = 30) int productCount,
+            @ForAll @IntRange(min = 1, max = 20) int capacity) {
+        
+        HotnessProperties properties = new HotnessProperties();
+        properties.setRankingCapacity(capacity);
+        ProductHotnessService service = new ProductHotnessService(stringRedisTemplate, properties, mockProductMapper);
+        
+        stringRedisTemplate.delete(ProductHotnessService.KEY_HOT_RANKING);
+        for (int i = 1; i <= productCount; i++) {
+            stringRedisTemplate.opsForZSet().add(ProductHotnessService.KEY_HOT_RANKING, String.valueOf(70000 + i), i);
+        }
+        
+        service.trimHotRankings();
+        
+        List<Integer> ranking = service.getHotRanking(100);
+        int expectedSize = Math.min(productCount, capacity);
+        assert ranking.size() == expectedSize :
+            String.format("Ranking size %d should be %d", ranking.size(), expectedSize);
+        assert ranking.get(0) == 70000 + productCount : "Highest score should survive the trim";
+        assert ranking.get(ranking.size() - 1) == 70000 + productCount - expectedSize + 1 :
+            "Only the lowest scores should be trimmed";
+        
+        stringRedisTemplate.delete(ProductHotnessService.KEY_HOT_RANKING);
+    }
+
+    /**
+     * Property 14: Parked Score Rescaled On Restore
+     * **Feature: redis-product-hotness, Property 14: Parked Score Rescaled On Restore**
+     * 
+     * A parked score keeps the decay epoch it was parked under; after the epoch moves on (renormalization),
+     * restoring converts it to the new epoch instead of renormalization rewriting the parked hash.
+     */
+    @Property(tries = 30)
+    void parkedScoreRescaledOnRestore(
+            @ForAll @IntRange(min = 1, max = 1000) int score,
+            @ForAll @IntRange(min = 0, max = 3) int halfLivesElapsed) {
+        
+        long halfLife = 1000L;
+        HotnessProperties properties = new HotnessProperties();
+        properties.setDecayHalfLife(halfLife);
+        ProductHotnessService service = new ProductHotnessService(stringRedisTemplate, properties, mockProductMapper);
+        
+        Integer productId = 60002;
+        String member = productId.toString();
+        stringRedisTemplate.opsForHash().delete(ProductHotnessService.KEY_HOT_PARKED, member);
+        stringRedisTemplate.opsForValue().set(ProductHotnessService.KEY_HOT_EPOCH, "1000000");
+        stringRedisTemplate.opsForZSet().add(ProductHotnessService.KEY_HOT_RANKING, member, score);
+        
+        service.parkProduct(productId);
+        stringRedisTemplate.opsForValue().set(ProductHotnessService.KEY_HOT_EPOCH,
+                String.valueOf(1000000L + halfLivesElapsed * halfLife));
+        service.restoreProduct(productId);
+        
+        Double restored = stringRedisTemplate.opsForZSet().score(ProductHotnessService.KEY_HOT_RANKING, member);
+        double expected = score / Math.pow(2, halfLivesElapsed);
+        assert restored != null && Math.abs(restored - expected) < 0.001 :
+            String.format("Restored score %s should be %f", restored, expected);
+        
+        service.parkProduct(productId);
+        service.dropParkedScore(productId);
+        assert !stringRedisTemplate.opsForHash().hasKey(ProductHotnessService.KEY_HOT_PARKED, member) :
+            "Sold product should leave the parked hash";
+        
+        stringRedisTemplate.delete(ProductHotnessService.KEY_HOT_EPOCH);
+        stringRedisTemplate.opsForZSet().remove(ProductHotnessService.KEY_HOT_RANKING, member);
+    }
 }
@@ -1,12 +1,16 @@
 package org.example.campusmarket.Service;
 
+import org.example.campusmarket.DTO.ProductDto;
 import org.example.campusmarket.Mapper.ProductMapper;
 import org.example.campusmarket.entity.Product;
+import org.example.campusmarket.util.SingleFlight;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -33,6 +37,21 @@ class ProductServiceTest {
     @Mock
     private ImageService imageService;
 
+    @Mock
+    private ProductHotnessService productHotnessService;
+
+    @Mock
+    private ProductChangeNotifier productChangeNotifier;
+
+    @Mock
+    private ProductDetailCache productDetailCache;
+
+    @Mock
+    private UserSummaryCache userSummaryCache;
+
+    @Spy
+    private SingleFlight singleFlight = new SingleFlight(new SimpleMeterRegistry());
+
     @InjectMocks
     private ProductService productService;
 
@@ -227,4 +246,152 @@ class ProductServiceTest {
             urls != null && urls.size() == 5
         ));
     }
+
+    /**
+     * 测试搜索关键词转换为全文索引查询串
+     */
+    @Test
+    void testBuildMatchQuery() {
+        assertEquals("+\"苹果手机\"", ProductService.buildMatchQuery("苹果手机"));
+        assertEquals("+\"二手\" +\"教材\"", ProductService.buildMatchQuery("  二手  教材 "));
+        // 布尔模式运算符被去除
+        assertEquals("+\"iPad\"", ProductService.buildMatchQuery("-iPad*"));
+        // 单字词短于 ngram 长度，退回 LIKE
+        assertNull(ProductService.buildMatchQuery("书"));
+        assertNull(ProductService.buildMatchQuery("二手 书"));
+        assertNull(ProductService.buildMatchQuery("  "));
+        assertNull(ProductService.buildMatchQuery(null));
+    }
+
+    /**
+     * 测试游标分页 - 多取一条判断下一页，下一页游标携带上一页最后一条的排序键
+     */
+    @Test
+    void testSearchProducts_CursorMode() {
+        List<ProductDto.ProductDetail> rows = new java.util.ArrayList<>();
+        for (int id = 30; id > 27; id--) {
+            ProductDto.ProductDetail row = new ProductDto.ProductDetail();
+            row.setId(id);
+            row.setPrice(10.0 * id);
+            row.setViews(0);
+            rows.add(row);
+        }
+        when(productMapper.searchProducts(any(), any(), any(), any(), any(), any(), any(), eq("price-high"),
+                isNull(), isNull(), isNull(), eq(0), eq(3))).thenReturn(rows);
+
+        ProductDto.ProductListResponse first = productService.searchProducts(
+                null, null, null, null, null, null, "price-high", 1, 2, "", false);
+
+        assertEquals(2, first.getItems().size());
+        assertNull(first.getTotal());
+        assertNotNull(first.getNextCursor());
+        verify(productMapper, never()).countProducts(any(), any(), any(), any(), any(), any(), any(), any());
+
+        when(productMapper.searchProducts(any(), any(), any(), any(), any(), any(), any(), eq("price-high"),
+                eq(29), eq(290.0), isNull(), eq(0), eq(3))).thenReturn(List.of());
+
+        ProductDto.ProductListResponse second = productService.searchProducts(
+                null, null, null, null, null, null, "price-high", 1, 2, first.getNextCursor(), false);
+
+        assertTrue(second.getItems().isEmpty());
+        assertNull(second.getNextCursor());
+    }
+
+    /**
+     * 测试游标分页 - 格式错误或与排序方式不匹配的游标直接拒绝，不回到第一页
+     */
+    @Test
+    void testSearchProducts_InvalidCursor() {
+        String latestCursor = java.util.Base64.getUrlEncoder().withoutPadding()
+                .encodeToString("latest||5".getBytes(java.nio.charset.StandardCharsets.UTF_8));
+
+        assertThrows(IllegalArgumentException.class, () -> productService.searchProducts(
+                null, null, null, null, null, null, "latest", 1, 2, "not*base64", false));
+        assertThrows(IllegalArgumentException.class, () -> productService.searchProducts(
+                null, null, null, null, null, null, "price-high", 1, 2, latestCursor, false));
+        verify(productMapper, never()).searchProducts(any(), any(), any(), any(), any(), any(), any(), any(),
+                any(), any(), any(), anyInt(), anyInt());
+    }
+
+    /**
+     * 测试搜索总数 - 相同过滤条件复用缓存；估算模式数满上限时标记为估算值
+     */
+    @Test
+    void testSearchProducts_CountCachedAndEstimated() {
+        when(productMapper.countProducts(eq("手机"), any(), any(), any(), any(), any(), any(), isNull())).thenReturn(42L);
+        when(productMapper.countProducts(eq("手机"), any(), any(), any(), any(), any(), any(), eq(132))).thenReturn(132L);
+
+        ProductDto.ProductListResponse first = productService.searchProducts("手机", null, null, null, null, null, null, 1, 12);
+        ProductDto.ProductListResponse second = productService.searchProducts(" 手机 ", "", null, null, null, null, null, 2, 12);
+
+        assertEquals(42L, first.getTotal());
+        assertEquals(42L, second.getTotal());
+        assertFalse(first.getTotalEstimated());
+        verify(productMapper, times(1)).countProducts(any(), any(), any(), any(), any(), any(), any(), isNull());
+        // 列表查询与总数缓存使用同一组规范化后的过滤条件
+        verify(productMapper).searchProducts(eq("手机"), any(), isNull(), isNull(), isNull(), isNull(), isNull(), isNull(),
+                isNull(), isNull(), isNull(), eq(12), eq(12));
+
+        ProductDto.ProductListResponse estimated = productService.searchProducts(
+                "手机", null, null, null, null, null, null, 1, 12, null, true);
+
+        assertEquals(132L, estimated.getTotal());
+        assertTrue(estimated.getTotalEstimated());
+    }
+
+    /**
+     * 测试热度排序 - 排行榜候选经过滤后排在前面，其余匹配商品按 pro_id 倒序由数据库分页补齐
+     */
+    @Test
+    void testSearchProducts_PopularRanksCandidatesThenTail() {
+        when(productHotnessService.getHotRankingCandidates(anyInt())).thenReturn(List.of(1, 5, 3));
+        when(productMapper.searchProductIds(any(), any(), any(), any(), any(), any(), any(),
+                eq(List.of(1, 5, 3)), isNull(), eq(0), isNull())).thenReturn(List.of(3, 1));
+        when(productMapper.searchProductIds(any(), any(), any(), any(), any(), any(), any(),
+                isNull(), eq(List.of(1, 3)), anyInt(), anyInt())).thenReturn(List.of(2));
+        when(productMapper.countProducts(any(), any(), any(), any(), any(), any(), any(), isNull())).thenReturn(3L);
+        when(productMapper.getProductDetailsByIds(anyList())).thenAnswer(invocation -> {
+            List<ProductDto.ProductDetail> rows = new java.util.ArrayList<>();
+            for (Integer id : invocation.<List<Integer>>getArgument(0)) {
+                ProductDto.ProductDetail row = new ProductDto.ProductDetail();
+                row.setId(id);
+                rows.add(row);
+            }
+            return rows;
+        });
+
+        ProductDto.ProductListResponse first = productService.searchProducts(
+                null, null, null, null, null, null, "popular", 1, 2);
+        ProductDto.ProductListResponse second = productService.searchProducts(
+                null, null, null, null, null, null, "popular", 2, 2);
+
+        assertEquals(3L, first.getTotal());
+        assertEquals(List.of(1, 3), first.getItems().stream().map(ProductDto.ProductDetail::getId).toList());
+        assertEquals(List.of(2), second.getItems().stream().map(ProductDto.ProductDetail::getId).toList());
+        // 第二页从尾部第 0 条开始取，候选只筛选一次
+        verify(productMapper).searchProductIds(any(), any(), any(), any(), any(), any(), any(),
+                isNull(), eq(List.of(1, 3)), eq(0), eq(2));
+        verify(productHotnessService, times(1)).getHotRankingCandidates(anyInt());
+        verify(productMapper, never()).searchProducts(any(), any(), any(), any(), any(), any(), any(), any(),
+                any(), any(), any(), anyInt(), anyInt());
+    }
+
+    /**
+     * 测试热度排序缓存 - 商品变更只失效包含该商品的候选
+     */
+    @Test
+    void testSearchProducts_PopularCandidatesEvictedPerProduct() {
+        when(productHotnessService.getHotRankingCandidates(anyInt())).thenReturn(List.of(1));
+        when(productMapper.searchProductIds(any(), any(), any(), any(), any(), any(), any(),
+                eq(List.of(1)), isNull(), eq(0), isNull())).thenReturn(List.of(1));
+
+        productService.searchProducts(null, null, null, null, null, null, "popular", 1, 2);
+        productService.onProductChanged(new ProductChangeNotifier.ProductChangedEvent(9, ProductChangeNotifier.ChangeType.CREATED));
+        productService.searchProducts(null, null, null, null, null, null, "popular", 1, 2);
+        verify(productHotnessService, times(1)).getHotRankingCandidates(anyInt());
+
+        productService.onProductChanged(new ProductChangeNotifier.ProductChangedEvent(1, ProductChangeNotifier.ChangeType.STATUS_CHANGED));
+        productService.searchProducts(null, null, null, null, null, null, "popular", 1, 2);
+        verify(productHotnessService, times(2)).getHotRankingCandidates(anyInt());
+    }
 }
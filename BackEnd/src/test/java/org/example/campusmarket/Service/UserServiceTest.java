@@ -6,11 +6,14 @@ import org.example.campusmarket.Mapper.UserMapper;
 import org.example.campusmarket.entity.Product;
 import org.example.campusmarket.entity.UserInfo;
 import org.example.campusmarket.util.VerificationCodeService;
+import org.example.campusmarket.util.SingleFlight;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.mail.SimpleMailMessage;
 import org.springframework.mail.javamail.JavaMailSender;
@@ -47,6 +50,12 @@ class UserServiceTest {
     @Mock
     private ImageService imageService;
 
+    @Mock
+    private UserSummaryCache userSummaryCache;
+
+    @Spy
+    private SingleFlight singleFlight = new SingleFlight(new SimpleMeterRegistry());
+
     @InjectMocks
     private UserService userService;
 
@@ -98,6 +107,19 @@ class UserServiceTest {
         assertNull(result);
     }
 
+    /**
+     * 测试写后读取直接查库，不经过请求合并
+     */
+    @Test
+    void testGetLatestUserInfoById_BypassesSingleFlight() {
+        when(userMapper.findUserinfoById(1)).thenReturn(testUserInfo);
+
+        UserInfo result = userService.GetLatestUserInfoById(1);
+
+        assertSame(testUserInfo, result);
+        verify(singleFlight, never()).execute(anyString(), any(), any());
+    }
+
     // ==================== 头像上传测试 ====================
 
     /**
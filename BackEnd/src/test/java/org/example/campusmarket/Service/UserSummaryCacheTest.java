@@ -0,0 +1,127 @@
+package org.example.campusmarket.Service;
+
+import org.example.campusmarket.Mapper.UserInfoMapper;
+import org.example.campusmarket.entity.UserInfo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * UserSummaryCache 单元测试
+ */
+@ExtendWith(MockitoExtension.class)
+class UserSummaryCacheTest {
+
+    @Mock
+    private UserInfoMapper userInfoMapper;
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+
+    private UserSummaryCache userSummaryCache;
+
+    @BeforeEach
+    void setUp() {
+        userSummaryCache = new UserSummaryCache(userInfoMapper, stringRedisTemplate);
+        when(userInfoMapper.findSummariesByIds(anyCollection())).thenAnswer(invocation -> {
+            Collection<Integer> ids = invocation.getArgument(0);
+            return ids.stream().filter(id -> id != 404).map(id -> {
+                UserInfo userInfo = new UserInfo();
+                userInfo.setUser_id(id);
+                userInfo.setUsername("user" + id);
+                return userInfo;
+            }).toList();
+        });
+    }
+
+    /**
+     * 测试只有未命中的用户才查询数据库，且一次批量查询
+     */
+    @Test
+    void testGetAll_LoadsOnlyMisses() {
+        userSummaryCache.get(1);
+
+        Map<Integer, UserSummaryCache.UserSummary> result = userSummaryCache.getAll(List.of(1, 2, 404));
+
+        assertEquals(Set.of(1, 2), result.keySet());
+        assertEquals("user2", result.get(2).displayName());
+        verify(userInfoMapper).findSummariesByIds(Set.of(1));
+        verify(userInfoMapper).findSummariesByIds(Set.of(2, 404));
+    }
+
+    /**
+     * 测试失效后重新从数据库加载
+     */
+    @Test
+    void testEvict_ReloadsFromDatabase() {
+        userSummaryCache.get(1);
+        userSummaryCache.evict(1);
+        userSummaryCache.get(1);
+
+        verify(userInfoMapper, times(2)).findSummariesByIds(Set.of(1));
+    }
+
+    /**
+     * 测试失效时广播给其他实例
+     */
+    @Test
+    void testEvict_Broadcasts() {
+        userSummaryCache.get(1);
+
+        userSummaryCache.evict(1);
+
+        verify(stringRedisTemplate).convertAndSend(eq(UserSummaryCache.CHANNEL), endsWith("|1"));
+    }
+
+    /**
+     * 测试广播失败不影响本实例失效
+     */
+    @Test
+    void testEvict_BroadcastFailureIgnored() {
+        userSummaryCache.get(1);
+        doThrow(new RuntimeException("connection refused"))
+                .when(stringRedisTemplate).convertAndSend(anyString(), anyString());
+
+        userSummaryCache.evict(1);
+        userSummaryCache.get(1);
+
+        verify(userInfoMapper, times(2)).findSummariesByIds(Set.of(1));
+    }
+
+    /**
+     * 测试收到其他实例的广播时失效本地缓存，忽略自己发出的广播
+     */
+    @Test
+    void testOnMessage_EvictsOnlyOnRemoteBroadcast() {
+        userSummaryCache.get(1);
+        String selfNodeId = (String) ReflectionTestUtils.getField(userSummaryCache, "nodeId");
+
+        userSummaryCache.onMessage(message(selfNodeId + "|1"), null);
+        userSummaryCache.get(1);
+        verify(userInfoMapper, times(1)).findSummariesByIds(Set.of(1));
+
+        userSummaryCache.onMessage(message("other-node|1"), null);
+        userSummaryCache.get(1);
+        verify(userInfoMapper, times(2)).findSummariesByIds(Set.of(1));
+    }
+
+    private static DefaultMessage message(String body) {
+        return new DefaultMessage(UserSummaryCache.CHANNEL.getBytes(StandardCharsets.UTF_8),
+                body.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,160 @@
+package org.example.campusmarket.util;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SingleFlight 单元测试
+ */
+class SingleFlightTest {
+
+    private static final int CALLERS = 8;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private SingleFlight singleFlight;
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        singleFlight = new SingleFlight(meterRegistry);
+        executor = Executors.newFixedThreadPool(CALLERS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 测试同一 key 的并发调用只执行一次 loader，且共享同一结果
+     */
+    @Test
+    void testConcurrentCallersShareOneLoad() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        Object value = new Object();
+
+        List<Future<Object>> results = submitAll(() -> singleFlight.execute("test", 1, () -> {
+            loads.incrementAndGet();
+            await(release);
+            return value;
+        }));
+        awaitCoalesced(CALLERS - 1);
+        release.countDown();
+
+        for (Future<Object> result : results) {
+            assertSame(value, result.get(2, TimeUnit.SECONDS));
+        }
+        assertEquals(1, loads.get());
+    }
+
+    /**
+     * 测试 loader 抛出的异常传递给所有等待者
+     */
+    @Test
+    void testExceptionReachesEveryWaiter() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        IllegalStateException failure = new IllegalStateException("load failed");
+
+        List<Future<Object>> results = submitAll(() -> {
+            try {
+                return singleFlight.execute("test", 1, () -> {
+                    loads.incrementAndGet();
+                    await(release);
+                    throw failure;
+                });
+            } catch (IllegalStateException e) {
+                return e;
+            }
+        });
+        awaitCoalesced(CALLERS - 1);
+        release.countDown();
+
+        for (Future<Object> result : results) {
+            assertSame(failure, result.get(2, TimeUnit.SECONDS));
+        }
+        assertEquals(1, loads.get());
+    }
+
+    /**
+     * 测试调用结束（成功或失败）后 key 被释放，下一次调用重新执行 loader
+     */
+    @Test
+    void testKeyReleasedAfterCall() {
+        AtomicInteger loads = new AtomicInteger();
+
+        assertEquals(1, singleFlight.execute("test", 1, loads::incrementAndGet));
+        assertEquals(2, singleFlight.execute("test", 1, loads::incrementAndGet));
+
+        assertThrows(IllegalStateException.class, () -> singleFlight.execute("test", 1, () -> {
+            throw new IllegalStateException("load failed");
+        }));
+        assertEquals(3, singleFlight.execute("test", 1, loads::incrementAndGet));
+    }
+
+    /**
+     * 测试不同分组或不同 key 之间互不合并
+     */
+    @Test
+    void testDifferentKeysAreNotCoalesced() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Future<Integer> first = executor.submit(() -> singleFlight.execute("test", 1, () -> {
+            await(release);
+            return 1;
+        }));
+
+        assertEquals(2, singleFlight.execute("test", 2, () -> 2));
+        assertEquals(3, singleFlight.execute("other", 1, () -> 3));
+
+        release.countDown();
+        assertEquals(1, first.get(2, TimeUnit.SECONDS));
+    }
+
+    private List<Future<Object>> submitAll(Callable<Object> call) {
+        List<Future<Object>> results = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            results.add(executor.submit(call));
+        }
+        return results;
+    }
+
+    // 等待其余调用都已加入正在执行的调用，再放行 loader
+    private void awaitCoalesced(int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (coalesced() < expected) {
+            assertTrue(System.nanoTime() < deadline, "等待合并调用超时");
+            Thread.sleep(5);
+        }
+    }
+
+    private double coalesced() {
+        var counter = meterRegistry.find("singleflight.calls").tag("result", "coalesced").counter();
+        return counter == null ? 0 : counter.count();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(2, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package org.example.campusmarket.websocket;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * ChatWebSocketHandler 单元测试
+ */
+class ChatWebSocketHandlerTest {
+
+    private static final int SEND_TIME_LIMIT = 100;
+
+    private ChatWebSocketHandler handler;
+
+    // 卡住的连接在此等待，测试结束时放行
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() {
+        handler = new ChatWebSocketHandler(mock(StringRedisTemplate.class), new SimpleMeterRegistry(),
+                SEND_TIME_LIMIT, 524288, 1000, 2, 100);
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        handler.shutdown();
+    }
+
+    /**
+     * 测试一个卡住的连接不影响其他用户的推送，且发送超时后被巡检关闭
+     */
+    @Test
+    void testStalledSessionDoesNotDelayOtherUsers() throws Exception {
+        CountDownLatch stalledSending = new CountDownLatch(1);
+        WebSocketSession stalled = session("s1", 1);
+        doAnswer(invocation -> {
+            stalledSending.countDown();
+            release.await();
+            return null;
+        }).when(stalled).sendMessage(any());
+        // 用户 5 与用户 1 在按用户分道时会落在同一写道上
+        WebSocketSession other = session("s2", 5);
+        handler.afterConnectionEstablished(stalled);
+        handler.afterConnectionEstablished(other);
+
+        handler.sendMessageToUser(1, Map.of("seq", 1));
+        assertTrue(stalledSending.await(2, TimeUnit.SECONDS));
+        handler.sendMessageToUser(1, Map.of("seq", 2));
+        handler.sendMessageToUser(5, Map.of("seq", 1));
+
+        verify(other, timeout(2000)).sendMessage(any());
+
+        Thread.sleep(SEND_TIME_LIMIT * 2);
+        assertEquals(1, handler.closeStalledSessions());
+        verify(stalled).close(CloseStatus.SESSION_NOT_RELIABLE);
+        verify(other, never()).close(any());
+    }
+
+    /**
+     * 测试同一连接的推送按发送顺序到达
+     */
+    @Test
+    void testPushesToSameSessionKeepOrder() throws Exception {
+        StringBuilder received = new StringBuilder();
+        CountDownLatch done = new CountDownLatch(50);
+        WebSocketSession target = session("s1", 1);
+        doAnswer(invocation -> {
+            WebSocketMessage<?> message = invocation.getArgument(0);
+            received.append(((TextMessage) message).getPayload()).append(',');
+            done.countDown();
+            return null;
+        }).when(target).sendMessage(any());
+        handler.afterConnectionEstablished(target);
+
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 50; i++) {
+            handler.sendMessageToUser(1, i);
+            expected.append(i).append(',');
+        }
+
+        assertTrue(done.await(2, TimeUnit.SECONDS));
+        assertEquals(expected.toString(), received.toString());
+    }
+
+    private static WebSocketSession session(String id, Integer userId) {
+        WebSocketSession session = mock(WebSocketSession.class);
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put("userId", userId);
+        when(session.getId()).thenReturn(id);
+        when(session.getAttributes()).thenReturn(attributes);
+        when(session.isOpen()).thenReturn(true);
+        return session;
+    }
+}